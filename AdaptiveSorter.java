@@ -0,0 +1,350 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sorts by first looking at the input and then handing it to the sort in this project that suits
+ * it best. A constant-size random sample is inspected, so the look costs the same for a million
+ * items as for a thousand:
+ *
+ * <ul>
+ * <li>Tiny arrays are insertion sorted.</li>
+ * <li>Arrays whose sampled neighbours are nearly all in order, or nearly all in reverse, are made
+ * of few runs and go to the natural merge sort, which merges runs instead of splitting blindly.
+ * PdqSort, which finishes sorted stretches in linear time, takes their place for ints and
+ * longs.</li>
+ * <li>Object arrays with few distinct keys in the sample go to the three-way quicksort, which
+ * leaves every run of equal keys out of the recursion. PdqSort already does the same for ints and
+ * longs when it meets a repeated pivot, and is faster at it, so they stay with PdqSort.</li>
+ * <li>Huge arrays go to the parallel sample sort when the pool has more than one worker.</li>
+ * <li>Everything else goes to IntrospectiveSort, or PdqSort for ints and longs.</li>
+ * </ul>
+ *
+ * <p>Every sort returns its {@link Decision}, and each one is also logged at DEBUG level to the
+ * System.Logger named AdaptiveSorter. The sort is not stable.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ */
+public class AdaptiveSorter {
+
+  /**
+   * The sorts the dispatcher chooses between.
+   */
+  public enum Engine {
+    INSERTION, NATURAL_MERGE, THREE_WAY_QUICK, PARALLEL_SAMPLE, INTROSPECTIVE, PDQ
+  }
+
+  /**
+   * What the sample showed about one input, and the sort chosen for it.
+   */
+  public static class Decision {
+    private final String type;
+    private final int size;
+    private final double descents;
+    private final double distinct;
+    private final Engine engine;
+
+    Decision(String type, int size, double descents, double distinct, Engine engine) {
+      this.type = type;
+      this.size = size;
+      this.descents = descents;
+      this.distinct = distinct;
+      this.engine = engine;
+    }
+
+    /**
+     * @return the element type: object, int or long
+     */
+    public String type() {
+      return type;
+    }
+
+    /**
+     * @return the number of items
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Return the fraction of sampled neighbouring pairs that are out of order: near 0 for sorted
+     * input, near 1 for reversed input and about 1/2 for random input. Times the size, it
+     * estimates the number of runs.
+     *
+     * @return the fraction of descents, or 0 if the input was too small to sample
+     */
+    public double descents() {
+      return descents;
+    }
+
+    /**
+     * @return the fraction of distinct keys in the sample, or 1 if it was not sampled
+     */
+    public double distinct() {
+      return distinct;
+    }
+
+    /**
+     * @return the sort chosen
+     */
+    public Engine engine() {
+      return engine;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s[%d] descents=%.3f distinct=%.3f -> %s", type, size, descents,
+          distinct, engine);
+    }
+  }
+
+  /** Arrays up to this size are insertion sorted. */
+  private static final int INSERTION_MAX = 32;
+
+  /** Arrays from this size are sorted in parallel when the pool allows. */
+  private static final int PARALLEL_MIN = 1 << 18;
+
+  /** Number of neighbouring pairs, and of keys, sampled. */
+  private static final int SAMPLE_SIZE = 256;
+
+  /** Inputs with at most this fraction of sampled descents, or of ascents, are nearly sorted. */
+  private static final double PRESORTED_DESCENTS = 1.0 / 64;
+
+  /** Inputs whose sample is at most this fraction distinct are duplicate heavy. */
+  private static final double FEW_DISTINCT = 1.0 / 8;
+
+  private static final System.Logger LOG = System.getLogger("AdaptiveSorter");
+
+  /**
+   * Sort the items with the sort that suits them, running parallel sorts on the common pool.
+   *
+   * @param items array to sort
+   * @return what was found and chosen
+   */
+  public static <T extends Comparable<T>> Decision sort(T[] items) {
+    return sort(items, Comparator.naturalOrder(), ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Sort the items by the given comparator with the sort that suits them, running parallel sorts
+   * on the common pool.
+   *
+   * @param items array to sort
+   * @param comparator ordering to sort by
+   * @return what was found and chosen
+   */
+  public static <T> Decision sort(T[] items, Comparator<? super T> comparator) {
+    return sort(items, comparator, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Sort the items by the given comparator with the sort that suits them.
+   *
+   * @param items array to sort
+   * @param comparator ordering to sort by
+   * @param pool pool for the parallel sort
+   * @return what was found and chosen
+   */
+  public static <T> Decision sort(T[] items, Comparator<? super T> comparator,
+      ForkJoinPool pool) {
+    Decision decision = analyze(items, comparator, pool);
+    switch (decision.engine) {
+      case INSERTION -> BasicSorts.insertionSort(items, comparator);
+      case NATURAL_MERGE -> MergeSortImproved.mergeSortNatural(items, comparator);
+      case THREE_WAY_QUICK -> QuickSort.quickSort3Way(items, comparator);
+      case PARALLEL_SAMPLE -> SampleSort.sampleSort(items, comparator, pool);
+      default -> IntrospectiveSort.introspectiveSort(items, comparator);
+    }
+    return log(decision);
+  }
+
+  /**
+   * Sort the ints with the sort that suits them, running parallel sorts on the common pool.
+   *
+   * @param items array to sort
+   * @return what was found and chosen
+   */
+  public static Decision sort(int[] items) {
+    return sort(items, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Sort the ints with the sort that suits them.
+   *
+   * @param items array to sort
+   * @param pool pool for the parallel sort
+   * @return what was found and chosen
+   */
+  public static Decision sort(int[] items, ForkJoinPool pool) {
+    Decision decision = analyze(items, pool);
+    switch (decision.engine) {
+      case INSERTION -> BasicSorts.insertionSort(items);
+      case PARALLEL_SAMPLE -> SampleSort.sampleSort(items, pool);
+      default -> PdqSort.pdqSort(items);
+    }
+    return log(decision);
+  }
+
+  /**
+   * Sort the longs with the sort that suits them, running parallel sorts on the common pool.
+   *
+   * @param items array to sort
+   * @return what was found and chosen
+   */
+  public static Decision sort(long[] items) {
+    return sort(items, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Sort the longs with the sort that suits them.
+   *
+   * @param items array to sort
+   * @param pool pool for the parallel sort
+   * @return what was found and chosen
+   */
+  public static Decision sort(long[] items, ForkJoinPool pool) {
+    Decision decision = analyze(items, pool);
+    switch (decision.engine) {
+      case INSERTION -> BasicSorts.insertionSort(items);
+      case PARALLEL_SAMPLE -> SampleSort.sampleSort(items, pool);
+      default -> PdqSort.pdqSort(items);
+    }
+    return log(decision);
+  }
+
+  /**
+   * Inspect the items and choose a sort for them without sorting.
+   *
+   * @param items the input
+   * @param comparator ordering the items would be sorted by
+   * @param pool pool the parallel sort would run on
+   * @return what was found and chosen
+   */
+  public static <T> Decision analyze(T[] items, Comparator<? super T> comparator,
+      ForkJoinPool pool) {
+    int size = items.length;
+    if (size <= INSERTION_MAX) {
+      return new Decision("object", size, 0, 1, Engine.INSERTION);
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int descents = 0;
+    for (int i = 0; i < SAMPLE_SIZE; i++) {
+      int pair = random.nextInt(size - 1);
+      if (comparator.compare(items[pair + 1], items[pair]) < 0) {
+        descents++;
+      }
+    }
+    @SuppressWarnings("unchecked")
+    T[] sample = (T[]) new Object[SAMPLE_SIZE];
+    for (int i = 0; i < SAMPLE_SIZE; i++) {
+      sample[i] = items[random.nextInt(size)];
+    }
+    IntrospectiveSort.introspectiveSort(sample, comparator);
+    int distinct = 1;
+    for (int i = 1; i < SAMPLE_SIZE; i++) {
+      if (comparator.compare(sample[i - 1], sample[i]) != 0) {
+        distinct++;
+      }
+    }
+    return decide("object", size, descents, distinct, Engine.NATURAL_MERGE,
+        Engine.THREE_WAY_QUICK, Engine.INTROSPECTIVE, pool);
+  }
+
+  /**
+   * Inspect the ints and choose a sort for them without sorting.
+   *
+   * @param items the input
+   * @param pool pool the parallel sort would run on
+   * @return what was found and chosen
+   */
+  public static Decision analyze(int[] items, ForkJoinPool pool) {
+    int size = items.length;
+    if (size <= INSERTION_MAX) {
+      return new Decision("int", size, 0, 1, Engine.INSERTION);
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int descents = 0;
+    for (int i = 0; i < SAMPLE_SIZE; i++) {
+      int pair = random.nextInt(size - 1);
+      if (items[pair + 1] < items[pair]) {
+        descents++;
+      }
+    }
+    int[] sample = new int[SAMPLE_SIZE];
+    for (int i = 0; i < SAMPLE_SIZE; i++) {
+      sample[i] = items[random.nextInt(size)];
+    }
+    Arrays.sort(sample);
+    int distinct = 1;
+    for (int i = 1; i < SAMPLE_SIZE; i++) {
+      if (sample[i - 1] != sample[i]) {
+        distinct++;
+      }
+    }
+    return decide("int", size, descents, distinct, Engine.PDQ, Engine.PDQ, Engine.PDQ, pool);
+  }
+
+  /**
+   * Inspect the longs and choose a sort for them without sorting.
+   *
+   * @param items the input
+   * @param pool pool the parallel sort would run on
+   * @return what was found and chosen
+   */
+  public static Decision analyze(long[] items, ForkJoinPool pool) {
+    int size = items.length;
+    if (size <= INSERTION_MAX) {
+      return new Decision("long", size, 0, 1, Engine.INSERTION);
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int descents = 0;
+    for (int i = 0; i < SAMPLE_SIZE; i++) {
+      int pair = random.nextInt(size - 1);
+      if (items[pair + 1] < items[pair]) {
+        descents++;
+      }
+    }
+    long[] sample = new long[SAMPLE_SIZE];
+    for (int i = 0; i < SAMPLE_SIZE; i++) {
+      sample[i] = items[random.nextInt(size)];
+    }
+    Arrays.sort(sample);
+    int distinct = 1;
+    for (int i = 1; i < SAMPLE_SIZE; i++) {
+      if (sample[i - 1] != sample[i]) {
+        distinct++;
+      }
+    }
+    return decide("long", size, descents, distinct, Engine.PDQ, Engine.PDQ, Engine.PDQ, pool);
+  }
+
+  /**
+   * Choose a sort from the sample counts, given the type's sorts for nearly sorted input, for
+   * duplicate-heavy input and for everything else.
+   */
+  private static Decision decide(String type, int size, int descents, int distinct,
+      Engine presorted, Engine duplicates, Engine general, ForkJoinPool pool) {
+    double descentFraction = (double) descents / SAMPLE_SIZE;
+    double distinctFraction = (double) distinct / SAMPLE_SIZE;
+    Engine engine;
+    if (descentFraction <= PRESORTED_DESCENTS || descentFraction >= 1 - PRESORTED_DESCENTS) {
+      engine = presorted;
+    } else if (distinctFraction <= FEW_DISTINCT) {
+      engine = duplicates;
+    } else if (size >= PARALLEL_MIN && pool.getParallelism() > 1) {
+      engine = Engine.PARALLEL_SAMPLE;
+    } else {
+      engine = general;
+    }
+    return new Decision(type, size, descentFraction, distinctFraction, engine);
+  }
+
+  private static Decision log(Decision decision) {
+    if (LOG.isLoggable(System.Logger.Level.DEBUG)) {
+      LOG.log(System.Logger.Level.DEBUG, decision.toString());
+    }
+    return decision;
+  }
+}
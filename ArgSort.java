@@ -0,0 +1,627 @@
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Argsort: sorts that return the permutation putting the keys in order instead of moving them.
+ * order[i] is the index of the key that belongs at position i, so one sort of a key column can
+ * reorder any number of parallel columns, as in a columnar table, and the keys themselves are never
+ * moved.
+ *
+ * <p>The stable sorts keep equal keys in index order; the unstable ones may not, but need no merge
+ * buffer and are quicker. Int keys are packed with their index into one long and so always come
+ * out stable. Rows can be ordered by several columns at once with
+ * {@link #argsortLexicographic(List)}, and a permutation is applied to columns with
+ * the reorder methods.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ */
+public class ArgSort {
+
+  /** Pair regions at or below this size are insertion sorted by the unstable sorts. */
+  private static final int INSERTION_THRESHOLD = 24;
+
+  /**
+   * Return the stable order of the keys. Each key is packed with its index into one long, so a
+   * primitive sort orders by key and then by index.
+   *
+   * @param keys the keys, which are not modified
+   * @return the indices of the keys in ascending key order
+   */
+  public static int[] argsort(int[] keys) {
+    int[] order = identity(keys.length);
+    SortContext context = SortContext.acquire();
+    try {
+      refine(keys, order, context);
+    } finally {
+      context.release();
+    }
+    return order;
+  }
+
+  /**
+   * Return the stable order of the keys.
+   *
+   * @param keys the keys, which are not modified
+   * @return the indices of the keys in ascending key order
+   */
+  public static int[] argsort(long[] keys) {
+    int[] order = identity(keys.length);
+    SortContext context = SortContext.acquire();
+    try {
+      refine(keys, order, context);
+    } finally {
+      context.release();
+    }
+    return order;
+  }
+
+  /**
+   * Return the stable order of the keys, as ordered by Double.compare: -0.0 before 0.0 and NaN
+   * after everything else.
+   *
+   * @param keys the keys, which are not modified
+   * @return the indices of the keys in ascending key order
+   */
+  public static int[] argsort(double[] keys) {
+    int[] order = identity(keys.length);
+    SortContext context = SortContext.acquire();
+    try {
+      refine(keys, order, context);
+    } finally {
+      context.release();
+    }
+    return order;
+  }
+
+  /**
+   * Return the stable order of the keys.
+   *
+   * @param keys the keys, which are not modified
+   * @return the indices of the keys in ascending key order
+   */
+  public static <T extends Comparable<? super T>> int[] argsort(T[] keys) {
+    return argsort(keys, Comparator.naturalOrder());
+  }
+
+  /**
+   * Return the stable order of the keys under the given comparator.
+   *
+   * @param keys the keys, which are not modified
+   * @param comparator ordering of the keys
+   * @return the indices of the keys in ascending key order
+   */
+  public static <T> int[] argsort(T[] keys, Comparator<? super T> comparator) {
+    int[] order = identity(keys.length);
+    SortContext context = SortContext.acquire();
+    try {
+      refine(keys, comparator, order, context);
+    } finally {
+      context.release();
+    }
+    return order;
+  }
+
+  /**
+   * Return an order of the keys in which equal keys may appear in any order.
+   *
+   * @param keys the keys, which are not modified
+   * @return the indices of the keys in ascending key order
+   */
+  public static int[] argsortUnstable(long[] keys) {
+    int size = keys.length;
+    int[] order = identity(size);
+    SortContext context = SortContext.acquire();
+    try {
+      long[] copy = context.longs(size);
+      System.arraycopy(keys, 0, copy, 0, size);
+      sortPairsUnstable(copy, order, 0, size - 1, depthLimit(size));
+    } finally {
+      context.release();
+    }
+    return order;
+  }
+
+  /**
+   * Return an order of the keys in which equal keys may appear in any order.
+   *
+   * @param keys the keys, which are not modified
+   * @return the indices of the keys in ascending key order
+   */
+  public static <T extends Comparable<? super T>> int[] argsortUnstable(T[] keys) {
+    return argsortUnstable(keys, Comparator.naturalOrder());
+  }
+
+  /**
+   * Return an order of the keys under the given comparator in which equal keys may appear in any
+   * order.
+   *
+   * @param keys the keys, which are not modified
+   * @param comparator ordering of the keys
+   * @return the indices of the keys in ascending key order
+   */
+  public static <T> int[] argsortUnstable(T[] keys, Comparator<? super T> comparator) {
+    int size = keys.length;
+    int[] order = identity(size);
+    SortContext context = SortContext.acquire();
+    try {
+      T[] copy = context.objects(size);
+      System.arraycopy(keys, 0, copy, 0, size);
+      sortPairsUnstable(copy, order, 0, size - 1, depthLimit(size), comparator);
+    } finally {
+      context.release();
+    }
+    return order;
+  }
+
+  /**
+   * Return the stable order of the rows of a table given as columns, comparing rows by the first
+   * column, then by the second where the first is equal, and so on. Each column is an int[],
+   * long[], double[] or an array of Comparable objects. The columns are stably sorted from the last
+   * to the first, each pass refining the order of the one before.
+   *
+   * @param keyColumns the columns, most significant first. A lone object column must be wrapped
+   *     with Collections.singletonList, since List.of would spread its elements into columns.
+   * @return the indices of the rows in ascending order
+   * @throws IllegalArgumentException if there are no columns, a column has an unsupported type or
+   *     the columns have different lengths
+   */
+  @SuppressWarnings("unchecked")
+  public static int[] argsortLexicographic(List<?> keyColumns) {
+    Object[] columns = columns(keyColumns);
+    int[] order = identity(rows(columns[0]));
+    SortContext context = SortContext.acquire();
+    try {
+      for (int c = columns.length - 1; c >= 0; c--) {
+        Object column = columns[c];
+        if (column instanceof int[]) {
+          refine((int[]) column, order, context);
+        } else if (column instanceof long[]) {
+          refine((long[]) column, order, context);
+        } else if (column instanceof double[]) {
+          refine((double[]) column, order, context);
+        } else {
+          refine((Comparable<Object>[]) column, Comparator.naturalOrder(), order, context);
+        }
+      }
+    } finally {
+      context.release();
+    }
+    return order;
+  }
+
+  /**
+   * Rearrange the column in place so that position i receives the value at order[i].
+   *
+   * @param order a permutation from one of the argsorts
+   * @param column the column to rearrange
+   * @throws IllegalArgumentException if the column and permutation lengths differ
+   */
+  public static void reorder(int[] order, int[] column) {
+    reorderAll(order, Collections.singletonList(column));
+  }
+
+  /**
+   * Rearrange the column in place so that position i receives the value at order[i].
+   *
+   * @param order a permutation from one of the argsorts
+   * @param column the column to rearrange
+   * @throws IllegalArgumentException if the column and permutation lengths differ
+   */
+  public static void reorder(int[] order, long[] column) {
+    reorderAll(order, Collections.singletonList(column));
+  }
+
+  /**
+   * Rearrange the column in place so that position i receives the value at order[i].
+   *
+   * @param order a permutation from one of the argsorts
+   * @param column the column to rearrange
+   * @throws IllegalArgumentException if the column and permutation lengths differ
+   */
+  public static void reorder(int[] order, double[] column) {
+    reorderAll(order, Collections.singletonList(column));
+  }
+
+  /**
+   * Rearrange the column in place so that position i receives the item at order[i].
+   *
+   * @param order a permutation from one of the argsorts
+   * @param column the column to rearrange
+   * @throws IllegalArgumentException if the column and permutation lengths differ
+   */
+  public static <T> void reorder(int[] order, T[] column) {
+    reorderAll(order, Collections.singletonList(column));
+  }
+
+  /**
+   * Rearrange each column in place so that position i receives the value at order[i]. Each column
+   * is gathered through a scratch buffer of its element type, which all columns of that type
+   * share, and copied back: reads follow the permutation but every write is sequential, where
+   * moving values around the permutation's cycles would make both reads and writes random.
+   *
+   * @param order a permutation from one of the argsorts
+   * @param tableColumns the columns, each an int[], long[], double[] or object array. A lone
+   *     object column must be wrapped with Collections.singletonList, or passed to reorder.
+   * @throws IllegalArgumentException if there are no columns, or a column has an unsupported type
+   *     or a length different from the permutation's
+   */
+  public static void reorderAll(int[] order, List<?> tableColumns) {
+    Object[] columns = columns(tableColumns);
+    int size = order.length;
+    if (rows(columns[0]) != size) {
+      throw new IllegalArgumentException("Columns must have as many rows as the permutation.");
+    }
+    SortContext context = SortContext.acquire();
+    try {
+      for (Object column : columns) {
+        if (column instanceof int[]) {
+          int[] values = (int[]) column;
+          int[] gathered = context.ints(size);
+          for (int i = 0; i < size; i++) {
+            gathered[i] = values[order[i]];
+          }
+          System.arraycopy(gathered, 0, values, 0, size);
+        } else if (column instanceof long[]) {
+          long[] values = (long[]) column;
+          long[] gathered = context.longs(size);
+          for (int i = 0; i < size; i++) {
+            gathered[i] = values[order[i]];
+          }
+          System.arraycopy(gathered, 0, values, 0, size);
+        } else if (column instanceof double[]) {
+          double[] values = (double[]) column;
+          double[] gathered = context.doubles(size);
+          for (int i = 0; i < size; i++) {
+            gathered[i] = values[order[i]];
+          }
+          System.arraycopy(gathered, 0, values, 0, size);
+        } else {
+          Object[] values = (Object[]) column;
+          Object[] gathered = context.objects(size);
+          for (int i = 0; i < size; i++) {
+            gathered[i] = values[order[i]];
+          }
+          System.arraycopy(gathered, 0, values, 0, size);
+        }
+      }
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Stably reorder order by the keys it points at: afterwards the keys at order[0], order[1], ...
+   * ascend, and entries with equal keys keep their earlier relative order.
+   */
+  private static void refine(int[] keys, int[] order, SortContext context) {
+    int size = order.length;
+    long[] packed = context.longs(size);
+    for (int i = 0; i < size; i++) {
+      packed[i] = ((long) keys[order[i]] << 32) | i;
+    }
+    PdqSort.pdqSort(packed, 0, size - 1);
+
+    int[] refined = context.ints(size);
+    for (int i = 0; i < size; i++) {
+      refined[i] = order[(int) packed[i]];
+    }
+    System.arraycopy(refined, 0, order, 0, size);
+  }
+
+  /**
+   * Long-key version of {@link #refine(int[], int[], SortContext)}.
+   */
+  private static void refine(long[] keys, int[] order, SortContext context) {
+    int size = order.length;
+    long[] gathered = context.longs(size + (size + 1) / 2);
+    for (int i = 0; i < size; i++) {
+      gathered[i] = keys[order[i]];
+    }
+    refinePairs(gathered, order, context);
+  }
+
+  /**
+   * Double-key version of {@link #refine(int[], int[], SortContext)}. The keys are mapped to longs
+   * that compare as Double.compare does.
+   */
+  private static void refine(double[] keys, int[] order, SortContext context) {
+    int size = order.length;
+    long[] gathered = context.longs(size + (size + 1) / 2);
+    for (int i = 0; i < size; i++) {
+      long bits = Double.doubleToLongBits(keys[order[i]]);
+      // Negative doubles order backwards as longs; flipping all but the sign bit mends that.
+      gathered[i] = bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+    refinePairs(gathered, order, context);
+  }
+
+  /**
+   * Object-key version of {@link #refine(int[], int[], SortContext)}.
+   */
+  private static <T> void refine(T[] keys, Comparator<? super T> comparator, int[] order,
+      SortContext context) {
+    int size = order.length;
+    T[] gathered = context.objects(size + (size + 1) / 2);
+    int[] positions = context.ints(size + (size + 1) / 2);
+    for (int i = 0; i < size; i++) {
+      gathered[i] = keys[order[i]];
+      positions[i] = i;
+    }
+    KeySorts.sortPairs(gathered, positions, 0, size - 1, size, comparator);
+    for (int i = 0; i < size; i++) {
+      positions[i] = order[positions[i]];
+    }
+    System.arraycopy(positions, 0, order, 0, size);
+  }
+
+  /**
+   * Finish a long or double refine: stably sort the gathered keys, which are followed by room for
+   * half of them, with their positions in order, and replace order by the result.
+   */
+  private static void refinePairs(long[] gathered, int[] order, SortContext context) {
+    int size = order.length;
+    int[] positions = context.ints(size + (size + 1) / 2);
+    for (int i = 0; i < size; i++) {
+      positions[i] = i;
+    }
+    KeySorts.sortPairs(gathered, positions, 0, size - 1, size);
+    for (int i = 0; i < size; i++) {
+      positions[i] = order[positions[i]];
+    }
+    System.arraycopy(positions, 0, order, 0, size);
+  }
+
+  /**
+   * Return the columns as an array, checking their types and lengths.
+   */
+  private static Object[] columns(List<?> list) {
+    if (list.isEmpty()) {
+      throw new IllegalArgumentException("At least one column is required.");
+    }
+    Object[] columns = list.toArray();
+    int rows = rows(columns[0]);
+    for (Object column : columns) {
+      if (rows(column) != rows) {
+        throw new IllegalArgumentException("Columns must all have the same number of rows.");
+      }
+    }
+    return columns;
+  }
+
+  /**
+   * Return the length of a column.
+   *
+   * @throws IllegalArgumentException if the column is not a supported array
+   */
+  private static int rows(Object column) {
+    if (column instanceof int[]) {
+      return ((int[]) column).length;
+    } else if (column instanceof long[]) {
+      return ((long[]) column).length;
+    } else if (column instanceof double[]) {
+      return ((double[]) column).length;
+    } else if (column instanceof Object[]) {
+      return ((Object[]) column).length;
+    }
+    throw new IllegalArgumentException("Columns must be int, long, double or object arrays.");
+  }
+
+  private static int[] identity(int size) {
+    int[] order = new int[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    return order;
+  }
+
+  private static int depthLimit(int size) {
+    return 2 * (31 - Integer.numberOfLeadingZeros(Math.max(size, 1)));
+  }
+
+  /**
+   * Introsort of keys[start..end] carrying the parallel indices along: middle-of-three pivots,
+   * heapsort once the depth limit is spent, insertion sort for small regions.
+   */
+  private static void sortPairsUnstable(long[] keys, int[] indices, int start, int end,
+      int depthLimit) {
+    while (end - start + 1 > INSERTION_THRESHOLD) {
+      if (depthLimit == 0) {
+        heapSortPairs(keys, indices, start, end);
+        return;
+      }
+      depthLimit--;
+
+      int mid = start + (end - start) / 2;
+      sortThree(keys, indices, start, mid, end);
+      long pivot = keys[mid];
+      int left = start;
+      int right = end;
+      while (true) {
+        while (keys[left] < pivot) {
+          left++;
+        }
+        while (pivot < keys[right]) {
+          right--;
+        }
+        if (left >= right) {
+          break;
+        }
+        swap(keys, indices, left++, right--);
+      }
+
+      if (right - start < end - right) {
+        sortPairsUnstable(keys, indices, start, right, depthLimit);
+        start = right + 1;
+      } else {
+        sortPairsUnstable(keys, indices, right + 1, end, depthLimit);
+        end = right;
+      }
+    }
+
+    for (int i = start + 1; i <= end; i++) {
+      long key = keys[i];
+      int index = indices[i];
+      int j = i;
+      while (j > start && key < keys[j - 1]) {
+        keys[j] = keys[j - 1];
+        indices[j] = indices[j - 1];
+        j--;
+      }
+      keys[j] = key;
+      indices[j] = index;
+    }
+  }
+
+  private static void sortThree(long[] keys, int[] indices, int a, int b, int c) {
+    if (keys[b] < keys[a]) {
+      swap(keys, indices, a, b);
+    }
+    if (keys[c] < keys[b]) {
+      swap(keys, indices, b, c);
+      if (keys[b] < keys[a]) {
+        swap(keys, indices, a, b);
+      }
+    }
+  }
+
+  private static void heapSortPairs(long[] keys, int[] indices, int start, int end) {
+    int size = end - start + 1;
+    for (int node = size / 2 - 1; node >= 0; node--) {
+      siftDown(keys, indices, start, node, size);
+    }
+    for (int last = size - 1; last > 0; last--) {
+      swap(keys, indices, start, start + last);
+      siftDown(keys, indices, start, 0, last);
+    }
+  }
+
+  private static void siftDown(long[] keys, int[] indices, int start, int node, int size) {
+    int child = 2 * node + 1;
+    while (child < size) {
+      if (child + 1 < size && keys[start + child] < keys[start + child + 1]) {
+        child++;
+      }
+      if (keys[start + node] >= keys[start + child]) {
+        return;
+      }
+      swap(keys, indices, start + node, start + child);
+      node = child;
+      child = 2 * node + 1;
+    }
+  }
+
+  private static void swap(long[] keys, int[] indices, int i, int j) {
+    long key = keys[i];
+    keys[i] = keys[j];
+    keys[j] = key;
+    int index = indices[i];
+    indices[i] = indices[j];
+    indices[j] = index;
+  }
+
+  /**
+   * Object-key version of {@link #sortPairsUnstable(long[], int[], int, int, int)}.
+   */
+  private static <K> void sortPairsUnstable(K[] keys, int[] indices, int start, int end,
+      int depthLimit, Comparator<? super K> comparator) {
+    while (end - start + 1 > INSERTION_THRESHOLD) {
+      if (depthLimit == 0) {
+        heapSortPairs(keys, indices, start, end, comparator);
+        return;
+      }
+      depthLimit--;
+
+      int mid = start + (end - start) / 2;
+      sortThree(keys, indices, start, mid, end, comparator);
+      K pivot = keys[mid];
+      int left = start;
+      int right = end;
+      while (true) {
+        while (comparator.compare(keys[left], pivot) < 0) {
+          left++;
+        }
+        while (comparator.compare(pivot, keys[right]) < 0) {
+          right--;
+        }
+        if (left >= right) {
+          break;
+        }
+        swap(keys, indices, left++, right--);
+      }
+
+      if (right - start < end - right) {
+        sortPairsUnstable(keys, indices, start, right, depthLimit, comparator);
+        start = right + 1;
+      } else {
+        sortPairsUnstable(keys, indices, right + 1, end, depthLimit, comparator);
+        end = right;
+      }
+    }
+
+    for (int i = start + 1; i <= end; i++) {
+      K key = keys[i];
+      int index = indices[i];
+      int j = i;
+      while (j > start && comparator.compare(key, keys[j - 1]) < 0) {
+        keys[j] = keys[j - 1];
+        indices[j] = indices[j - 1];
+        j--;
+      }
+      keys[j] = key;
+      indices[j] = index;
+    }
+  }
+
+  private static <K> void sortThree(K[] keys, int[] indices, int a, int b, int c,
+      Comparator<? super K> comparator) {
+    if (comparator.compare(keys[b], keys[a]) < 0) {
+      swap(keys, indices, a, b);
+    }
+    if (comparator.compare(keys[c], keys[b]) < 0) {
+      swap(keys, indices, b, c);
+      if (comparator.compare(keys[b], keys[a]) < 0) {
+        swap(keys, indices, a, b);
+      }
+    }
+  }
+
+  private static <K> void heapSortPairs(K[] keys, int[] indices, int start, int end,
+      Comparator<? super K> comparator) {
+    int size = end - start + 1;
+    for (int node = size / 2 - 1; node >= 0; node--) {
+      siftDown(keys, indices, start, node, size, comparator);
+    }
+    for (int last = size - 1; last > 0; last--) {
+      swap(keys, indices, start, start + last);
+      siftDown(keys, indices, start, 0, last, comparator);
+    }
+  }
+
+  private static <K> void siftDown(K[] keys, int[] indices, int start, int node, int size,
+      Comparator<? super K> comparator) {
+    int child = 2 * node + 1;
+    while (child < size) {
+      if (child + 1 < size
+          && comparator.compare(keys[start + child], keys[start + child + 1]) < 0) {
+        child++;
+      }
+      if (comparator.compare(keys[start + node], keys[start + child]) >= 0) {
+        return;
+      }
+      swap(keys, indices, start + node, start + child);
+      node = child;
+      child = 2 * node + 1;
+    }
+  }
+
+  private static <K> void swap(K[] keys, int[] indices, int i, int j) {
+    K key = keys[i];
+    keys[i] = keys[j];
+    keys[j] = key;
+    int index = indices[i];
+    indices[i] = indices[j];
+    indices[j] = index;
+  }
+}
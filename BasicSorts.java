@@ -1,5 +1,7 @@
+import java.util.Comparator;
+
 /**
- * Basic n^2 sorting algorithms and insertionSubsort.
+ * Basic n^2 sorting algorithms and insertionSubsort, for object and primitive arrays.
  *
  * @author Nick Simoncelli and Nathan Sprague
  * @version pa2
@@ -16,37 +18,159 @@ public class BasicSorts {
    * @param items The array to sort.
    */
   public static <T extends Comparable<T>> void insertionSort(T[] items) {
+    insertionSort(items, Comparator.naturalOrder());
+  }
+
+  /**
+   * Sort the given array using insertion sort, ordering items with the given comparator.
+   *
+   * @param items The array to sort.
+   * @param comparator The ordering to sort by.
+   */
+  public static <T> void insertionSort(T[] items, Comparator<? super T> comparator) {
     for (int i = 1; i < items.length; i++) {
       T itemToShift = items[i];
 
       // Displace any smaller items one cell to the right.
       int j = i;
-      while (j > 0 && itemToShift.compareTo(items[j - 1]) < 0) {
+      while (j > 0 && comparator.compare(itemToShift, items[j - 1]) < 0) {
         items[j] = items[j - 1];
         j--;
       }
 
+      if (SortMetrics.ENABLED) {
+        SortMetrics.moves(i - j + 1);
+      }
       items[j] = itemToShift;
     }
   }
 
   /**
-   * Sort only the given window of the array.
+   * Sort only the given window of the array in place.
    *
    * @param items The array to partially sort.
    * @param start The inclusive starting index of the window.
    * @param end The inclusive ending index of the window.
    */
   public static <T extends Comparable<T>> void insertionSubsort(T[] items, int start, int end) {
-    int size = end - start + 1;
-    @SuppressWarnings("unchecked")
-    T[] tempArray = (T[]) new Comparable[size];
-    for (int i = 0; i < size; i++) {
-      tempArray[i] = items[i + start];
+    insertionSubsort(items, start, end, Comparator.naturalOrder());
+  }
+
+  /**
+   * Sort only the given window of the array in place, ordering items with the given comparator.
+   *
+   * @param items The array to partially sort.
+   * @param start The inclusive starting index of the window.
+   * @param end The inclusive ending index of the window.
+   * @param comparator The ordering to sort by.
+   */
+  public static <T> void insertionSubsort(T[] items, int start, int end,
+      Comparator<? super T> comparator) {
+    for (int i = start + 1; i <= end; i++) {
+      T itemToShift = items[i];
+
+      // Displace any smaller items one cell to the right, staying inside the window.
+      int j = i;
+      while (j > start && comparator.compare(itemToShift, items[j - 1]) < 0) {
+        items[j] = items[j - 1];
+        j--;
+      }
+
+      if (SortMetrics.ENABLED) {
+        SortMetrics.moves(i - j + 1);
+      }
+      items[j] = itemToShift;
     }
-    insertionSort(tempArray);
-    for (int j = 0; j < size; j++) {
-      items[j + start] = tempArray[j];
+  }
+
+  /**
+   * Sort the given array of ints using insertion sort.
+   *
+   * @param items The array to sort.
+   */
+  public static void insertionSort(int[] items) {
+    insertionSubsort(items, 0, items.length - 1);
+  }
+
+  /**
+   * Sort the given array of longs using insertion sort.
+   *
+   * @param items The array to sort.
+   */
+  public static void insertionSort(long[] items) {
+    insertionSubsort(items, 0, items.length - 1);
+  }
+
+  /**
+   * Sort the given array of doubles using insertion sort. Values are ordered as by
+   * {@link Double#compare}.
+   *
+   * @param items The array to sort.
+   */
+  public static void insertionSort(double[] items) {
+    insertionSubsort(items, 0, items.length - 1);
+  }
+
+  /**
+   * Sort only the given window of the array in place.
+   *
+   * @param items The array to partially sort.
+   * @param start The inclusive starting index of the window.
+   * @param end The inclusive ending index of the window.
+   */
+  public static void insertionSubsort(int[] items, int start, int end) {
+    for (int i = start + 1; i <= end; i++) {
+      int itemToShift = items[i];
+
+      int j = i;
+      while (j > start && itemToShift < items[j - 1]) {
+        items[j] = items[j - 1];
+        j--;
+      }
+
+      items[j] = itemToShift;
+    }
+  }
+
+  /**
+   * Sort only the given window of the array in place.
+   *
+   * @param items The array to partially sort.
+   * @param start The inclusive starting index of the window.
+   * @param end The inclusive ending index of the window.
+   */
+  public static void insertionSubsort(long[] items, int start, int end) {
+    for (int i = start + 1; i <= end; i++) {
+      long itemToShift = items[i];
+
+      int j = i;
+      while (j > start && itemToShift < items[j - 1]) {
+        items[j] = items[j - 1];
+        j--;
+      }
+
+      items[j] = itemToShift;
+    }
+  }
+
+  /**
+   * Sort only the given window of the array in place.
+   *
+   * @param items The array to partially sort.
+   * @param start The inclusive starting index of the window.
+   * @param end The inclusive ending index of the window.
+   */
+  public static void insertionSubsort(double[] items, int start, int end) {
+    for (int i = start + 1; i <= end; i++) {
+      double itemToShift = items[i];
+
+      int j = i;
+      while (j > start && Double.compare(itemToShift, items[j - 1]) < 0) {
+        items[j] = items[j - 1];
+        j--;
+      }
+
+      items[j] = itemToShift;
     }
   }
 
@@ -56,15 +180,28 @@ public class BasicSorts {
    * @param items The array to sort.
    */
   public static <T extends Comparable<T>> void selectionSort(T[] items) {
+    selectionSort(items, Comparator.naturalOrder());
+  }
+
+  /**
+   * Selection sort the given array, ordering items with the given comparator.
+   *
+   * @param items The array to sort.
+   * @param comparator The ordering to sort by.
+   */
+  public static <T> void selectionSort(T[] items, Comparator<? super T> comparator) {
     for (int i = 0; i < items.length - 1; i++) {
       int indexSmallest = i;
 
       for (int j = i + 1; j < items.length; j++) {
-        if (items[j].compareTo(items[indexSmallest]) < 0) {
+        if (comparator.compare(items[j], items[indexSmallest]) < 0) {
           indexSmallest = j;
         }
       }
 
+      if (SortMetrics.ENABLED) {
+        SortMetrics.moves(2);
+      }
       T temp = items[i];
       items[i] = items[indexSmallest];
       items[indexSmallest] = temp;
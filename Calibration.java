@@ -0,0 +1,211 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures, on the current machine, the region size at which splitting stops paying off and
+ * insertion sort should take over, for the adaptive merge sort and for the introspective sort and
+ * for each element type they sort. The results are saved as a {@link TuningProfile}, which the
+ * sorts load the next time the JVM starts.
+ *
+ * <p>Each candidate size k is timed two ways on many regions of random items: insertion sorting
+ * the region, or doing what the sort does when it does not insertion sort: two insertion sorted
+ * halves and a merge, or a partition and two insertion sorted sides. The threshold is the smallest
+ * candidate from which splitting is faster. Int and long regions are sorted with SmallSorts, so
+ * the thresholds suit whichever leaf sort the JVM uses.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ */
+public class Calibration {
+  private static final int[] CANDIDATES = {4, 6, 8, 12, 16, 24, 32, 48, 64, 96, 128, 192, 256,
+      384, 512};
+  private static final int ITEMS = 1 << 16;
+  private static final int ROUNDS = 9;
+
+  /**
+   * Work on one region, given by its inclusive bounds.
+   */
+  @FunctionalInterface
+  private interface RegionSort {
+    void sort(int start, int end);
+  }
+
+  /**
+   * The ways of sorting regions of one element type, all working on the same array, which reset
+   * refills with the same random items.
+   */
+  private static class Workload {
+    private final String type;
+    private final Runnable reset;
+    private final RegionSort insertion;
+    private final RegionSort merge;
+    private final RegionSort partition;
+
+    Workload(String type, Runnable reset, RegionSort insertion, RegionSort merge,
+        RegionSort partition) {
+      this.type = type;
+      this.reset = reset;
+      this.insertion = insertion;
+      this.merge = merge;
+      this.partition = partition;
+    }
+  }
+
+  /**
+   * Measure every threshold.
+   *
+   * @return the thresholds by TuningProfile key
+   */
+  public static Map<String, Integer> calibrate() {
+    Random random = new Random();
+    Map<String, Integer> thresholds = new LinkedHashMap<>();
+    for (Workload workload : new Workload[] {objects(random), ints(random), longs(random),
+        doubles(random)}) {
+      // Merge sorts insertion sort regions below the threshold; introsort those at or below it.
+      thresholds.put("merge.insertion." + workload.type,
+          crossover(workload, workload.merge));
+      thresholds.put("introspective.insertion." + workload.type,
+          crossover(workload, workload.partition) - 1);
+    }
+    return thresholds;
+  }
+
+  /**
+   * Calibrate and save the profile to the file given as the only argument, or to the default
+   * profile location.
+   *
+   * @param args optional path of the profile file
+   * @throws IOException if the profile cannot be written
+   */
+  public static void main(String[] args) throws IOException {
+    Path file = args.length > 0 ? Path.of(args[0]) : TuningProfile.path();
+    Map<String, Integer> thresholds = calibrate();
+    for (Map.Entry<String, Integer> entry : thresholds.entrySet()) {
+      System.out.println(entry.getKey() + " = " + entry.getValue());
+    }
+    TuningProfile.save(file, thresholds);
+    System.out.println("Saved " + TuningProfile.machine() + " profile to " + file);
+  }
+
+  /**
+   * Return the smallest candidate size from which splitting beats insertion sort, at that size and
+   * the next, or the largest candidate if it never does.
+   */
+  private static int crossover(Workload workload, RegionSort split) {
+    // Let the JIT compile both ways before anything is timed.
+    for (int round = 0; round < ROUNDS; round++) {
+      time(workload, split, CANDIDATES[CANDIDATES.length / 2]);
+      time(workload, workload.insertion, CANDIDATES[CANDIDATES.length / 2]);
+    }
+
+    boolean[] won = new boolean[CANDIDATES.length];
+    for (int i = 0; i < CANDIDATES.length; i++) {
+      // Alternate the two so that a slow spell on the machine does not favour one of them.
+      long splitBest = Long.MAX_VALUE;
+      long insertionBest = Long.MAX_VALUE;
+      for (int round = 0; round < ROUNDS; round++) {
+        splitBest = Math.min(splitBest, time(workload, split, CANDIDATES[i]));
+        insertionBest = Math.min(insertionBest, time(workload, workload.insertion, CANDIDATES[i]));
+      }
+      won[i] = splitBest < insertionBest;
+    }
+    // Requiring two wins in a row keeps one noisy measurement from setting the threshold.
+    for (int i = 0; i < CANDIDATES.length - 1; i++) {
+      if (won[i] && won[i + 1]) {
+        return CANDIDATES[i];
+      }
+    }
+    return CANDIDATES[CANDIDATES.length - 1];
+  }
+
+  /**
+   * Return the nanoseconds taken to sort the freshly reset array region by region.
+   */
+  private static long time(Workload workload, RegionSort sort, int size) {
+    workload.reset.run();
+    long start = System.nanoTime();
+    for (int region = 0; region + size <= ITEMS; region += size) {
+      sort.sort(region, region + size - 1);
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static Workload objects(Random random) {
+    Integer[] source = Generators.generateRandom(ITEMS, random);
+    Integer[] items = new Integer[ITEMS];
+    Integer[] temp = new Integer[ITEMS];
+    return new Workload("object", () -> System.arraycopy(source, 0, items, 0, ITEMS),
+        (start, end) -> BasicSorts.insertionSubsort(items, start, end),
+        (start, end) -> {
+          int mid = (start + end) / 2;
+          BasicSorts.insertionSubsort(items, start, mid);
+          BasicSorts.insertionSubsort(items, mid + 1, end);
+          MergeSortImproved.merge(items, start, mid, end, temp);
+        },
+        (start, end) -> {
+          int split = QuickSort.partition(items, start, end);
+          BasicSorts.insertionSubsort(items, start, split);
+          BasicSorts.insertionSubsort(items, split + 1, end);
+        });
+  }
+
+  private static Workload ints(Random random) {
+    int[] source = Generators.unboxInts(Generators.generateRandom(ITEMS, random));
+    int[] items = new int[ITEMS];
+    int[] temp = new int[ITEMS];
+    return new Workload("int", () -> System.arraycopy(source, 0, items, 0, ITEMS),
+        (start, end) -> SmallSorts.subsort(items, start, end),
+        (start, end) -> {
+          int mid = (start + end) / 2;
+          SmallSorts.subsort(items, start, mid);
+          SmallSorts.subsort(items, mid + 1, end);
+          MergeSortImproved.merge(items, start, mid, end, temp);
+        },
+        (start, end) -> {
+          int split = QuickSort.partition(items, start, end);
+          SmallSorts.subsort(items, start, split);
+          SmallSorts.subsort(items, split + 1, end);
+        });
+  }
+
+  private static Workload longs(Random random) {
+    long[] source = Generators.unboxLongs(Generators.generateRandom(ITEMS, random));
+    long[] items = new long[ITEMS];
+    long[] temp = new long[ITEMS];
+    return new Workload("long", () -> System.arraycopy(source, 0, items, 0, ITEMS),
+        (start, end) -> SmallSorts.subsort(items, start, end),
+        (start, end) -> {
+          int mid = (start + end) / 2;
+          SmallSorts.subsort(items, start, mid);
+          SmallSorts.subsort(items, mid + 1, end);
+          MergeSortImproved.merge(items, start, mid, end, temp);
+        },
+        (start, end) -> {
+          int split = QuickSort.partition(items, start, end);
+          SmallSorts.subsort(items, start, split);
+          SmallSorts.subsort(items, split + 1, end);
+        });
+  }
+
+  private static Workload doubles(Random random) {
+    double[] source = Generators.unboxDoubles(Generators.generateRandom(ITEMS, random));
+    double[] items = new double[ITEMS];
+    double[] temp = new double[ITEMS];
+    return new Workload("double", () -> System.arraycopy(source, 0, items, 0, ITEMS),
+        (start, end) -> BasicSorts.insertionSubsort(items, start, end),
+        (start, end) -> {
+          int mid = (start + end) / 2;
+          BasicSorts.insertionSubsort(items, start, mid);
+          BasicSorts.insertionSubsort(items, mid + 1, end);
+          MergeSortImproved.merge(items, start, mid, end, temp);
+        },
+        (start, end) -> {
+          int split = QuickSort.partition(items, start, end);
+          BasicSorts.insertionSubsort(items, start, split);
+          BasicSorts.insertionSubsort(items, split + 1, end);
+        });
+  }
+}
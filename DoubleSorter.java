@@ -0,0 +1,11 @@
+/**
+ * Functional interface for sorting methods that operate directly on double arrays.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ *
+ */
+@FunctionalInterface
+public interface DoubleSorter {
+  void sort(double[] items);
+}
@@ -1,4 +1,4 @@
-import java.util.List;
+import java.io.IOException;
 
 /**
  * Driver class.
@@ -12,19 +12,14 @@ import java.util.List;
  */
 public class Driver {
   /**
-   * Main method to create and run SortProfiler objects to decide the correct value for
-   * MAX_VALUE_THRESHOLD.
+   * Main method to measure MAX_VALUE_THRESHOLD and the other insertion sort thresholds on this
+   * machine and save them as its tuning profile, which the sorts load at startup.
    *
-   * @param args command-line arguments
+   * @param args optional path of the profile file
+   * @throws IOException if the profile cannot be written
    */
-  public static void main(String[] args) {
-    SortProfiler mergesortHalf = new SortProfiler(List.of(SortProfiler.parseSort("merge_half")),
-        List.of("MergesortHalf"), 100, 5, 150, 1000, Generators::generateEvil);
-    mergesortHalf.run(System.out);
-    System.out.println("");
-    SortProfiler insertion = new SortProfiler(List.of(SortProfiler.parseSort("insertion")),
-        List.of("Insertion"), 100, 5, 150, 1000, Generators::generateEvil);
-    insertion.run(System.out);
+  public static void main(String[] args) throws IOException {
+    Calibration.main(args);
   }
 
 }
@@ -0,0 +1,371 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * External merge sort for files of fixed-width binary records that are too large to sort in
+ * memory. Each record is ordered by a signed, big-endian 32-bit key at a fixed offset, and equal
+ * keys keep their input order.
+ *
+ * <p>The sort runs in two phases. Run generation memory-maps one budget-sized chunk of the input
+ * at a time, packs each record's key and index into a long, sorts those longs with an in-memory
+ * LongSorter and writes the records in that order to a temporary run file. The merge phase then
+ * combines up to fanIn runs at a time with a loser tree, streaming each run through its own large
+ * buffer, until a single merge writes the output file.
+ *
+ * <p>The memory budget bounds the input bytes sorted per run. The heap additionally needs about
+ * 16 bytes per record of a run for the packed keys and the sorter's scratch space.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ */
+public class ExternalSort {
+  private final int recordSize;
+  private final int keyOffset;
+  private final long memoryBudget;
+  private final int fanIn;
+  private final Path tempDir;
+  private final LongSorter runSorter;
+
+  /**
+   * Create an external sort that sorts runs with LSD radix sort.
+   *
+   * @param recordSize bytes per record
+   * @param keyOffset offset of the 4-byte key within each record
+   * @param memoryBudget bytes of input sorted per run, also split among the merge buffers
+   * @param fanIn largest number of runs merged at once
+   * @param tempDir directory for run files
+   */
+  public ExternalSort(int recordSize, int keyOffset, long memoryBudget, int fanIn, Path tempDir) {
+    this(recordSize, keyOffset, memoryBudget, fanIn, tempDir, RadixSort::radixSort);
+  }
+
+  /**
+   * Create an external sort.
+   *
+   * @param recordSize bytes per record
+   * @param keyOffset offset of the 4-byte key within each record
+   * @param memoryBudget bytes of input sorted per run, also split among the merge buffers
+   * @param fanIn largest number of runs merged at once
+   * @param tempDir directory for run files
+   * @param runSorter in-memory sort applied to the packed keys of each run
+   */
+  public ExternalSort(int recordSize, int keyOffset, long memoryBudget, int fanIn, Path tempDir,
+      LongSorter runSorter) {
+    if (recordSize < 4) {
+      throw new IllegalArgumentException("Records must have room for a 4-byte key.");
+    }
+    if (keyOffset < 0 || keyOffset > recordSize - 4) {
+      throw new IllegalArgumentException("Key must lie within the record.");
+    }
+    if (fanIn < 2) {
+      throw new IllegalArgumentException("Fan-in must be at least two.");
+    }
+    if (memoryBudget < (long) recordSize * (fanIn + 1)) {
+      throw new IllegalArgumentException("Memory budget must hold a record per merge buffer.");
+    }
+
+    this.recordSize = recordSize;
+    this.keyOffset = keyOffset;
+    this.memoryBudget = memoryBudget;
+    this.fanIn = fanIn;
+    this.tempDir = tempDir;
+    this.runSorter = runSorter;
+  }
+
+  /**
+   * Sort the records of the input file into the output file. The input is not modified.
+   *
+   * @param input file of records
+   * @param output file to create or replace with the sorted records
+   * @throws IOException if a file cannot be read or written
+   * @throws IllegalArgumentException if the input length is not a multiple of the record size
+   */
+  public void sort(Path input, Path output) throws IOException {
+    // Every run file created, recorded before anything that can throw so that none is left behind.
+    List<Path> created = new ArrayList<>();
+    try {
+      List<Path> runs = generateRuns(input, created);
+      while (runs.size() > fanIn) {
+        List<Path> merged = new ArrayList<>();
+        for (int first = 0; first < runs.size(); first += fanIn) {
+          List<Path> group = runs.subList(first, Math.min(first + fanIn, runs.size()));
+          Path run = newRun(created);
+          merged.add(run);
+          merge(group, run);
+          for (Path used : group) {
+            Files.delete(used);
+          }
+        }
+        runs = merged;
+      }
+
+      if (runs.size() == 1) {
+        Files.move(runs.get(0), output, StandardCopyOption.REPLACE_EXISTING);
+      } else {
+        merge(runs, output);
+      }
+    } finally {
+      for (Path run : created) {
+        Files.deleteIfExists(run);
+      }
+    }
+  }
+
+  /**
+   * Split the input into sorted run files of at most one memory budget each, adding each file to
+   * the created list as soon as it exists.
+   */
+  private List<Path> generateRuns(Path input, List<Path> created) throws IOException {
+    List<Path> runs = new ArrayList<>();
+    try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+      long length = in.size();
+      if (length % recordSize != 0) {
+        throw new IllegalArgumentException("Input length is not a multiple of the record size.");
+      }
+      long runRecords = Math.min(memoryBudget, Integer.MAX_VALUE) / recordSize;
+      if (length == 0) {
+        runs.add(newRun(created));
+        return runs;
+      }
+
+      long[] packed = null;
+      for (long position = 0; position < length; position += runRecords * recordSize) {
+        int records = (int) Math.min(runRecords, (length - position) / recordSize);
+        MappedByteBuffer chunk =
+            in.map(FileChannel.MapMode.READ_ONLY, position, (long) records * recordSize);
+        if (packed == null || packed.length != records) {
+          packed = new long[records];
+        }
+        for (int i = 0; i < records; i++) {
+          packed[i] = ((long) chunk.getInt(i * recordSize + keyOffset) << 32) | i;
+        }
+        runSorter.sort(packed);
+
+        Path run = newRun(created);
+        runs.add(run);
+        try (RunWriter writer = new RunWriter(run, bufferSize())) {
+          for (int i = 0; i < records; i++) {
+            writer.write(chunk, (int) packed[i] * recordSize);
+          }
+        }
+      }
+    }
+    return runs;
+  }
+
+  /**
+   * Create an empty run file in the temporary directory and record it in the created list.
+   */
+  private Path newRun(List<Path> created) throws IOException {
+    Path run = Files.createTempFile(tempDir, "run", ".bin");
+    created.add(run);
+    return run;
+  }
+
+  /**
+   * Merge the given sorted runs into a single output file.
+   */
+  private void merge(List<Path> runs, Path output) throws IOException {
+    RunReader[] readers = new RunReader[runs.size()];
+    try (RunWriter writer = new RunWriter(output, bufferSize())) {
+      for (int i = 0; i < readers.length; i++) {
+        readers[i] = new RunReader(runs.get(i), bufferSize());
+      }
+      LoserTree tree = new LoserTree(readers);
+      for (int winner = tree.winner(); readers[winner].hasRecord(); winner = tree.winner()) {
+        readers[winner].copyTo(writer);
+        readers[winner].advance();
+        tree.replay(winner);
+      }
+    } finally {
+      for (RunReader reader : readers) {
+        if (reader != null) {
+          reader.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * Return the size of each merge buffer: an equal share of the budget for every input run and
+   * the output, rounded down to whole records.
+   */
+  private int bufferSize() {
+    long share = Math.min(memoryBudget / (fanIn + 1), 1 << 30);
+    return (int) (share / recordSize * recordSize);
+  }
+
+  /**
+   * Sequential reader over one run file, positioned on its current record.
+   */
+  private class RunReader implements AutoCloseable {
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long filePosition;
+    private boolean hasRecord;
+
+    RunReader(Path run, int bufferSize) throws IOException {
+      channel = FileChannel.open(run, StandardOpenOption.READ);
+      buffer = ByteBuffer.allocate(bufferSize);
+      buffer.flip();
+      fill();
+    }
+
+    boolean hasRecord() {
+      return hasRecord;
+    }
+
+    int key() {
+      return buffer.getInt(buffer.position() + keyOffset);
+    }
+
+    void copyTo(RunWriter writer) throws IOException {
+      writer.write(buffer, buffer.position());
+    }
+
+    void advance() throws IOException {
+      buffer.position(buffer.position() + recordSize);
+      if (buffer.remaining() < recordSize) {
+        fill();
+      }
+    }
+
+    /**
+     * Refill the buffer from the file. Runs always hold whole records, so a refill either loads at
+     * least one complete record or finds the end of the run.
+     */
+    private void fill() throws IOException {
+      buffer.compact();
+      while (buffer.hasRemaining()) {
+        int read = channel.read(buffer, filePosition);
+        if (read < 0) {
+          break;
+        }
+        filePosition += read;
+      }
+      buffer.flip();
+      hasRecord = buffer.remaining() >= recordSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  /**
+   * Buffered writer that appends whole records to a file.
+   */
+  private class RunWriter implements AutoCloseable {
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    RunWriter(Path file, int bufferSize) throws IOException {
+      channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+      buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Append the record that starts at the given index of the source buffer.
+     */
+    void write(ByteBuffer source, int index) throws IOException {
+      if (buffer.remaining() < recordSize) {
+        flush();
+      }
+      source.get(index, buffer.array(), buffer.position(), recordSize);
+      buffer.position(buffer.position() + recordSize);
+    }
+
+    private void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        flush();
+      } finally {
+        channel.close();
+      }
+    }
+  }
+
+  /**
+   * Tournament tree of losers over the run readers. Leaves are the runs; each internal node
+   * remembers the run that lost the match played there, and the overall winner is kept at index
+   * zero, so advancing the winning run replays only one leaf-to-root path of log k matches.
+   * Exhausted runs lose every match and ties go to the earlier run, which keeps the merge stable.
+   */
+  private class LoserTree {
+    private final RunReader[] runs;
+    private final int[] tree;
+
+    LoserTree(RunReader[] runs) {
+      this.runs = runs;
+      this.tree = new int[runs.length];
+      tree[0] = build(1);
+    }
+
+    int winner() {
+      return tree[0];
+    }
+
+    /**
+     * Replay the matches from the given run's leaf to the root after that run advanced.
+     */
+    void replay(int run) {
+      int winner = run;
+      for (int node = (run + runs.length) / 2; node > 0; node /= 2) {
+        if (beats(tree[node], winner)) {
+          int loser = winner;
+          winner = tree[node];
+          tree[node] = loser;
+        }
+      }
+      tree[0] = winner;
+    }
+
+    /**
+     * Play all matches below the given node and return the winner. Node indices at or above the
+     * number of runs are leaves.
+     */
+    private int build(int node) {
+      if (node >= runs.length) {
+        return node - runs.length;
+      }
+      int left = build(2 * node);
+      int right = build(2 * node + 1);
+      if (beats(left, right)) {
+        tree[node] = right;
+        return left;
+      }
+      tree[node] = left;
+      return right;
+    }
+
+    private boolean beats(int first, int second) {
+      if (!runs[first].hasRecord()) {
+        return false;
+      }
+      if (!runs[second].hasRecord()) {
+        return true;
+      }
+      int firstKey = runs[first].key();
+      int secondKey = runs[second].key();
+      return firstKey < secondKey || (firstKey == secondKey && first < second);
+    }
+  }
+}
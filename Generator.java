@@ -1,5 +1,9 @@
+import java.util.Random;
+import java.util.function.IntFunction;
+
 /**
- * Functional interface for methods that generate arrays of Integers.
+ * Functional interface for methods that generate arrays of Integers. As an IntFunction a generator
+ * can be handed to code outside the default package, such as the JMH benchmarks.
  *
  * @author CS 240 Instructors
  * @version 2/2019
@@ -7,7 +11,7 @@
  */
 
 @FunctionalInterface
-public interface Generator {
+public interface Generator extends IntFunction<Integer[]> {
 
   /**
    * Generate an array of integers.
@@ -16,4 +20,51 @@ public interface Generator {
    * @return The populated array
    */
   Integer[] generate(int size);
+
+  @Override
+  default Integer[] apply(int size) {
+    return generate(size);
+  }
+
+  /**
+   * Generate an array of integers, drawing any randomness from the given source. Generators that
+   * do not use randomness ignore it.
+   *
+   * @param size The length of the resulting array
+   * @param random The source of randomness
+   * @return The populated array
+   */
+  default Integer[] generate(int size, Random random) {
+    return generate(size);
+  }
+
+  /**
+   * Generate the same kind of sequence as an array of ints.
+   *
+   * @param size The length of the resulting array
+   * @return The populated array
+   */
+  default int[] generateInts(int size) {
+    return Generators.unboxInts(generate(size));
+  }
+
+  /**
+   * Generate the same kind of sequence as an array of longs.
+   *
+   * @param size The length of the resulting array
+   * @return The populated array
+   */
+  default long[] generateLongs(int size) {
+    return Generators.unboxLongs(generate(size));
+  }
+
+  /**
+   * Generate the same kind of sequence as an array of doubles.
+   *
+   * @param size The length of the resulting array
+   * @return The populated array
+   */
+  default double[] generateDoubles(int size) {
+    return Generators.unboxDoubles(generate(size));
+  }
 }
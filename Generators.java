@@ -1,4 +1,5 @@
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Sequence generators for testing sort algorithms.
@@ -8,21 +9,92 @@ import java.util.Random;
  *
  */
 public class Generators {
-  private static Random gen;
+  /**
+   * Number of distinct values in a few-unique sequence.
+   */
+  public static final int FEW_UNIQUE_VALUES = 8;
+
+  /**
+   * The random generator, which can also draw from a caller's source of randomness so that a
+   * sequence can be reproduced from a seed.
+   */
+  public static final Generator RANDOM = new Generator() {
+    @Override
+    public Integer[] generate(int size) {
+      return generateRandom(size);
+    }
+
+    @Override
+    public Integer[] generate(int size, Random random) {
+      return generateRandom(size, random);
+    }
+  };
+
+  /**
+   * The few-unique generator, which can also draw from a caller's source of randomness.
+   */
+  public static final Generator FEW_UNIQUE = new Generator() {
+    @Override
+    public Integer[] generate(int size) {
+      return generateFewUnique(size);
+    }
+
+    @Override
+    public Integer[] generate(int size, Random random) {
+      return generateFewUnique(size, random);
+    }
+  };
 
   /**
    * Generate a random sequence of Integers with the indicated size. The entries
    * in the resulting sequence will be drawn from all possible integers with equal
-   * probability.
+   * probability. Each thread draws from its own source, so generators can run concurrently.
    */
   public static Integer[] generateRandom(int size) {
-    if (gen == null) {
-      gen = new Random();
+    return generateRandom(size, ThreadLocalRandom.current());
+  }
+
+  /**
+   * Generate a random sequence of Integers with the indicated size, drawing from the given
+   * source.
+   */
+  public static Integer[] generateRandom(int size, Random random) {
+    Integer[] result = new Integer[size];
+
+    for (int i = 0; i < size; i++) {
+      result[i] = random.nextInt();
     }
+    return result;
+  }
+
+  /**
+   * Generate a random sequence of Integers with the indicated size, drawn from only
+   * FEW_UNIQUE_VALUES distinct values, like a column of status codes. Most items are duplicates.
+   */
+  public static Integer[] generateFewUnique(int size) {
+    return generateFewUnique(size, ThreadLocalRandom.current());
+  }
+
+  /**
+   * Generate a few-unique sequence with the indicated size, drawing from the given source.
+   */
+  public static Integer[] generateFewUnique(int size, Random random) {
     Integer[] result = new Integer[size];
+    for (int i = 0; i < size; i++) {
+      result[i] = random.nextInt(FEW_UNIQUE_VALUES);
+    }
+    return result;
+  }
 
+  /**
+   * Generate a sawtooth sequence of Integers with the indicated size: about sqrt(size) ascending
+   * runs, each of the values 0 to sqrt(size)-1.
+   */
+  public static Integer[] generateSawtooth(int size) {
+    int period = Math.max(1, (int) Math.sqrt(size));
+    Integer[] result = new Integer[size];
     for (int i = 0; i < size; i++) {
-      result[i] = gen.nextInt();
+      result[i] = i % period;
     }
     return result;
   }
@@ -69,4 +141,37 @@ public class Generators {
 
     return result;
   }
+
+  /**
+   * Copy a boxed sequence into an int array.
+   */
+  public static int[] unboxInts(Integer[] items) {
+    int[] result = new int[items.length];
+    for (int i = 0; i < items.length; i++) {
+      result[i] = items[i];
+    }
+    return result;
+  }
+
+  /**
+   * Copy a boxed sequence into a long array.
+   */
+  public static long[] unboxLongs(Integer[] items) {
+    long[] result = new long[items.length];
+    for (int i = 0; i < items.length; i++) {
+      result[i] = items[i];
+    }
+    return result;
+  }
+
+  /**
+   * Copy a boxed sequence into a double array.
+   */
+  public static double[] unboxDoubles(Integer[] items) {
+    double[] result = new double[items.length];
+    for (int i = 0; i < items.length; i++) {
+      result[i] = items[i];
+    }
+    return result;
+  }
 }
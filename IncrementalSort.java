@@ -0,0 +1,240 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Incremental quicksort: an iterator over an array in sorted order that sorts only as far as it
+ * has been read. To produce the next item it partitions the unread region with QuickSort.partition,
+ * keeping the boundaries on a stack, until the region holding the next item is small enough to
+ * insertion sort. The first item costs O(n), the first k cost O(n + k log k), and reading every
+ * item costs no more than a quicksort. The array is rearranged in place and is sorted once the
+ * iterator is exhausted; pass a copy to keep the original order.
+ *
+ * <p>Each region remembers how many partitions it took to reach. If that passes about 2 log2(n),
+ * as on adversarial input such as Generators.generateEvil, the region is sorted with
+ * IntrospectiveSort instead, which bounds the total work at O(n log n).
+ *
+ * <p>The same object is a Spliterator, and {@link #stream(Object[], Comparator)} makes it a Stream
+ * source. It splits at the first partition boundary, so a parallel stream sorts the two sides on
+ * separate threads.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ */
+public class IncrementalSort<T> implements Iterator<T>, Spliterator<T> {
+
+  /** Regions at or below this size are insertion sorted when reached. */
+  private static final int INSERTION_THRESHOLD = 16;
+
+  private final T[] items;
+  private final Comparator<? super T> comparator;
+  private final boolean natural;
+  private final int depthLimit;
+  private final int end;
+  private int next;
+  // items[next..sorted) are in their final places.
+  private int sorted;
+  // Unread items before a boundary are no greater than any item after it. The smallest boundary,
+  // closest to next, is on top.
+  private int[] bounds;
+  // depths[i] is the number of partitions that produced the region ending at bounds[i], and
+  // endDepth that of the region ending at end.
+  private int[] depths;
+  private int boundCount;
+  private int endDepth;
+
+  private IncrementalSort(T[] items, int start, int end, Comparator<? super T> comparator,
+      boolean natural, int[] bounds, int[] depths, int boundCount, int endDepth,
+      int depthLimit) {
+    this.items = items;
+    this.comparator = comparator;
+    this.natural = natural;
+    this.depthLimit = depthLimit;
+    this.end = end;
+    this.next = start;
+    this.sorted = start;
+    this.bounds = bounds;
+    this.depths = depths;
+    this.boundCount = boundCount;
+    this.endDepth = endDepth;
+  }
+
+  /**
+   * Return an iterator over the items in ascending order, sorting the array as it goes.
+   *
+   * @param items array to sort
+   * @return the iterator
+   */
+  public static <T extends Comparable<? super T>> IncrementalSort<T> iterator(T[] items) {
+    return create(items, Comparator.naturalOrder(), true);
+  }
+
+  /**
+   * Return an iterator over the items in the order of the given comparator, sorting the array as it
+   * goes.
+   *
+   * @param items array to sort
+   * @param comparator ordering to sort by
+   * @return the iterator
+   */
+  public static <T> IncrementalSort<T> iterator(T[] items, Comparator<? super T> comparator) {
+    return create(items, comparator, false);
+  }
+
+  /**
+   * Return a sequential stream of the items in ascending order, sorting the array only as far as
+   * the stream is consumed.
+   *
+   * @param items array to sort
+   * @return the stream
+   */
+  public static <T extends Comparable<? super T>> Stream<T> stream(T[] items) {
+    return StreamSupport.stream(iterator(items), false);
+  }
+
+  /**
+   * Return a sequential stream of the items in the order of the given comparator, sorting the
+   * array only as far as the stream is consumed.
+   *
+   * @param items array to sort
+   * @param comparator ordering to sort by
+   * @return the stream
+   */
+  public static <T> Stream<T> stream(T[] items, Comparator<? super T> comparator) {
+    return StreamSupport.stream(iterator(items, comparator), false);
+  }
+
+  private static <T> IncrementalSort<T> create(T[] items, Comparator<? super T> comparator,
+      boolean natural) {
+    int depthLimit = 2 * (31 - Integer.numberOfLeadingZeros(items.length));
+    return new IncrementalSort<>(items, 0, items.length, comparator, natural, new int[8],
+        new int[8], 0, 0, depthLimit);
+  }
+
+  @Override
+  public boolean hasNext() {
+    return next < end;
+  }
+
+  @Override
+  public T next() {
+    if (next >= end) {
+      throw new NoSuchElementException();
+    }
+    if (next == sorted) {
+      sortNextRegion();
+    }
+    return items[next++];
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super T> action) {
+    if (next >= end) {
+      return false;
+    }
+    action.accept(next());
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(Consumer<? super T> action) {
+    while (next < end) {
+      action.accept(next());
+    }
+  }
+
+  /**
+   * Split off the unread items before the first partition boundary, partitioning the unread items
+   * first if there is none yet.
+   *
+   * @return an iterator over the lower part, or null if too few items are left to split
+   */
+  @Override
+  public Spliterator<T> trySplit() {
+    if (next < sorted || end - next <= 2 * INSERTION_THRESHOLD) {
+      return null;
+    }
+    if (boundCount == 0) {
+      partitionTop(end);
+    }
+    // The highest boundary is at the bottom of the stack, and the ones above it lie below it, so
+    // they all go to the prefix.
+    int split = bounds[0];
+    int[] lower = Arrays.copyOfRange(bounds, 1, Math.max(boundCount, 2));
+    int[] lowerDepths = Arrays.copyOfRange(depths, 1, Math.max(boundCount, 2));
+    IncrementalSort<T> prefix = new IncrementalSort<>(items, next, split, comparator, natural,
+        lower, lowerDepths, boundCount - 1, depths[0], depthLimit);
+    next = split;
+    sorted = split;
+    boundCount = 0;
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    return end - next;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | SORTED | SIZED | SUBSIZED;
+  }
+
+  /**
+   * Return the comparator, or null if the items are in their natural order.
+   */
+  @Override
+  public Comparator<? super T> getComparator() {
+    return natural ? null : comparator;
+  }
+
+  /**
+   * Partition the unread region until the part holding the next item is small, then sort that
+   * part into place. A region that took more partitions to reach than a balanced quicksort would
+   * need is handed to IntrospectiveSort whole.
+   */
+  private void sortNextRegion() {
+    while (true) {
+      int top = boundCount == 0 ? end : bounds[boundCount - 1];
+      int depth = boundCount == 0 ? endDepth : depths[boundCount - 1];
+      if (top - next <= INSERTION_THRESHOLD) {
+        BasicSorts.insertionSubsort(items, next, top - 1, comparator);
+      } else if (depth >= depthLimit) {
+        IntrospectiveSort.introspectiveSort(items, next, top - 1, comparator);
+      } else {
+        partitionTop(top);
+        continue;
+      }
+      sorted = top;
+      if (boundCount > 0) {
+        boundCount--;
+      }
+      return;
+    }
+  }
+
+  /**
+   * Partition items[next..top-1], the region below the top boundary, and push the split. Both
+   * halves are one partition deeper than the region was.
+   */
+  private void partitionTop(int top) {
+    int split = QuickSort.partition(items, next, top - 1, comparator) + 1;
+    int depth;
+    if (boundCount == 0) {
+      depth = ++endDepth;
+    } else {
+      depth = ++depths[boundCount - 1];
+    }
+    if (boundCount == bounds.length) {
+      bounds = Arrays.copyOf(bounds, 2 * boundCount);
+      depths = Arrays.copyOf(depths, 2 * boundCount);
+    }
+    bounds[boundCount] = split;
+    depths[boundCount++] = depth;
+  }
+}
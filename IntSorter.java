@@ -0,0 +1,11 @@
+/**
+ * Functional interface for sorting methods that operate directly on int arrays.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ *
+ */
+@FunctionalInterface
+public interface IntSorter {
+  void sort(int[] items);
+}
@@ -1,5 +1,10 @@
+import java.util.Comparator;
+
 /**
- * IntrospectiveSort class.
+ * IntrospectiveSort class. Quicksort with median-of-three (ninther for large regions) pivots runs
+ * until the recursion depth exceeds about 2 log2(n); any region still unsorted at that depth is
+ * heapsorted instead, which bounds the worst case at O(n log n) even for adversarial inputs such as
+ * Generators.generateEvil. Small regions are finished with insertion sort. All work is in place.
  *
  * @author Nick Simoncelli
  * @version pa2
@@ -8,12 +13,561 @@
  *          picture concepts regarding the overall idea of pa2.
  */
 public class IntrospectiveSort {
+
+  /**
+   * Regions at or below these sizes are insertion sorted, or for ints and longs handed to
+   * SmallSorts. The built-in value can be overridden per element type by a TuningProfile written by
+   * Calibration.
+   */
+  private static final int INSERTION_THRESHOLD =
+      TuningProfile.threshold("introspective.insertion.object", 16, 2);
+  private static final int INT_INSERTION_THRESHOLD =
+      TuningProfile.threshold("introspective.insertion.int", 16, 2);
+  private static final int LONG_INSERTION_THRESHOLD =
+      TuningProfile.threshold("introspective.insertion.long", 16, 2);
+  private static final int DOUBLE_INSERTION_THRESHOLD =
+      TuningProfile.threshold("introspective.insertion.double", 16, 2);
+
+  /** Regions above this size use the median of three medians as their pivot. */
+  private static final int NINTHER_THRESHOLD = 128;
+
   /**
    * Sort the provided items using introspective sort.
    *
    * @param items array of items to sort
    */
   public static <T extends Comparable<T>> void introspectiveSort(T[] items) {
-    MergeSortImproved.mergeSubsortAdaptive(items, 0, items.length - 1);
+    introspectiveSort(items, Comparator.naturalOrder());
+  }
+
+  /**
+   * Sort the provided items using introspective sort, ordering them with the given comparator.
+   *
+   * @param items array of items to sort
+   * @param comparator ordering to sort by
+   */
+  public static <T> void introspectiveSort(T[] items, Comparator<? super T> comparator) {
+    introspectiveSort(items, 0, items.length - 1, comparator);
+  }
+
+  /**
+   * Sort the indicated region of the array using introspective sort.
+   *
+   * @param items array of items to sort
+   * @param start index of the left end of the region
+   * @param end index of the right end of the region
+   */
+  public static <T extends Comparable<T>> void introspectiveSort(T[] items, int start, int end) {
+    introspectiveSort(items, start, end, Comparator.naturalOrder());
+  }
+
+  /**
+   * Sort the indicated region of the array using introspective sort, ordering items with the given
+   * comparator.
+   *
+   * @param items array of items to sort
+   * @param start index of the left end of the region
+   * @param end index of the right end of the region
+   * @param comparator ordering to sort by
+   */
+  public static <T> void introspectiveSort(T[] items, int start, int end,
+      Comparator<? super T> comparator) {
+    if (start < end) {
+      introspectiveSort(items, start, end, depthLimit(end - start + 1), comparator);
+    }
+  }
+
+  /**
+   * Return the number of partitioning levels allowed before falling back to heapsort.
+   */
+  private static int depthLimit(int size) {
+    return 2 * (31 - Integer.numberOfLeadingZeros(size));
+  }
+
+  /**
+   * Recursive helper. Recurses into the smaller side of each partition and loops on the larger one,
+   * so the call stack stays O(log n) deep.
+   */
+  private static <T> void introspectiveSort(T[] items, int start, int end, int depthLimit,
+      Comparator<? super T> comparator) {
+    if (SortMetrics.ENABLED) {
+      SortMetrics.enter();
+    }
+    while (end - start + 1 > INSERTION_THRESHOLD) {
+      if (depthLimit == 0) {
+        heapSort(items, start, end, comparator);
+        if (SortMetrics.ENABLED) {
+          SortMetrics.exit();
+        }
+        return;
+      }
+      depthLimit--;
+
+      choosePivot(items, start, end, comparator);
+      int split = QuickSort.partition(items, start, end, comparator);
+      if (split - start < end - split) {
+        introspectiveSort(items, start, split, depthLimit, comparator);
+        start = split + 1;
+      } else {
+        introspectiveSort(items, split + 1, end, depthLimit, comparator);
+        end = split;
+      }
+    }
+    BasicSorts.insertionSubsort(items, start, end, comparator);
+    if (SortMetrics.ENABLED) {
+      SortMetrics.exit();
+    }
+  }
+
+  /**
+   * Move the chosen pivot to the middle of the region, where QuickSort.partition expects it.
+   */
+  private static <T> void choosePivot(T[] items, int start, int end,
+      Comparator<? super T> comparator) {
+    int mid = start + (end - start) / 2;
+    if (end - start + 1 > NINTHER_THRESHOLD) {
+      int step = (end - start + 1) / 8;
+      sortThree(items, start, start + step, start + 2 * step, comparator);
+      sortThree(items, mid - step, mid, mid + step, comparator);
+      sortThree(items, end - 2 * step, end - step, end, comparator);
+      sortThree(items, start + step, mid, end - step, comparator);
+    } else {
+      sortThree(items, start, mid, end, comparator);
+    }
+  }
+
+  /**
+   * Order the items at three indices so that the middle index holds their median.
+   */
+  private static <T> void sortThree(T[] items, int a, int b, int c,
+      Comparator<? super T> comparator) {
+    if (comparator.compare(items[b], items[a]) < 0) {
+      swap(items, a, b);
+    }
+    if (comparator.compare(items[c], items[b]) < 0) {
+      swap(items, b, c);
+      if (comparator.compare(items[b], items[a]) < 0) {
+        swap(items, a, b);
+      }
+    }
+  }
+
+  /**
+   * Heapsort the indicated region in place.
+   */
+  protected static <T> void heapSort(T[] items, int start, int end,
+      Comparator<? super T> comparator) {
+    int size = end - start + 1;
+    for (int i = size / 2 - 1; i >= 0; i--) {
+      siftDown(items, start, i, size, comparator);
+    }
+    for (int last = size - 1; last > 0; last--) {
+      swap(items, start, start + last);
+      siftDown(items, start, 0, last, comparator);
+    }
+  }
+
+  /**
+   * Restore the max-heap property below the given node of the heap stored at items[start..].
+   *
+   * @param node heap index of the node to sift, relative to start
+   * @param size number of items in the heap
+   */
+  private static <T> void siftDown(T[] items, int start, int node, int size,
+      Comparator<? super T> comparator) {
+    T item = items[start + node];
+    int child = 2 * node + 1;
+    while (child < size) {
+      if (child + 1 < size
+          && comparator.compare(items[start + child], items[start + child + 1]) < 0) {
+        child++;
+      }
+      if (comparator.compare(item, items[start + child]) >= 0) {
+        break;
+      }
+      items[start + node] = items[start + child];
+      node = child;
+      child = 2 * node + 1;
+      if (SortMetrics.ENABLED) {
+        SortMetrics.moves(1);
+      }
+    }
+    items[start + node] = item;
+    if (SortMetrics.ENABLED) {
+      SortMetrics.moves(1);
+    }
+  }
+
+  private static <T> void swap(T[] items, int i, int j) {
+    T temp = items[i];
+    items[i] = items[j];
+    items[j] = temp;
+    if (SortMetrics.ENABLED) {
+      SortMetrics.moves(2);
+    }
+  }
+
+  /**
+   * Sort the provided ints using introspective sort.
+   *
+   * @param items array of items to sort
+   */
+  public static void introspectiveSort(int[] items) {
+    introspectiveSort(items, 0, items.length - 1);
+  }
+
+  /**
+   * Sort the indicated region of the int array using introspective sort.
+   *
+   * @param items array of items to sort
+   * @param start index of the left end of the region
+   * @param end index of the right end of the region
+   */
+  public static void introspectiveSort(int[] items, int start, int end) {
+    if (start < end) {
+      introspectiveSort(items, start, end, depthLimit(end - start + 1));
+    }
+  }
+
+  /**
+   * Recursive helper. Recurses into the smaller side of each partition and loops on the larger one,
+   * so the call stack stays O(log n) deep.
+   */
+  private static void introspectiveSort(int[] items, int start, int end, int depthLimit) {
+    while (end - start + 1 > INT_INSERTION_THRESHOLD) {
+      if (depthLimit == 0) {
+        heapSort(items, start, end);
+        return;
+      }
+      depthLimit--;
+
+      choosePivot(items, start, end);
+      int split = QuickSort.partition(items, start, end);
+      if (split - start < end - split) {
+        introspectiveSort(items, start, split, depthLimit);
+        start = split + 1;
+      } else {
+        introspectiveSort(items, split + 1, end, depthLimit);
+        end = split;
+      }
+    }
+    SmallSorts.subsort(items, start, end);
+  }
+
+  /**
+   * Move the chosen pivot to the middle of the region, where QuickSort.partition expects it.
+   */
+  private static void choosePivot(int[] items, int start, int end) {
+    int mid = start + (end - start) / 2;
+    if (end - start + 1 > NINTHER_THRESHOLD) {
+      int step = (end - start + 1) / 8;
+      sortThree(items, start, start + step, start + 2 * step);
+      sortThree(items, mid - step, mid, mid + step);
+      sortThree(items, end - 2 * step, end - step, end);
+      sortThree(items, start + step, mid, end - step);
+    } else {
+      sortThree(items, start, mid, end);
+    }
+  }
+
+  /**
+   * Order the items at three indices so that the middle index holds their median.
+   */
+  private static void sortThree(int[] items, int a, int b, int c) {
+    if (items[b] < items[a]) {
+      swap(items, a, b);
+    }
+    if (items[c] < items[b]) {
+      swap(items, b, c);
+      if (items[b] < items[a]) {
+        swap(items, a, b);
+      }
+    }
+  }
+
+  /**
+   * Heapsort the indicated region in place.
+   */
+  protected static void heapSort(int[] items, int start, int end) {
+    int size = end - start + 1;
+    for (int i = size / 2 - 1; i >= 0; i--) {
+      siftDown(items, start, i, size);
+    }
+    for (int last = size - 1; last > 0; last--) {
+      swap(items, start, start + last);
+      siftDown(items, start, 0, last);
+    }
+  }
+
+  /**
+   * Restore the max-heap property below the given node of the heap stored at items[start..].
+   *
+   * @param node heap index of the node to sift, relative to start
+   * @param size number of items in the heap
+   */
+  private static void siftDown(int[] items, int start, int node, int size) {
+    int item = items[start + node];
+    int child = 2 * node + 1;
+    while (child < size) {
+      if (child + 1 < size && items[start + child] < items[start + child + 1]) {
+        child++;
+      }
+      if (item >= items[start + child]) {
+        break;
+      }
+      items[start + node] = items[start + child];
+      node = child;
+      child = 2 * node + 1;
+    }
+    items[start + node] = item;
+  }
+
+  private static void swap(int[] items, int i, int j) {
+    int temp = items[i];
+    items[i] = items[j];
+    items[j] = temp;
+  }
+
+  /**
+   * Sort the provided longs using introspective sort.
+   *
+   * @param items array of items to sort
+   */
+  public static void introspectiveSort(long[] items) {
+    introspectiveSort(items, 0, items.length - 1);
+  }
+
+  /**
+   * Sort the indicated region of the long array using introspective sort.
+   *
+   * @param items array of items to sort
+   * @param start index of the left end of the region
+   * @param end index of the right end of the region
+   */
+  public static void introspectiveSort(long[] items, int start, int end) {
+    if (start < end) {
+      introspectiveSort(items, start, end, depthLimit(end - start + 1));
+    }
+  }
+
+  /**
+   * Recursive helper. Recurses into the smaller side of each partition and loops on the larger one,
+   * so the call stack stays O(log n) deep.
+   */
+  private static void introspectiveSort(long[] items, int start, int end, int depthLimit) {
+    while (end - start + 1 > LONG_INSERTION_THRESHOLD) {
+      if (depthLimit == 0) {
+        heapSort(items, start, end);
+        return;
+      }
+      depthLimit--;
+
+      choosePivot(items, start, end);
+      int split = QuickSort.partition(items, start, end);
+      if (split - start < end - split) {
+        introspectiveSort(items, start, split, depthLimit);
+        start = split + 1;
+      } else {
+        introspectiveSort(items, split + 1, end, depthLimit);
+        end = split;
+      }
+    }
+    SmallSorts.subsort(items, start, end);
+  }
+
+  /**
+   * Move the chosen pivot to the middle of the region, where QuickSort.partition expects it.
+   */
+  private static void choosePivot(long[] items, int start, int end) {
+    int mid = start + (end - start) / 2;
+    if (end - start + 1 > NINTHER_THRESHOLD) {
+      int step = (end - start + 1) / 8;
+      sortThree(items, start, start + step, start + 2 * step);
+      sortThree(items, mid - step, mid, mid + step);
+      sortThree(items, end - 2 * step, end - step, end);
+      sortThree(items, start + step, mid, end - step);
+    } else {
+      sortThree(items, start, mid, end);
+    }
+  }
+
+  /**
+   * Order the items at three indices so that the middle index holds their median.
+   */
+  private static void sortThree(long[] items, int a, int b, int c) {
+    if (items[b] < items[a]) {
+      swap(items, a, b);
+    }
+    if (items[c] < items[b]) {
+      swap(items, b, c);
+      if (items[b] < items[a]) {
+        swap(items, a, b);
+      }
+    }
+  }
+
+  /**
+   * Heapsort the indicated region in place.
+   */
+  protected static void heapSort(long[] items, int start, int end) {
+    int size = end - start + 1;
+    for (int i = size / 2 - 1; i >= 0; i--) {
+      siftDown(items, start, i, size);
+    }
+    for (int last = size - 1; last > 0; last--) {
+      swap(items, start, start + last);
+      siftDown(items, start, 0, last);
+    }
+  }
+
+  /**
+   * Restore the max-heap property below the given node of the heap stored at items[start..].
+   *
+   * @param node heap index of the node to sift, relative to start
+   * @param size number of items in the heap
+   */
+  private static void siftDown(long[] items, int start, int node, int size) {
+    long item = items[start + node];
+    int child = 2 * node + 1;
+    while (child < size) {
+      if (child + 1 < size && items[start + child] < items[start + child + 1]) {
+        child++;
+      }
+      if (item >= items[start + child]) {
+        break;
+      }
+      items[start + node] = items[start + child];
+      node = child;
+      child = 2 * node + 1;
+    }
+    items[start + node] = item;
+  }
+
+  private static void swap(long[] items, int i, int j) {
+    long temp = items[i];
+    items[i] = items[j];
+    items[j] = temp;
+  }
+
+  /**
+   * Sort the provided doubles using introspective sort.
+   *
+   * @param items array of items to sort
+   */
+  public static void introspectiveSort(double[] items) {
+    introspectiveSort(items, 0, items.length - 1);
+  }
+
+  /**
+   * Sort the indicated region of the double array using introspective sort.
+   *
+   * @param items array of items to sort
+   * @param start index of the left end of the region
+   * @param end index of the right end of the region
+   */
+  public static void introspectiveSort(double[] items, int start, int end) {
+    if (start < end) {
+      introspectiveSort(items, start, end, depthLimit(end - start + 1));
+    }
+  }
+
+  /**
+   * Recursive helper. Recurses into the smaller side of each partition and loops on the larger one,
+   * so the call stack stays O(log n) deep.
+   */
+  private static void introspectiveSort(double[] items, int start, int end, int depthLimit) {
+    while (end - start + 1 > DOUBLE_INSERTION_THRESHOLD) {
+      if (depthLimit == 0) {
+        heapSort(items, start, end);
+        return;
+      }
+      depthLimit--;
+
+      choosePivot(items, start, end);
+      int split = QuickSort.partition(items, start, end);
+      if (split - start < end - split) {
+        introspectiveSort(items, start, split, depthLimit);
+        start = split + 1;
+      } else {
+        introspectiveSort(items, split + 1, end, depthLimit);
+        end = split;
+      }
+    }
+    BasicSorts.insertionSubsort(items, start, end);
+  }
+
+  /**
+   * Move the chosen pivot to the middle of the region, where QuickSort.partition expects it.
+   */
+  private static void choosePivot(double[] items, int start, int end) {
+    int mid = start + (end - start) / 2;
+    if (end - start + 1 > NINTHER_THRESHOLD) {
+      int step = (end - start + 1) / 8;
+      sortThree(items, start, start + step, start + 2 * step);
+      sortThree(items, mid - step, mid, mid + step);
+      sortThree(items, end - 2 * step, end - step, end);
+      sortThree(items, start + step, mid, end - step);
+    } else {
+      sortThree(items, start, mid, end);
+    }
+  }
+
+  /**
+   * Order the items at three indices so that the middle index holds their median.
+   */
+  private static void sortThree(double[] items, int a, int b, int c) {
+    if (Double.compare(items[b], items[a]) < 0) {
+      swap(items, a, b);
+    }
+    if (Double.compare(items[c], items[b]) < 0) {
+      swap(items, b, c);
+      if (Double.compare(items[b], items[a]) < 0) {
+        swap(items, a, b);
+      }
+    }
+  }
+
+  /**
+   * Heapsort the indicated region in place.
+   */
+  protected static void heapSort(double[] items, int start, int end) {
+    int size = end - start + 1;
+    for (int i = size / 2 - 1; i >= 0; i--) {
+      siftDown(items, start, i, size);
+    }
+    for (int last = size - 1; last > 0; last--) {
+      swap(items, start, start + last);
+      siftDown(items, start, 0, last);
+    }
+  }
+
+  /**
+   * Restore the max-heap property below the given node of the heap stored at items[start..].
+   *
+   * @param node heap index of the node to sift, relative to start
+   * @param size number of items in the heap
+   */
+  private static void siftDown(double[] items, int start, int node, int size) {
+    double item = items[start + node];
+    int child = 2 * node + 1;
+    while (child < size) {
+      if (child + 1 < size
+          && Double.compare(items[start + child], items[start + child + 1]) < 0) {
+        child++;
+      }
+      if (Double.compare(item, items[start + child]) >= 0) {
+        break;
+      }
+      items[start + node] = items[start + child];
+      node = child;
+      child = 2 * node + 1;
+    }
+    items[start + node] = item;
+  }
+
+  private static void swap(double[] items, int i, int j) {
+    double temp = items[i];
+    items[i] = items[j];
+    items[j] = temp;
   }
 }
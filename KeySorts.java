@@ -0,0 +1,268 @@
+import java.util.Comparator;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Sorting by extracted keys (decorate-sort-undecorate). Each item's key is computed exactly once
+ * into a primitive or parallel array, that array is sorted, and the items are then moved into the
+ * resulting order. Expensive keys are therefore evaluated n times instead of O(n log n) times, and
+ * int and long keys are compared as primitives. All of these sorts are stable.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ */
+public class KeySorts {
+
+  /** Pair regions at or below this size are insertion sorted. */
+  private static final int INSERTION_THRESHOLD = 32;
+
+  /**
+   * Stably sort the items by an int key.
+   *
+   * @param items array to sort
+   * @param keyExtractor function computing each item's key
+   */
+  public static <T> void sortByIntKey(T[] items, ToIntFunction<? super T> keyExtractor) {
+    SortContext context = SortContext.acquire();
+    try {
+      sortByIntKey(items, keyExtractor, context);
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Stably sort the items by an int key, taking scratch space from the given context. Each key is
+   * packed with its item's index into one long, so a plain primitive sort orders by key and then by
+   * original position.
+   *
+   * @param items array to sort
+   * @param keyExtractor function computing each item's key
+   * @param context source of the scratch buffers
+   */
+  public static <T> void sortByIntKey(T[] items, ToIntFunction<? super T> keyExtractor,
+      SortContext context) {
+    int size = items.length;
+    long[] packed = context.longs(size);
+    for (int i = 0; i < size; i++) {
+      packed[i] = ((long) keyExtractor.applyAsInt(items[i]) << 32) | i;
+    }
+    IntrospectiveSort.introspectiveSort(packed, 0, size - 1);
+
+    int[] sources = context.ints(size);
+    for (int i = 0; i < size; i++) {
+      sources[i] = (int) packed[i];
+    }
+    permute(items, sources, size);
+  }
+
+  /**
+   * Stably sort the items by a long key.
+   *
+   * @param items array to sort
+   * @param keyExtractor function computing each item's key
+   */
+  public static <T> void sortByLongKey(T[] items, ToLongFunction<? super T> keyExtractor) {
+    SortContext context = SortContext.acquire();
+    try {
+      sortByLongKey(items, keyExtractor, context);
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Stably sort the items by a long key, taking scratch space from the given context.
+   *
+   * @param items array to sort
+   * @param keyExtractor function computing each item's key
+   * @param context source of the scratch buffers
+   */
+  public static <T> void sortByLongKey(T[] items, ToLongFunction<? super T> keyExtractor,
+      SortContext context) {
+    int size = items.length;
+    // Each buffer holds the keys or indices followed by room for half of them during merges.
+    long[] keys = context.longs(size + (size + 1) / 2);
+    int[] sources = context.ints(size + (size + 1) / 2);
+    for (int i = 0; i < size; i++) {
+      keys[i] = keyExtractor.applyAsLong(items[i]);
+      sources[i] = i;
+    }
+    sortPairs(keys, sources, 0, size - 1, size);
+    permute(items, sources, size);
+  }
+
+  /**
+   * Stably sort the items by a comparable key.
+   *
+   * @param items array to sort
+   * @param keyExtractor function computing each item's key
+   */
+  public static <T, K extends Comparable<? super K>> void sortByKey(T[] items,
+      Function<? super T, ? extends K> keyExtractor) {
+    sortByKey(items, keyExtractor, Comparator.naturalOrder());
+  }
+
+  /**
+   * Stably sort the items by a key, ordering keys with the given comparator.
+   *
+   * @param items array to sort
+   * @param keyExtractor function computing each item's key
+   * @param keyComparator ordering of the keys
+   */
+  public static <T, K> void sortByKey(T[] items, Function<? super T, ? extends K> keyExtractor,
+      Comparator<? super K> keyComparator) {
+    SortContext context = SortContext.acquire();
+    try {
+      sortByKey(items, keyExtractor, keyComparator, context);
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Stably sort the items by a key, ordering keys with the given comparator and taking scratch
+   * space from the given context.
+   *
+   * @param items array to sort
+   * @param keyExtractor function computing each item's key
+   * @param keyComparator ordering of the keys
+   * @param context source of the scratch buffers
+   */
+  public static <T, K> void sortByKey(T[] items, Function<? super T, ? extends K> keyExtractor,
+      Comparator<? super K> keyComparator, SortContext context) {
+    int size = items.length;
+    K[] keys = context.objects(size + (size + 1) / 2);
+    int[] sources = context.ints(size + (size + 1) / 2);
+    for (int i = 0; i < size; i++) {
+      keys[i] = keyExtractor.apply(items[i]);
+      sources[i] = i;
+    }
+    sortPairs(keys, sources, 0, size - 1, size, keyComparator);
+    permute(items, sources, size);
+  }
+
+  /**
+   * Rearrange the first size items so that position i receives the item that was at sources[i].
+   * Works cycle by cycle in place, resetting each visited entry of sources to its own index.
+   */
+  private static <T> void permute(T[] items, int[] sources, int size) {
+    for (int i = 0; i < size; i++) {
+      if (sources[i] == i) {
+        continue;
+      }
+      T first = items[i];
+      int dest = i;
+      int source = sources[dest];
+      while (source != i) {
+        items[dest] = items[source];
+        sources[dest] = dest;
+        dest = source;
+        source = sources[dest];
+      }
+      items[dest] = first;
+      sources[dest] = dest;
+    }
+  }
+
+  /**
+   * Stable merge sort of keys[start..end] carrying the parallel indices along. Both arrays must
+   * have room for half the region starting at the scratch offset.
+   */
+  protected static void sortPairs(long[] keys, int[] indices, int start, int end, int scratch) {
+    if (end - start < INSERTION_THRESHOLD) {
+      for (int i = start + 1; i <= end; i++) {
+        long key = keys[i];
+        int index = indices[i];
+        int j = i;
+        while (j > start && key < keys[j - 1]) {
+          keys[j] = keys[j - 1];
+          indices[j] = indices[j - 1];
+          j--;
+        }
+        keys[j] = key;
+        indices[j] = index;
+      }
+      return;
+    }
+
+    int mid = (start + end) >>> 1;
+    sortPairs(keys, indices, start, mid, scratch);
+    sortPairs(keys, indices, mid + 1, end, scratch);
+    if (keys[mid] <= keys[mid + 1]) {
+      return;
+    }
+
+    int size = mid - start + 1;
+    System.arraycopy(keys, start, keys, scratch, size);
+    System.arraycopy(indices, start, indices, scratch, size);
+    int tmpIndex = scratch;
+    int tmpEnd = scratch + size;
+    int rightIndex = mid + 1;
+    int mergeIndex = start;
+    while (tmpIndex < tmpEnd && rightIndex <= end) {
+      if (keys[tmpIndex] <= keys[rightIndex]) {
+        keys[mergeIndex] = keys[tmpIndex];
+        indices[mergeIndex++] = indices[tmpIndex++];
+      } else {
+        keys[mergeIndex] = keys[rightIndex];
+        indices[mergeIndex++] = indices[rightIndex++];
+      }
+    }
+    while (tmpIndex < tmpEnd) {
+      keys[mergeIndex] = keys[tmpIndex];
+      indices[mergeIndex++] = indices[tmpIndex++];
+    }
+  }
+
+  /**
+   * Object-key version of {@link #sortPairs(long[], int[], int, int, int)}.
+   */
+  protected static <K> void sortPairs(K[] keys, int[] indices, int start, int end, int scratch,
+      Comparator<? super K> comparator) {
+    if (end - start < INSERTION_THRESHOLD) {
+      for (int i = start + 1; i <= end; i++) {
+        K key = keys[i];
+        int index = indices[i];
+        int j = i;
+        while (j > start && comparator.compare(key, keys[j - 1]) < 0) {
+          keys[j] = keys[j - 1];
+          indices[j] = indices[j - 1];
+          j--;
+        }
+        keys[j] = key;
+        indices[j] = index;
+      }
+      return;
+    }
+
+    int mid = (start + end) >>> 1;
+    sortPairs(keys, indices, start, mid, scratch, comparator);
+    sortPairs(keys, indices, mid + 1, end, scratch, comparator);
+    if (comparator.compare(keys[mid], keys[mid + 1]) <= 0) {
+      return;
+    }
+
+    int size = mid - start + 1;
+    System.arraycopy(keys, start, keys, scratch, size);
+    System.arraycopy(indices, start, indices, scratch, size);
+    int tmpIndex = scratch;
+    int tmpEnd = scratch + size;
+    int rightIndex = mid + 1;
+    int mergeIndex = start;
+    while (tmpIndex < tmpEnd && rightIndex <= end) {
+      if (comparator.compare(keys[tmpIndex], keys[rightIndex]) <= 0) {
+        keys[mergeIndex] = keys[tmpIndex];
+        indices[mergeIndex++] = indices[tmpIndex++];
+      } else {
+        keys[mergeIndex] = keys[rightIndex];
+        indices[mergeIndex++] = indices[rightIndex++];
+      }
+    }
+    while (tmpIndex < tmpEnd) {
+      keys[mergeIndex] = keys[tmpIndex];
+      indices[mergeIndex++] = indices[tmpIndex++];
+    }
+  }
+}
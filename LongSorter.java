@@ -0,0 +1,11 @@
+/**
+ * Functional interface for sorting methods that operate directly on long arrays.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ *
+ */
+@FunctionalInterface
+public interface LongSorter {
+  void sort(long[] items);
+}
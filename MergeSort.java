@@ -1,3 +1,5 @@
+import java.util.Comparator;
+
 /**
  * Merge sort class.
  */
@@ -6,7 +8,36 @@ public class MergeSort {
    * Merge sort the provided array.
    */
   public static <T extends Comparable<T>> void mergeSort(T[] items) {
-    mergeSort(items, 0, items.length - 1);
+    mergeSort(items, Comparator.naturalOrder());
+  }
+
+  /**
+   * Merge sort the provided array, taking its one n-item scratch buffer from the given context.
+   */
+  public static <T extends Comparable<T>> void mergeSort(T[] items, SortContext context) {
+    mergeSort(items, Comparator.naturalOrder(), context);
+  }
+
+  /**
+   * Merge sort the provided array, ordering items with the given comparator.
+   */
+  public static <T> void mergeSort(T[] items, Comparator<? super T> comparator) {
+    SortContext context = SortContext.acquire();
+    try {
+      mergeSort(items, comparator, context);
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Merge sort the provided array, ordering items with the given comparator and taking the scratch
+   * buffer from the given context.
+   */
+  public static <T> void mergeSort(T[] items, Comparator<? super T> comparator,
+      SortContext context) {
+    T[] mergedItems = context.objects(items.length);
+    mergeSort(items, 0, items.length - 1, mergedItems, comparator);
   }
 
   /**
@@ -15,31 +46,42 @@ public class MergeSort {
    * @param items The array to sort
    * @param start Index of the left end of the region to sort
    * @param end Index of the right end of the region to sort.
+   * @param mergedItems Scratch space at least as long as the region
+   * @param comparator The ordering to sort by
    */
-  private static <T extends Comparable<T>> void mergeSort(T[] items, int start, int end) {
+  private static <T> void mergeSort(T[] items, int start, int end, T[] mergedItems,
+      Comparator<? super T> comparator) {
     if (start < end) {
+      if (SortMetrics.ENABLED) {
+        SortMetrics.enter();
+      }
       int mid = (start + end) / 2;
-      mergeSort(items, start, mid);
-      mergeSort(items, mid + 1, end);
-      merge(items, start, mid, end);
+      mergeSort(items, start, mid, mergedItems, comparator);
+      mergeSort(items, mid + 1, end, mergedItems, comparator);
+      merge(items, start, mid, end, mergedItems, comparator);
+      if (SortMetrics.ENABLED) {
+        SortMetrics.exit();
+      }
     }
   }
 
   /**
    * Merge two sorted sub-arrays.
    */
-  private static <T extends Comparable<T>> void merge(T[] items, int start, int mid, int end) {
+  private static <T> void merge(T[] items, int start, int mid, int end, T[] mergedItems,
+      Comparator<? super T> comparator) {
     int mergedSize = end - start + 1;
+    if (SortMetrics.ENABLED) {
+      SortMetrics.moves(2L * mergedSize);
+    }
 
-    @SuppressWarnings("unchecked")
-    T[] mergedItems = (T[]) new Comparable[mergedSize]; // temp array to merge into
     int mergeIndex = 0;
     int leftIndex = start;
     int rightIndex = mid + 1;
 
     // Add smallest element from left or right partition to merged items
     while (leftIndex <= mid && rightIndex <= end) {
-      if (items[leftIndex].compareTo(items[rightIndex]) <= 0) {
+      if (comparator.compare(items[leftIndex], items[rightIndex]) <= 0) {
         mergedItems[mergeIndex] = items[leftIndex];
         leftIndex++;
       } else {
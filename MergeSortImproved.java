@@ -1,5 +1,8 @@
+import java.util.Comparator;
+
 /**
- * Improved MergeSort methods.
+ * Improved MergeSort methods. Every sort takes its scratch space from a SortContext once and
+ * threads it through the recursion, so sorting with a warmed-up context allocates nothing.
  *
  * @author Nick Simoncelli
  * @version pa2
@@ -9,7 +12,23 @@
  */
 public class MergeSortImproved {
 
-  private static final int MAX_VALUE_THRESHOLD = 121;
+  // Regions smaller than these are insertion sorted by the adaptive sorts, or for ints and longs
+  // handed to SmallSorts. The built-in value can be overridden per element type by a TuningProfile
+  // written by Calibration.
+  private static final int MAX_VALUE_THRESHOLD =
+      TuningProfile.threshold("merge.insertion.object", 121, 2);
+  private static final int MAX_INT_THRESHOLD =
+      TuningProfile.threshold("merge.insertion.int", 121, 2);
+  private static final int MAX_LONG_THRESHOLD =
+      TuningProfile.threshold("merge.insertion.long", 121, 2);
+  private static final int MAX_DOUBLE_THRESHOLD =
+      TuningProfile.threshold("merge.insertion.double", 121, 2);
+
+  // Natural merge sort: runs shorter than MIN_MERGE / 2 are extended, a merge gallops after one
+  // run wins MIN_GALLOP times in a row, and the balanced run stack never holds more than MAX_RUNS.
+  private static final int MIN_MERGE = 32;
+  private static final int MIN_GALLOP = 7;
+  private static final int MAX_RUNS = 49;
 
   /**
    * Merge sort the provided array.
@@ -17,7 +36,47 @@ public class MergeSortImproved {
    * @param items array to sort
    */
   public static <T extends Comparable<T>> void mergeSortHalfSpace(T[] items) {
-    mergeSortHalfSpace(items, 0, items.length - 1);
+    mergeSortHalfSpace(items, Comparator.naturalOrder());
+  }
+
+  /**
+   * Merge sort the provided array, ordering items with the given comparator.
+   *
+   * @param items array to sort
+   * @param comparator ordering to sort by
+   */
+  public static <T> void mergeSortHalfSpace(T[] items, Comparator<? super T> comparator) {
+    SortContext context = SortContext.acquire();
+    try {
+      mergeSortHalfSpace(items, comparator, context);
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Merge sort the provided array, taking half of its length in scratch space from the given
+   * context.
+   *
+   * @param items array to sort
+   * @param context source of the scratch buffer
+   */
+  public static <T extends Comparable<T>> void mergeSortHalfSpace(T[] items, SortContext context) {
+    mergeSortHalfSpace(items, Comparator.naturalOrder(), context);
+  }
+
+  /**
+   * Merge sort the provided array with the given comparator, taking half of its length in scratch
+   * space from the given context.
+   *
+   * @param items array to sort
+   * @param comparator ordering to sort by
+   * @param context source of the scratch buffer
+   */
+  public static <T> void mergeSortHalfSpace(T[] items, Comparator<? super T> comparator,
+      SortContext context) {
+    T[] temp = context.objects((items.length + 1) / 2);
+    mergeSortHalfSpace(items, 0, items.length - 1, temp, comparator);
   }
 
   /**
@@ -26,18 +85,27 @@ public class MergeSortImproved {
    * @param items The array to sort
    * @param start Index of the left end of the region to sort
    * @param end Index of the right end of the region to sort.
+   * @param temp Scratch space for the left half of each merge
+   * @param comparator The ordering to sort by
    */
-  private static <T extends Comparable<T>> void mergeSortHalfSpace(T[] items, int start, int end) {
+  private static <T> void mergeSortHalfSpace(T[] items, int start, int end, T[] temp,
+      Comparator<? super T> comparator) {
     if (start < end) {
+      if (SortMetrics.ENABLED) {
+        SortMetrics.enter();
+      }
       int mid = (start + end) / 2;
-      mergeSortHalfSpace(items, start, mid);
-      mergeSortHalfSpace(items, mid + 1, end);
-      merge(items, start, mid, end);
+      mergeSortHalfSpace(items, start, mid, temp, comparator);
+      mergeSortHalfSpace(items, mid + 1, end, temp, comparator);
+      merge(items, start, mid, end, temp, comparator);
+      if (SortMetrics.ENABLED) {
+        SortMetrics.exit();
+      }
     }
   }
 
   /**
-   * Merge sort the provided array using an improved merge operation.
+   * Merge two adjacent sorted runs, copying only the left run aside.
    *
    * @param items array of items to sort
    * @param start beginning index
@@ -45,18 +113,49 @@ public class MergeSortImproved {
    * @param end last index
    */
   public static <T extends Comparable<T>> void merge(T[] items, int start, int mid, int end) {
+    SortContext context = SortContext.acquire();
+    try {
+      merge(items, start, mid, end, context.objects(mid - start + 1), Comparator.naturalOrder());
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Merge two adjacent sorted runs, copying the left run into the provided scratch buffer.
+   *
+   * @param items array of items to sort
+   * @param start beginning index
+   * @param mid middle index
+   * @param end last index
+   * @param temp scratch buffer with room for at least mid - start + 1 items
+   */
+  public static <T extends Comparable<T>> void merge(T[] items, int start, int mid, int end,
+      T[] temp) {
+    merge(items, start, mid, end, temp, Comparator.naturalOrder());
+  }
+
+  /**
+   * Merge two adjacent runs that are sorted by the given comparator, copying the left run into the
+   * provided scratch buffer.
+   *
+   * @param items array of items to sort
+   * @param start beginning index
+   * @param mid middle index
+   * @param end last index
+   * @param temp scratch buffer with room for at least mid - start + 1 items
+   * @param comparator ordering of the runs
+   */
+  public static <T> void merge(T[] items, int start, int mid, int end, T[] temp,
+      Comparator<? super T> comparator) {
     int size = mid - start + 1;
     int tmpIndex = 0;
     int rightIndex = mid + 1;
     int mergeIndex = start;
-    @SuppressWarnings("unchecked")
-    T[] temp = (T[]) new Comparable[size];
-    for (int i = 0; i < size; i++) {
-      temp[i] = items[i + start];
-    }
+    System.arraycopy(items, start, temp, 0, size);
 
     while (tmpIndex < size && rightIndex <= end) {
-      if (temp[tmpIndex].compareTo(items[rightIndex]) <= 0) {
+      if (comparator.compare(temp[tmpIndex], items[rightIndex]) <= 0) {
         items[mergeIndex] = temp[tmpIndex];
         tmpIndex++;
         mergeIndex++;
@@ -71,68 +170,1945 @@ public class MergeSortImproved {
       mergeIndex++;
       tmpIndex++;
     }
-
+    if (SortMetrics.ENABLED) {
+      SortMetrics.moves(size + mergeIndex - start);
+    }
   }
 
   /**
-   * Merge sort the provided array by using an improved merge operation and switching to insertion
-   * sort for small sub-arrays.
+   * Merge sort the provided array by using an improved merge operation and switching to
+   * insertion sort for small sub-arrays.
    *
-   * @param items array of objects to be sorted
+   * @param items array to be sorted
    */
   public static <T extends Comparable<T>> void mergeSortAdaptive(T[] items) {
-    mergeSortAdaptive(items, 0, items.length - 1);
+    mergeSortAdaptive(items, Comparator.naturalOrder());
+  }
+
+  /**
+   * Adaptive merge sort of the provided array, ordering items with the given comparator.
+   *
+   * @param items array to be sorted
+   * @param comparator ordering to sort by
+   */
+  public static <T> void mergeSortAdaptive(T[] items, Comparator<? super T> comparator) {
+    mergeSortAdaptive(items, 0, items.length - 1, comparator);
+  }
+
+  /**
+   * Merge sort the provided array by using an improved merge operation and switching to
+   * insertion sort for small sub-arrays, taking scratch space from the given context.
+   *
+   * @param items array to be sorted
+   * @param context source of the scratch buffer
+   */
+  public static <T extends Comparable<T>> void mergeSortAdaptive(T[] items, SortContext context) {
+    mergeSortAdaptive(items, Comparator.naturalOrder(), context);
+  }
+
+  /**
+   * Adaptive merge sort of the provided array with the given comparator, taking scratch space from
+   * the given context.
+   *
+   * @param items array to be sorted
+   * @param comparator ordering to sort by
+   * @param context source of the scratch buffer
+   */
+  public static <T> void mergeSortAdaptive(T[] items, Comparator<? super T> comparator,
+      SortContext context) {
+    T[] temp = context.objects((items.length + 1) / 2);
+    mergeSortAdaptive(items, 0, items.length - 1, temp, comparator);
+  }
+
+  /**
+   * Merge sort the indicated region by using an improved merge operation and switching to
+   * insertion sort for small sub-arrays. Scratch space is borrowed from the calling thread.
+   *
+   * @param items array of items
+   * @param start start index
+   * @param end end index
+   * @param comparator ordering to sort by
+   */
+  protected static <T> void mergeSortAdaptive(T[] items, int start, int end,
+      Comparator<? super T> comparator) {
+    SortContext context = SortContext.acquire();
+    try {
+      mergeSortAdaptive(items, start, end, context.objects((end - start + 2) / 2), comparator);
+    } finally {
+      context.release();
+    }
   }
 
   /**
-   * Merge sort the provided array by using an improved merge operation and switching to insertion
-   * sort for small sub-arrays.
+   * Recursive helper for the adaptive merge sort.
    *
    * @param items array of items
    * @param start start index
    * @param end end index
+   * @param temp scratch space for the left half of each merge
+   * @param comparator ordering to sort by
    */
-  private static <T extends Comparable<T>> void mergeSortAdaptive(T[] items, int start, int end) {
+  private static <T> void mergeSortAdaptive(T[] items, int start, int end, T[] temp,
+      Comparator<? super T> comparator) {
     if (start < end) {
       if ((end - start + 1) < MAX_VALUE_THRESHOLD) {
-        BasicSorts.insertionSubsort(items, start, end);
+        BasicSorts.insertionSubsort(items, start, end, comparator);
       } else {
+        if (SortMetrics.ENABLED) {
+          SortMetrics.enter();
+        }
         int mid = (start + end) / 2;
-        mergeSortHalfSpace(items, start, mid);
-        mergeSortHalfSpace(items, mid + 1, end);
-        merge(items, start, mid, end);
+        mergeSortAdaptive(items, start, mid, temp, comparator);
+        mergeSortAdaptive(items, mid + 1, end, temp, comparator);
+        merge(items, start, mid, end, temp, comparator);
+        if (SortMetrics.ENABLED) {
+          SortMetrics.exit();
+        }
       }
     }
   }
 
   /**
-   * Merge sort the provided sub-array using our improved merge sort. This is the fallback method
-   * used by introspective sort.
+   * Sort the provided sub-array with one trial partition: if the partition lands within 2 ln(size)
+   * of the start the region is quicksorted, otherwise it is sorted with our improved merge sort.
+   * IntrospectiveSort used this before it became a depth-limited quicksort.
    *
    * @param items items to sort
    * @param start beginning index
    * @param end last index
    */
   public static <T extends Comparable<T>> void mergeSubsortAdaptive(T[] items, int start, int end) {
+    mergeSubsortAdaptive(items, start, end, Comparator.naturalOrder());
+  }
+
+  /**
+   * Comparator version of {@link #mergeSubsortAdaptive(Comparable[], int, int)}.
+   *
+   * @param items items to sort
+   * @param start beginning index
+   * @param end last index
+   * @param comparator ordering to sort by
+   */
+  public static <T> void mergeSubsortAdaptive(T[] items, int start, int end,
+      Comparator<? super T> comparator) {
     int size = end - start + 1;
     if (start < end) {
       if (size >= MAX_VALUE_THRESHOLD) {
-        if (QuickSort.partition(items, start, end) < 2 * Math.log(size)) {
-          @SuppressWarnings("unchecked")
-          T[] temp = (T[]) new Comparable[size];
-          for (int i = 0; i < size; i++) {
-            temp[i] = items[i + start];
-          }
-          QuickSort.quickSort(temp);
-          for (int j = 0; j < size; j++) {
-            items[j + start] = temp[j];
+        if (QuickSort.partition(items, start, end, comparator) < 2 * Math.log(size)) {
+          QuickSort.quickSort(items, start, end, comparator);
+        } else {
+          mergeSortAdaptive(items, start, end, comparator);
+        }
+      } else {
+        BasicSorts.insertionSubsort(items, start, end, comparator);
+      }
+    }
+  }
+
+  /**
+   * Merge sort the provided array by merging its natural runs, so input that is already sorted,
+   * reversed or made of a few sorted stretches takes close to linear time. Strictly descending runs
+   * are reversed, runs shorter than a minimum length are extended by binary insertion, and runs are
+   * merged from a stack that keeps their lengths balanced. Merges whose runs are already in order
+   * are skipped, and a merge gallops ahead when one run keeps winning. The sort is stable.
+   *
+   * @param items array to be sorted
+   */
+  public static <T extends Comparable<T>> void mergeSortNatural(T[] items) {
+    mergeSortNatural(items, Comparator.naturalOrder());
+  }
+
+  /**
+   * Natural merge sort of the provided array, ordering items with the given comparator.
+   *
+   * @param items array to be sorted
+   * @param comparator ordering to sort by
+   */
+  public static <T> void mergeSortNatural(T[] items, Comparator<? super T> comparator) {
+    SortContext context = SortContext.acquire();
+    try {
+      mergeSortNatural(items, comparator, context);
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Natural merge sort of the provided array, taking scratch space from the given context.
+   *
+   * @param items array to be sorted
+   * @param context source of the scratch buffers
+   */
+  public static <T extends Comparable<T>> void mergeSortNatural(T[] items, SortContext context) {
+    mergeSortNatural(items, Comparator.naturalOrder(), context);
+  }
+
+  /**
+   * Natural merge sort of the provided array with the given comparator, taking scratch space from
+   * the given context: up to half the array's length for merges and a small run stack.
+   *
+   * @param items array to be sorted
+   * @param comparator ordering to sort by
+   * @param context source of the scratch buffers
+   */
+  public static <T> void mergeSortNatural(T[] items, Comparator<? super T> comparator,
+      SortContext context) {
+    int size = items.length;
+    if (size < 2) {
+      return;
+    }
+    T[] temp = context.objects(size / 2);
+    // Run i starts at runs[2 * i] and is runs[2 * i + 1] items long.
+    int[] runs = context.ints(2 * MAX_RUNS);
+    int runCount = 0;
+    int minRun = minRunLength(size);
+
+    for (int start = 0; start < size;) {
+      int length = countRunAndMakeAscending(items, start, size, comparator);
+      if (length < minRun) {
+        int forced = Math.min(minRun, size - start);
+        binaryInsertionSort(items, start, start + forced, start + length, comparator);
+        length = forced;
+      }
+      runs[2 * runCount] = start;
+      runs[2 * runCount + 1] = length;
+      runCount++;
+      start += length;
+
+      // Merge until, from the top of the stack, each run is longer than the next two combined
+      // and longer than the one before.
+      while (runCount > 1) {
+        int i = runCount - 2;
+        if (i > 0 && runs[2 * i - 1] <= runs[2 * i + 1] + runs[2 * i + 3]
+            || i > 1 && runs[2 * i - 3] <= runs[2 * i + 1] + runs[2 * i - 1]) {
+          if (runs[2 * i - 1] < runs[2 * i + 3]) {
+            i--;
           }
+        } else if (runs[2 * i + 1] > runs[2 * i + 3]) {
+          break;
+        }
+        mergeRuns(items, runs, i, runCount, temp, comparator);
+        runCount--;
+      }
+    }
+
+    while (runCount > 1) {
+      int i = runCount - 2;
+      if (i > 0 && runs[2 * i - 1] < runs[2 * i + 3]) {
+        i--;
+      }
+      mergeRuns(items, runs, i, runCount, temp, comparator);
+      runCount--;
+    }
+  }
+
+  /**
+   * Return the minimum run length for an array of the given size: the size itself when small,
+   * otherwise a length between MIN_MERGE / 2 and MIN_MERGE that splits the array into a power of
+   * two runs or slightly fewer.
+   */
+  private static int minRunLength(int size) {
+    int remainder = 0;
+    while (size >= MIN_MERGE) {
+      remainder |= size & 1;
+      size >>= 1;
+    }
+    return size + remainder;
+  }
+
+  /**
+   * Return the length of the run that begins at start, reversing it first if it is strictly
+   * descending. Only strict descent is reversed, which keeps equal items in order.
+   */
+  private static <T> int countRunAndMakeAscending(T[] items, int start, int end,
+      Comparator<? super T> comparator) {
+    int runEnd = start + 1;
+    if (runEnd == end) {
+      return 1;
+    }
+    if (comparator.compare(items[runEnd++], items[start]) < 0) {
+      while (runEnd < end && comparator.compare(items[runEnd], items[runEnd - 1]) < 0) {
+        runEnd++;
+      }
+      for (int left = start, right = runEnd - 1; left < right; left++, right--) {
+        T swap = items[left];
+        items[left] = items[right];
+        items[right] = swap;
+      }
+      if (SortMetrics.ENABLED) {
+        SortMetrics.moves(runEnd - start);
+      }
+    } else {
+      while (runEnd < end && comparator.compare(items[runEnd], items[runEnd - 1]) >= 0) {
+        runEnd++;
+      }
+    }
+    return runEnd - start;
+  }
+
+  /**
+   * Sort items[start..end) when items[start..sorted) is already sorted, inserting each remaining
+   * item after the last item that is not greater than it.
+   */
+  private static <T> void binaryInsertionSort(T[] items, int start, int end, int sorted,
+      Comparator<? super T> comparator) {
+    for (int i = sorted; i < end; i++) {
+      T item = items[i];
+      int low = start;
+      int high = i;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (comparator.compare(item, items[mid]) < 0) {
+          high = mid;
         } else {
-          mergeSortAdaptive(items, start, end);
+          low = mid + 1;
+        }
+      }
+      System.arraycopy(items, low, items, low + 1, i - low);
+      items[low] = item;
+      if (SortMetrics.ENABLED) {
+        SortMetrics.moves(i - low + 1);
+      }
+    }
+  }
+
+  /**
+   * Merge run i of the stack with run i + 1, which must be the second or third from the top.
+   */
+  private static <T> void mergeRuns(T[] items, int[] runs, int i, int runCount, T[] temp,
+      Comparator<? super T> comparator) {
+    int start1 = runs[2 * i];
+    int length1 = runs[2 * i + 1];
+    int length2 = runs[2 * i + 3];
+    runs[2 * i + 1] = length1 + length2;
+    if (i == runCount - 3) {
+      runs[2 * i + 2] = runs[2 * i + 4];
+      runs[2 * i + 3] = runs[2 * i + 5];
+    }
+    mergeGalloping(items, start1, start1 + length1 - 1, start1 + length1 + length2 - 1, temp,
+        comparator);
+  }
+
+  /**
+   * Merge two adjacent sorted runs, items[start..mid] and items[mid+1..end], copying aside only
+   * the shorter of them, so a short run merges into a long one with scratch space for the short
+   * one alone. The part of the first run that precedes everything in the second, and the part of
+   * the second that follows everything in the first, are found by galloping and left where they
+   * are, and the merge gallops ahead when one run keeps winning. Ties go to the first run.
+   *
+   * @param items array of items
+   * @param start beginning index of the first run
+   * @param mid last index of the first run
+   * @param end last index of the second run
+   * @param temp scratch buffer with room for the shorter run
+   * @param comparator ordering of the runs
+   */
+  public static <T> void mergeGalloping(T[] items, int start, int mid, int end, T[] temp,
+      Comparator<? super T> comparator) {
+    int start1 = start;
+    int length1 = mid - start + 1;
+    int start2 = mid + 1;
+    int length2 = end - mid;
+    if (length1 == 0 || length2 == 0) {
+      return;
+    }
+
+    int skipped = gallopRight(items[start2], items, start1, length1, 0, comparator);
+    start1 += skipped;
+    length1 -= skipped;
+    if (length1 == 0) {
+      return;
+    }
+    length2 = gallopLeft(items[start1 + length1 - 1], items, start2, length2, length2 - 1,
+        comparator);
+    if (length2 == 0) {
+      return;
+    }
+
+    if (length1 <= length2) {
+      mergeLow(items, start1, length1, start2, length2, temp, comparator);
+    } else {
+      mergeHigh(items, start1, length1, start2, length2, temp, comparator);
+    }
+    if (SortMetrics.ENABLED) {
+      SortMetrics.moves(2L * Math.min(length1, length2) + Math.max(length1, length2));
+    }
+  }
+
+  /**
+   * Merge two adjacent runs, the first no longer than the second, by copying the first aside and
+   * filling from the left. Ties go to the first run.
+   */
+  private static <T> void mergeLow(T[] items, int start1, int length1, int start2, int length2,
+      T[] temp, Comparator<? super T> comparator) {
+    System.arraycopy(items, start1, temp, 0, length1);
+    int cursor1 = 0;
+    int cursor2 = start2;
+    int end2 = start2 + length2;
+    int dest = start1;
+    int wins1 = 0;
+    int wins2 = 0;
+
+    while (cursor1 < length1 && cursor2 < end2) {
+      if (wins1 >= MIN_GALLOP) {
+        // Copy every remaining item of the first run that does not follow the second's next.
+        int count = gallopRight(items[cursor2], temp, cursor1, length1 - cursor1, 0, comparator);
+        System.arraycopy(temp, cursor1, items, dest, count);
+        dest += count;
+        cursor1 += count;
+        wins1 = 0;
+        if (cursor1 < length1) {
+          items[dest++] = items[cursor2++];
         }
+      } else if (wins2 >= MIN_GALLOP) {
+        // Copy every remaining item of the second run that precedes the first's next.
+        int count = gallopLeft(temp[cursor1], items, cursor2, end2 - cursor2, 0, comparator);
+        System.arraycopy(items, cursor2, items, dest, count);
+        dest += count;
+        cursor2 += count;
+        wins2 = 0;
+        if (cursor2 < end2) {
+          items[dest++] = temp[cursor1++];
+        }
+      } else if (comparator.compare(items[cursor2], temp[cursor1]) < 0) {
+        items[dest++] = items[cursor2++];
+        wins2++;
+        wins1 = 0;
       } else {
-        BasicSorts.insertionSubsort(items, start, end);
+        items[dest++] = temp[cursor1++];
+        wins1++;
+        wins2 = 0;
+      }
+    }
+    // Whatever is left of the second run is already in place.
+    System.arraycopy(temp, cursor1, items, dest, length1 - cursor1);
+  }
+
+  /**
+   * Merge two adjacent runs, the second shorter than the first, by copying the second aside and
+   * filling from the right. Ties go to the second run, which keeps them after the first's.
+   */
+  private static <T> void mergeHigh(T[] items, int start1, int length1, int start2, int length2,
+      T[] temp, Comparator<? super T> comparator) {
+    System.arraycopy(items, start2, temp, 0, length2);
+    int cursor1 = start1 + length1 - 1;
+    int cursor2 = length2 - 1;
+    int dest = start2 + length2 - 1;
+    int wins1 = 0;
+    int wins2 = 0;
+
+    while (cursor1 >= start1 && cursor2 >= 0) {
+      if (wins1 >= MIN_GALLOP) {
+        // Move up every remaining item of the first run that follows the second's next.
+        int count = cursor1 - start1 + 1
+            - gallopRight(temp[cursor2], items, start1, cursor1 - start1 + 1, cursor1 - start1,
+                comparator);
+        System.arraycopy(items, cursor1 - count + 1, items, dest - count + 1, count);
+        dest -= count;
+        cursor1 -= count;
+        wins1 = 0;
+        if (cursor1 >= start1) {
+          items[dest--] = temp[cursor2--];
+        }
+      } else if (wins2 >= MIN_GALLOP) {
+        // Copy every remaining item of the second run that does not precede the first's next.
+        int count = cursor2 + 1
+            - gallopLeft(items[cursor1], temp, 0, cursor2 + 1, cursor2, comparator);
+        System.arraycopy(temp, cursor2 - count + 1, items, dest - count + 1, count);
+        dest -= count;
+        cursor2 -= count;
+        wins2 = 0;
+        if (cursor2 >= 0) {
+          items[dest--] = items[cursor1--];
+        }
+      } else if (comparator.compare(temp[cursor2], items[cursor1]) < 0) {
+        items[dest--] = items[cursor1--];
+        wins1++;
+        wins2 = 0;
+      } else {
+        items[dest--] = temp[cursor2--];
+        wins2++;
+        wins1 = 0;
+      }
+    }
+    // Whatever is left of the first run is already in place.
+    System.arraycopy(temp, 0, items, start1, cursor2 + 1);
+  }
+
+  /**
+   * Return how many items of the sorted range items[start..start + length) are less than the key,
+   * searching outward from start + hint in exponentially growing steps and then by bisection.
+   */
+  private static <T> int gallopLeft(T key, T[] items, int start, int length, int hint,
+      Comparator<? super T> comparator) {
+    int lastOffset = 0;
+    int offset = 1;
+    if (comparator.compare(key, items[start + hint]) > 0) {
+      // Gallop right until items[start + hint + lastOffset] < key <= items[start + hint + offset].
+      int maxOffset = length - hint;
+      while (offset < maxOffset && comparator.compare(key, items[start + hint + offset]) > 0) {
+        lastOffset = offset;
+        offset = 2 * offset + 1;
+        if (offset <= 0) {
+          offset = maxOffset;
+        }
+      }
+      offset = Math.min(offset, maxOffset);
+      lastOffset += hint;
+      offset += hint;
+    } else {
+      // Gallop left until items[start + hint - offset] < key <= items[start + hint - lastOffset].
+      int maxOffset = hint + 1;
+      while (offset < maxOffset && comparator.compare(key, items[start + hint - offset]) <= 0) {
+        lastOffset = offset;
+        offset = 2 * offset + 1;
+        if (offset <= 0) {
+          offset = maxOffset;
+        }
+      }
+      offset = Math.min(offset, maxOffset);
+      int previous = lastOffset;
+      lastOffset = hint - offset;
+      offset = hint - previous;
+    }
+
+    // The answer is in (lastOffset, offset].
+    lastOffset++;
+    while (lastOffset < offset) {
+      int mid = (lastOffset + offset) >>> 1;
+      if (comparator.compare(key, items[start + mid]) > 0) {
+        lastOffset = mid + 1;
+      } else {
+        offset = mid;
+      }
+    }
+    return offset;
+  }
+
+  /**
+   * Return how many items of the sorted range items[start..start + length) are not greater than
+   * the key, searching outward from start + hint like {@link #gallopLeft}.
+   */
+  private static <T> int gallopRight(T key, T[] items, int start, int length, int hint,
+      Comparator<? super T> comparator) {
+    int lastOffset = 0;
+    int offset = 1;
+    if (comparator.compare(key, items[start + hint]) < 0) {
+      // Gallop left until items[start + hint - offset] <= key < items[start + hint - lastOffset].
+      int maxOffset = hint + 1;
+      while (offset < maxOffset && comparator.compare(key, items[start + hint - offset]) < 0) {
+        lastOffset = offset;
+        offset = 2 * offset + 1;
+        if (offset <= 0) {
+          offset = maxOffset;
+        }
+      }
+      offset = Math.min(offset, maxOffset);
+      int previous = lastOffset;
+      lastOffset = hint - offset;
+      offset = hint - previous;
+    } else {
+      // Gallop right until items[start + hint + lastOffset] <= key < items[start + hint + offset].
+      int maxOffset = length - hint;
+      while (offset < maxOffset && comparator.compare(key, items[start + hint + offset]) >= 0) {
+        lastOffset = offset;
+        offset = 2 * offset + 1;
+        if (offset <= 0) {
+          offset = maxOffset;
+        }
+      }
+      offset = Math.min(offset, maxOffset);
+      lastOffset += hint;
+      offset += hint;
+    }
+
+    // The answer is in (lastOffset, offset].
+    lastOffset++;
+    while (lastOffset < offset) {
+      int mid = (lastOffset + offset) >>> 1;
+      if (comparator.compare(key, items[start + mid]) < 0) {
+        offset = mid;
+      } else {
+        lastOffset = mid + 1;
+      }
+    }
+    return offset;
+  }
+
+  /**
+   * Stably merge sort the provided array in O(sqrt(n)) scratch space.
+   *
+   * @param items array to sort
+   */
+  public static <T extends Comparable<T>> void mergeSortInPlace(T[] items) {
+    mergeSortInPlace(items, Comparator.naturalOrder());
+  }
+
+  /**
+   * Stably merge sort the provided array with the given comparator in O(sqrt(n)) scratch space.
+   *
+   * @param items array to sort
+   * @param comparator ordering to sort by
+   */
+  public static <T> void mergeSortInPlace(T[] items, Comparator<? super T> comparator) {
+    SortContext context = SortContext.acquire();
+    try {
+      mergeSortInPlace(items, comparator, context);
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Stably merge sort the provided array, taking O(sqrt(n)) scratch space from the given context.
+   *
+   * @param items array to sort
+   * @param context source of the scratch buffer
+   */
+  public static <T extends Comparable<T>> void mergeSortInPlace(T[] items, SortContext context) {
+    mergeSortInPlace(items, Comparator.naturalOrder(), context);
+  }
+
+  /**
+   * Stably merge sort the provided array with the given comparator, taking only O(sqrt(n)) scratch
+   * space from the given context, for arrays too large to spare the n/2 of mergeSortHalfSpace.
+   * Small regions are insertion sorted as in mergeSortAdaptive. Two sorted halves are merged
+   * through the buffer when the shorter one fits; otherwise they are split into smaller merges by
+   * binary searches and block rotations, as in the buffer-less merge of SymMerge and
+   * std::inplace_merge. That costs O(n log n) comparisons and O(n log^2 n) moves in the worst
+   * case.
+   *
+   * @param items array to sort
+   * @param comparator ordering to sort by
+   * @param context source of the scratch buffer
+   */
+  public static <T> void mergeSortInPlace(T[] items, Comparator<? super T> comparator,
+      SortContext context) {
+    int bufferSize = inPlaceBufferSize(items.length);
+    T[] buffer = context.objects(bufferSize);
+    mergeSortInPlace(items, 0, items.length - 1, buffer, bufferSize, comparator);
+  }
+
+  /**
+   * Recursive helper for the in-place merge sort.
+   *
+   * @param items array of items
+   * @param start start index
+   * @param end end index
+   * @param buffer scratch space for merges with a short side
+   * @param bufferSize number of slots of buffer to use
+   */
+  private static <T> void mergeSortInPlace(T[] items, int start, int end, T[] buffer,
+      int bufferSize, Comparator<? super T> comparator) {
+    if (end - start + 1 < MAX_VALUE_THRESHOLD) {
+      BasicSorts.insertionSubsort(items, start, end, comparator);
+      return;
+    }
+    if (SortMetrics.ENABLED) {
+      SortMetrics.enter();
+    }
+    int mid = (start + end) >>> 1;
+    mergeSortInPlace(items, start, mid, buffer, bufferSize, comparator);
+    mergeSortInPlace(items, mid + 1, end, buffer, bufferSize, comparator);
+    if (comparator.compare(items[mid + 1], items[mid]) < 0) {
+      mergeInPlace(items, start, mid + 1, end + 1, buffer, bufferSize, comparator);
+    }
+    if (SortMetrics.ENABLED) {
+      SortMetrics.exit();
+    }
+  }
+
+  /**
+   * Stably merge the sorted runs items[first..middle-1] and items[middle..last-1]. A run short
+   * enough for the buffer is copied there and merged directly. Otherwise the longer run is cut in
+   * half, the other is cut where that middle item belongs, and rotating the two inner pieces past
+   * each other leaves two smaller merges; the smaller one is recursed on and the larger one looped
+   * on, so the stack stays O(log n) deep.
+   */
+  private static <T> void mergeInPlace(T[] items, int first, int middle, int last, T[] buffer,
+      int bufferSize, Comparator<? super T> comparator) {
+    while (first < middle && middle < last) {
+      int length1 = middle - first;
+      int length2 = last - middle;
+      if (length1 <= bufferSize) {
+        mergeLowBuffered(items, first, middle, last, buffer, comparator);
+        return;
+      }
+      if (length2 <= bufferSize) {
+        mergeHighBuffered(items, first, middle, last, buffer, comparator);
+        return;
       }
+
+      int cut1;
+      int cut2;
+      if (length1 > length2) {
+        cut1 = first + length1 / 2;
+        cut2 = lowerBound(items, middle, last, items[cut1], comparator);
+      } else {
+        cut2 = middle + length2 / 2;
+        cut1 = upperBound(items, first, middle, items[cut2], comparator);
+      }
+      int newMiddle = rotate(items, cut1, middle, cut2, buffer, bufferSize);
+
+      if (newMiddle - first < last - newMiddle) {
+        mergeInPlace(items, first, cut1, newMiddle, buffer, bufferSize, comparator);
+        first = newMiddle;
+        middle = cut2;
+      } else {
+        mergeInPlace(items, newMiddle, cut2, last, buffer, bufferSize, comparator);
+        last = newMiddle;
+        middle = cut1;
+      }
+    }
+  }
+
+  /**
+   * Merge forwards, copying the left run into the buffer.
+   */
+  private static <T> void mergeLowBuffered(T[] items, int first, int middle, int last,
+      T[] buffer, Comparator<? super T> comparator) {
+    int length1 = middle - first;
+    System.arraycopy(items, first, buffer, 0, length1);
+    int left = 0;
+    int right = middle;
+    int dest = first;
+    while (left < length1 && right < last) {
+      if (comparator.compare(items[right], buffer[left]) < 0) {
+        items[dest++] = items[right++];
+      } else {
+        items[dest++] = buffer[left++];
+      }
+    }
+    System.arraycopy(buffer, left, items, dest, length1 - left);
+    if (SortMetrics.ENABLED) {
+      SortMetrics.moves(length1 + dest - first + length1 - left);
+    }
+  }
+
+  /**
+   * Merge backwards, copying the right run into the buffer.
+   */
+  private static <T> void mergeHighBuffered(T[] items, int first, int middle, int last,
+      T[] buffer, Comparator<? super T> comparator) {
+    int length2 = last - middle;
+    System.arraycopy(items, middle, buffer, 0, length2);
+    int left = middle - 1;
+    int right = length2 - 1;
+    int dest = last - 1;
+    while (left >= first && right >= 0) {
+      if (comparator.compare(buffer[right], items[left]) < 0) {
+        items[dest--] = items[left--];
+      } else {
+        items[dest--] = buffer[right--];
+      }
+    }
+    System.arraycopy(buffer, 0, items, first, right + 1);
+    if (SortMetrics.ENABLED) {
+      SortMetrics.moves(length2 + last - 1 - dest + right + 1);
+    }
+  }
+
+  /**
+   * Swap the adjacent blocks items[first..middle-1] and items[middle..last-1], through the buffer
+   * if the shorter one fits and by three reversals otherwise.
+   *
+   * @return the index where the block that started at first now starts
+   */
+  private static <T> int rotate(T[] items, int first, int middle, int last, T[] buffer,
+      int bufferSize) {
+    int length1 = middle - first;
+    int length2 = last - middle;
+    if (SortMetrics.ENABLED) {
+      // Every item is written once, and the shorter block again through the buffer or every item
+      // again by the reversals.
+      int shorter = Math.min(length1, length2);
+      SortMetrics.moves(length1 + length2 + (shorter <= bufferSize ? shorter : length1 + length2));
+    }
+    if (length1 <= length2 && length1 <= bufferSize) {
+      System.arraycopy(items, first, buffer, 0, length1);
+      System.arraycopy(items, middle, items, first, length2);
+      System.arraycopy(buffer, 0, items, first + length2, length1);
+    } else if (length2 <= bufferSize) {
+      System.arraycopy(items, middle, buffer, 0, length2);
+      System.arraycopy(items, first, items, first + length2, length1);
+      System.arraycopy(buffer, 0, items, first, length2);
+    } else {
+      reverse(items, first, middle - 1);
+      reverse(items, middle, last - 1);
+      reverse(items, first, last - 1);
+    }
+    return first + length2;
+  }
+
+  /**
+   * Return the first index of items[low..high-1] whose item is not less than the key.
+   */
+  private static <T> int lowerBound(T[] items, int low, int high, T key,
+      Comparator<? super T> comparator) {
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (comparator.compare(items[mid], key) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Return the first index of items[low..high-1] whose item is greater than the key.
+   */
+  private static <T> int upperBound(T[] items, int low, int high, T key,
+      Comparator<? super T> comparator) {
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (comparator.compare(key, items[mid]) < 0) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  private static <T> void reverse(T[] items, int low, int high) {
+    while (low < high) {
+      T temp = items[low];
+      items[low++] = items[high];
+      items[high--] = temp;
+    }
+  }
+
+  /**
+   * Return the scratch space the in-place merge sort uses for an array of the given length.
+   */
+  private static int inPlaceBufferSize(int size) {
+    return (int) Math.ceil(Math.sqrt(size));
+  }
+
+  /**
+   * Merge sort the provided array of ints.
+   *
+   * @param items array to sort
+   */
+  public static void mergeSortHalfSpace(int[] items) {
+    SortContext context = SortContext.acquire();
+    try {
+      mergeSortHalfSpace(items, context);
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Merge sort the provided array of ints, taking half of its length in scratch space from the
+   * given context.
+   *
+   * @param items array to sort
+   * @param context source of the scratch buffer
+   */
+  public static void mergeSortHalfSpace(int[] items, SortContext context) {
+    int[] temp = context.ints((items.length + 1) / 2);
+    mergeSortHalfSpace(items, 0, items.length - 1, temp);
+  }
+
+  /**
+   * Recursive helper method for the merge sort algorithm.
+   *
+   * @param items The array to sort
+   * @param start Index of the left end of the region to sort
+   * @param end Index of the right end of the region to sort.
+   * @param temp Scratch space for the left half of each merge
+   */
+  private static void mergeSortHalfSpace(int[] items, int start, int end, int[] temp) {
+    if (start < end) {
+      int mid = (start + end) / 2;
+      mergeSortHalfSpace(items, start, mid, temp);
+      mergeSortHalfSpace(items, mid + 1, end, temp);
+      merge(items, start, mid, end, temp);
+    }
+  }
+
+  /**
+   * Merge two adjacent sorted runs, copying only the left run aside.
+   *
+   * @param items array of items to sort
+   * @param start beginning index
+   * @param mid middle index
+   * @param end last index
+   */
+  public static void merge(int[] items, int start, int mid, int end) {
+    SortContext context = SortContext.acquire();
+    try {
+      merge(items, start, mid, end, context.ints(mid - start + 1));
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Merge two adjacent sorted runs, copying the left run into the provided scratch buffer.
+   *
+   * @param items array of items to sort
+   * @param start beginning index
+   * @param mid middle index
+   * @param end last index
+   * @param temp scratch buffer with room for at least mid - start + 1 items
+   */
+  public static void merge(int[] items, int start, int mid, int end, int[] temp) {
+    int size = mid - start + 1;
+    int tmpIndex = 0;
+    int rightIndex = mid + 1;
+    int mergeIndex = start;
+    System.arraycopy(items, start, temp, 0, size);
+
+    while (tmpIndex < size && rightIndex <= end) {
+      if (temp[tmpIndex] <= items[rightIndex]) {
+        items[mergeIndex] = temp[tmpIndex];
+        tmpIndex++;
+        mergeIndex++;
+      } else {
+        items[mergeIndex] = items[rightIndex];
+        rightIndex++;
+        mergeIndex++;
+      }
+    }
+    while (tmpIndex < size) {
+      items[mergeIndex] = temp[tmpIndex];
+      mergeIndex++;
+      tmpIndex++;
+    }
+
+  }
+
+  /**
+   * Merge sort the provided array of ints by using an improved merge operation and switching to
+   * insertion sort for small sub-arrays.
+   *
+   * @param items array to be sorted
+   */
+  public static void mergeSortAdaptive(int[] items) {
+    mergeSortAdaptive(items, 0, items.length - 1);
+  }
+
+  /**
+   * Merge sort the provided array of ints by using an improved merge operation and switching to
+   * insertion sort for small sub-arrays, taking scratch space from the given context.
+   *
+   * @param items array to be sorted
+   * @param context source of the scratch buffer
+   */
+  public static void mergeSortAdaptive(int[] items, SortContext context) {
+    int[] temp = context.ints((items.length + 1) / 2);
+    mergeSortAdaptive(items, 0, items.length - 1, temp);
+  }
+
+  /**
+   * Merge sort the indicated region by using an improved merge operation and switching to
+   * insertion sort for small sub-arrays. Scratch space is borrowed from the calling thread.
+   *
+   * @param items array of items
+   * @param start start index
+   * @param end end index
+   */
+  protected static void mergeSortAdaptive(int[] items, int start, int end) {
+    SortContext context = SortContext.acquire();
+    try {
+      mergeSortAdaptive(items, start, end, context.ints((end - start + 2) / 2));
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Recursive helper for the adaptive merge sort.
+   *
+   * @param items array of items
+   * @param start start index
+   * @param end end index
+   * @param temp scratch space for the left half of each merge
+   */
+  private static void mergeSortAdaptive(int[] items, int start, int end, int[] temp) {
+    if (start < end) {
+      if ((end - start + 1) < MAX_INT_THRESHOLD) {
+        SmallSorts.subsort(items, start, end);
+      } else {
+        int mid = (start + end) / 2;
+        mergeSortAdaptive(items, start, mid, temp);
+        mergeSortAdaptive(items, mid + 1, end, temp);
+        merge(items, start, mid, end, temp);
+      }
+    }
+  }
+
+  /**
+   * Primitive counterpart of {@link #mergeSubsortAdaptive(Comparable[], int, int)}.
+   *
+   * @param items items to sort
+   * @param start beginning index
+   * @param end last index
+   */
+  public static void mergeSubsortAdaptive(int[] items, int start, int end) {
+    int size = end - start + 1;
+    if (start < end) {
+      if (size >= MAX_INT_THRESHOLD) {
+        if (QuickSort.partition(items, start, end) < 2 * Math.log(size)) {
+          QuickSort.quickSort(items, start, end);
+        } else {
+          mergeSortAdaptive(items, start, end);
+        }
+      } else {
+        SmallSorts.subsort(items, start, end);
+      }
+    }
+  }
+
+  /**
+   * Stably merge sort the provided array of ints in O(sqrt(n)) scratch space. See
+   * {@link #mergeSortInPlace(Object[], Comparator, SortContext)}.
+   *
+   * @param items array to sort
+   */
+  public static void mergeSortInPlace(int[] items) {
+    SortContext context = SortContext.acquire();
+    try {
+      mergeSortInPlace(items, context);
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Stably merge sort the provided array of ints, taking O(sqrt(n)) scratch space from the given
+   * context.
+   *
+   * @param items array to sort
+   * @param context source of the scratch buffer
+   */
+  public static void mergeSortInPlace(int[] items, SortContext context) {
+    int bufferSize = inPlaceBufferSize(items.length);
+    mergeSortInPlace(items, 0, items.length - 1, context.ints(bufferSize), bufferSize);
+  }
+
+  /**
+   * Recursive helper for the in-place merge sort.
+   *
+   * @param items array of items
+   * @param start start index
+   * @param end end index
+   * @param buffer scratch space for merges with a short side
+   * @param bufferSize number of slots of buffer to use
+   */
+  private static void mergeSortInPlace(int[] items, int start, int end, int[] buffer,
+      int bufferSize) {
+    if (end - start + 1 < MAX_INT_THRESHOLD) {
+      SmallSorts.subsort(items, start, end);
+      return;
+    }
+    int mid = (start + end) >>> 1;
+    mergeSortInPlace(items, start, mid, buffer, bufferSize);
+    mergeSortInPlace(items, mid + 1, end, buffer, bufferSize);
+    if (items[mid + 1] < items[mid]) {
+      mergeInPlace(items, start, mid + 1, end + 1, buffer, bufferSize);
+    }
+  }
+
+  /**
+   * Stably merge the sorted runs items[first..middle-1] and items[middle..last-1]. A run short
+   * enough for the buffer is copied there and merged directly. Otherwise the longer run is cut in
+   * half, the other is cut where that middle item belongs, and rotating the two inner pieces past
+   * each other leaves two smaller merges; the smaller one is recursed on and the larger one looped
+   * on, so the stack stays O(log n) deep.
+   */
+  private static void mergeInPlace(int[] items, int first, int middle, int last, int[] buffer,
+      int bufferSize) {
+    while (first < middle && middle < last) {
+      int length1 = middle - first;
+      int length2 = last - middle;
+      if (length1 <= bufferSize) {
+        mergeLowBuffered(items, first, middle, last, buffer);
+        return;
+      }
+      if (length2 <= bufferSize) {
+        mergeHighBuffered(items, first, middle, last, buffer);
+        return;
+      }
+
+      int cut1;
+      int cut2;
+      if (length1 > length2) {
+        cut1 = first + length1 / 2;
+        cut2 = lowerBound(items, middle, last, items[cut1]);
+      } else {
+        cut2 = middle + length2 / 2;
+        cut1 = upperBound(items, first, middle, items[cut2]);
+      }
+      int newMiddle = rotate(items, cut1, middle, cut2, buffer, bufferSize);
+
+      if (newMiddle - first < last - newMiddle) {
+        mergeInPlace(items, first, cut1, newMiddle, buffer, bufferSize);
+        first = newMiddle;
+        middle = cut2;
+      } else {
+        mergeInPlace(items, newMiddle, cut2, last, buffer, bufferSize);
+        last = newMiddle;
+        middle = cut1;
+      }
+    }
+  }
+
+  /**
+   * Merge forwards, copying the left run into the buffer.
+   */
+  private static void mergeLowBuffered(int[] items, int first, int middle, int last,
+      int[] buffer) {
+    int length1 = middle - first;
+    System.arraycopy(items, first, buffer, 0, length1);
+    int left = 0;
+    int right = middle;
+    int dest = first;
+    while (left < length1 && right < last) {
+      if (items[right] < buffer[left]) {
+        items[dest++] = items[right++];
+      } else {
+        items[dest++] = buffer[left++];
+      }
+    }
+    System.arraycopy(buffer, left, items, dest, length1 - left);
+  }
+
+  /**
+   * Merge backwards, copying the right run into the buffer.
+   */
+  private static void mergeHighBuffered(int[] items, int first, int middle, int last,
+      int[] buffer) {
+    int length2 = last - middle;
+    System.arraycopy(items, middle, buffer, 0, length2);
+    int left = middle - 1;
+    int right = length2 - 1;
+    int dest = last - 1;
+    while (left >= first && right >= 0) {
+      if (buffer[right] < items[left]) {
+        items[dest--] = items[left--];
+      } else {
+        items[dest--] = buffer[right--];
+      }
+    }
+    System.arraycopy(buffer, 0, items, first, right + 1);
+  }
+
+  /**
+   * Swap the adjacent blocks items[first..middle-1] and items[middle..last-1], through the buffer
+   * if the shorter one fits and by three reversals otherwise.
+   *
+   * @return the index where the block that started at first now starts
+   */
+  private static int rotate(int[] items, int first, int middle, int last, int[] buffer,
+      int bufferSize) {
+    int length1 = middle - first;
+    int length2 = last - middle;
+    if (length1 <= length2 && length1 <= bufferSize) {
+      System.arraycopy(items, first, buffer, 0, length1);
+      System.arraycopy(items, middle, items, first, length2);
+      System.arraycopy(buffer, 0, items, first + length2, length1);
+    } else if (length2 <= bufferSize) {
+      System.arraycopy(items, middle, buffer, 0, length2);
+      System.arraycopy(items, first, items, first + length2, length1);
+      System.arraycopy(buffer, 0, items, first, length2);
+    } else {
+      reverse(items, first, middle - 1);
+      reverse(items, middle, last - 1);
+      reverse(items, first, last - 1);
+    }
+    return first + length2;
+  }
+
+  /**
+   * Return the first index of items[low..high-1] whose item is not less than the key.
+   */
+  private static int lowerBound(int[] items, int low, int high, int key) {
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (items[mid] < key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Return the first index of items[low..high-1] whose item is greater than the key.
+   */
+  private static int upperBound(int[] items, int low, int high, int key) {
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (key < items[mid]) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  private static void reverse(int[] items, int low, int high) {
+    while (low < high) {
+      int temp = items[low];
+      items[low++] = items[high];
+      items[high--] = temp;
+    }
+  }
+
+  /**
+   * Merge sort the provided array of longs.
+   *
+   * @param items array to sort
+   */
+  public static void mergeSortHalfSpace(long[] items) {
+    SortContext context = SortContext.acquire();
+    try {
+      mergeSortHalfSpace(items, context);
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Merge sort the provided array of longs, taking half of its length in scratch space from the
+   * given context.
+   *
+   * @param items array to sort
+   * @param context source of the scratch buffer
+   */
+  public static void mergeSortHalfSpace(long[] items, SortContext context) {
+    long[] temp = context.longs((items.length + 1) / 2);
+    mergeSortHalfSpace(items, 0, items.length - 1, temp);
+  }
+
+  /**
+   * Recursive helper method for the merge sort algorithm.
+   *
+   * @param items The array to sort
+   * @param start Index of the left end of the region to sort
+   * @param end Index of the right end of the region to sort.
+   * @param temp Scratch space for the left half of each merge
+   */
+  private static void mergeSortHalfSpace(long[] items, int start, int end, long[] temp) {
+    if (start < end) {
+      int mid = (start + end) / 2;
+      mergeSortHalfSpace(items, start, mid, temp);
+      mergeSortHalfSpace(items, mid + 1, end, temp);
+      merge(items, start, mid, end, temp);
+    }
+  }
+
+  /**
+   * Merge two adjacent sorted runs, copying only the left run aside.
+   *
+   * @param items array of items to sort
+   * @param start beginning index
+   * @param mid middle index
+   * @param end last index
+   */
+  public static void merge(long[] items, int start, int mid, int end) {
+    SortContext context = SortContext.acquire();
+    try {
+      merge(items, start, mid, end, context.longs(mid - start + 1));
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Merge two adjacent sorted runs, copying the left run into the provided scratch buffer.
+   *
+   * @param items array of items to sort
+   * @param start beginning index
+   * @param mid middle index
+   * @param end last index
+   * @param temp scratch buffer with room for at least mid - start + 1 items
+   */
+  public static void merge(long[] items, int start, int mid, int end, long[] temp) {
+    int size = mid - start + 1;
+    int tmpIndex = 0;
+    int rightIndex = mid + 1;
+    int mergeIndex = start;
+    System.arraycopy(items, start, temp, 0, size);
+
+    while (tmpIndex < size && rightIndex <= end) {
+      if (temp[tmpIndex] <= items[rightIndex]) {
+        items[mergeIndex] = temp[tmpIndex];
+        tmpIndex++;
+        mergeIndex++;
+      } else {
+        items[mergeIndex] = items[rightIndex];
+        rightIndex++;
+        mergeIndex++;
+      }
+    }
+    while (tmpIndex < size) {
+      items[mergeIndex] = temp[tmpIndex];
+      mergeIndex++;
+      tmpIndex++;
+    }
+
+  }
+
+  /**
+   * Merge sort the provided array of longs by using an improved merge operation and switching to
+   * insertion sort for small sub-arrays.
+   *
+   * @param items array to be sorted
+   */
+  public static void mergeSortAdaptive(long[] items) {
+    mergeSortAdaptive(items, 0, items.length - 1);
+  }
+
+  /**
+   * Merge sort the provided array of longs by using an improved merge operation and switching to
+   * insertion sort for small sub-arrays, taking scratch space from the given context.
+   *
+   * @param items array to be sorted
+   * @param context source of the scratch buffer
+   */
+  public static void mergeSortAdaptive(long[] items, SortContext context) {
+    long[] temp = context.longs((items.length + 1) / 2);
+    mergeSortAdaptive(items, 0, items.length - 1, temp);
+  }
+
+  /**
+   * Merge sort the indicated region by using an improved merge operation and switching to
+   * insertion sort for small sub-arrays. Scratch space is borrowed from the calling thread.
+   *
+   * @param items array of items
+   * @param start start index
+   * @param end end index
+   */
+  protected static void mergeSortAdaptive(long[] items, int start, int end) {
+    SortContext context = SortContext.acquire();
+    try {
+      mergeSortAdaptive(items, start, end, context.longs((end - start + 2) / 2));
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Recursive helper for the adaptive merge sort.
+   *
+   * @param items array of items
+   * @param start start index
+   * @param end end index
+   * @param temp scratch space for the left half of each merge
+   */
+  private static void mergeSortAdaptive(long[] items, int start, int end, long[] temp) {
+    if (start < end) {
+      if ((end - start + 1) < MAX_LONG_THRESHOLD) {
+        SmallSorts.subsort(items, start, end);
+      } else {
+        int mid = (start + end) / 2;
+        mergeSortAdaptive(items, start, mid, temp);
+        mergeSortAdaptive(items, mid + 1, end, temp);
+        merge(items, start, mid, end, temp);
+      }
+    }
+  }
+
+  /**
+   * Primitive counterpart of {@link #mergeSubsortAdaptive(Comparable[], int, int)}.
+   *
+   * @param items items to sort
+   * @param start beginning index
+   * @param end last index
+   */
+  public static void mergeSubsortAdaptive(long[] items, int start, int end) {
+    int size = end - start + 1;
+    if (start < end) {
+      if (size >= MAX_LONG_THRESHOLD) {
+        if (QuickSort.partition(items, start, end) < 2 * Math.log(size)) {
+          QuickSort.quickSort(items, start, end);
+        } else {
+          mergeSortAdaptive(items, start, end);
+        }
+      } else {
+        SmallSorts.subsort(items, start, end);
+      }
+    }
+  }
+
+  /**
+   * Stably merge sort the provided array of longs in O(sqrt(n)) scratch space. See
+   * {@link #mergeSortInPlace(Object[], Comparator, SortContext)}.
+   *
+   * @param items array to sort
+   */
+  public static void mergeSortInPlace(long[] items) {
+    SortContext context = SortContext.acquire();
+    try {
+      mergeSortInPlace(items, context);
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Stably merge sort the provided array of longs, taking O(sqrt(n)) scratch space from the given
+   * context.
+   *
+   * @param items array to sort
+   * @param context source of the scratch buffer
+   */
+  public static void mergeSortInPlace(long[] items, SortContext context) {
+    int bufferSize = inPlaceBufferSize(items.length);
+    mergeSortInPlace(items, 0, items.length - 1, context.longs(bufferSize), bufferSize);
+  }
+
+  /**
+   * Recursive helper for the in-place merge sort.
+   *
+   * @param items array of items
+   * @param start start index
+   * @param end end index
+   * @param buffer scratch space for merges with a short side
+   * @param bufferSize number of slots of buffer to use
+   */
+  private static void mergeSortInPlace(long[] items, int start, int end, long[] buffer,
+      int bufferSize) {
+    if (end - start + 1 < MAX_LONG_THRESHOLD) {
+      SmallSorts.subsort(items, start, end);
+      return;
+    }
+    int mid = (start + end) >>> 1;
+    mergeSortInPlace(items, start, mid, buffer, bufferSize);
+    mergeSortInPlace(items, mid + 1, end, buffer, bufferSize);
+    if (items[mid + 1] < items[mid]) {
+      mergeInPlace(items, start, mid + 1, end + 1, buffer, bufferSize);
+    }
+  }
+
+  /**
+   * Stably merge the sorted runs items[first..middle-1] and items[middle..last-1]. A run short
+   * enough for the buffer is copied there and merged directly. Otherwise the longer run is cut in
+   * half, the other is cut where that middle item belongs, and rotating the two inner pieces past
+   * each other leaves two smaller merges; the smaller one is recursed on and the larger one looped
+   * on, so the stack stays O(log n) deep.
+   */
+  private static void mergeInPlace(long[] items, int first, int middle, int last, long[] buffer,
+      int bufferSize) {
+    while (first < middle && middle < last) {
+      int length1 = middle - first;
+      int length2 = last - middle;
+      if (length1 <= bufferSize) {
+        mergeLowBuffered(items, first, middle, last, buffer);
+        return;
+      }
+      if (length2 <= bufferSize) {
+        mergeHighBuffered(items, first, middle, last, buffer);
+        return;
+      }
+
+      int cut1;
+      int cut2;
+      if (length1 > length2) {
+        cut1 = first + length1 / 2;
+        cut2 = lowerBound(items, middle, last, items[cut1]);
+      } else {
+        cut2 = middle + length2 / 2;
+        cut1 = upperBound(items, first, middle, items[cut2]);
+      }
+      int newMiddle = rotate(items, cut1, middle, cut2, buffer, bufferSize);
+
+      if (newMiddle - first < last - newMiddle) {
+        mergeInPlace(items, first, cut1, newMiddle, buffer, bufferSize);
+        first = newMiddle;
+        middle = cut2;
+      } else {
+        mergeInPlace(items, newMiddle, cut2, last, buffer, bufferSize);
+        last = newMiddle;
+        middle = cut1;
+      }
+    }
+  }
+
+  /**
+   * Merge forwards, copying the left run into the buffer.
+   */
+  private static void mergeLowBuffered(long[] items, int first, int middle, int last,
+      long[] buffer) {
+    int length1 = middle - first;
+    System.arraycopy(items, first, buffer, 0, length1);
+    int left = 0;
+    int right = middle;
+    int dest = first;
+    while (left < length1 && right < last) {
+      if (items[right] < buffer[left]) {
+        items[dest++] = items[right++];
+      } else {
+        items[dest++] = buffer[left++];
+      }
+    }
+    System.arraycopy(buffer, left, items, dest, length1 - left);
+  }
+
+  /**
+   * Merge backwards, copying the right run into the buffer.
+   */
+  private static void mergeHighBuffered(long[] items, int first, int middle, int last,
+      long[] buffer) {
+    int length2 = last - middle;
+    System.arraycopy(items, middle, buffer, 0, length2);
+    int left = middle - 1;
+    int right = length2 - 1;
+    int dest = last - 1;
+    while (left >= first && right >= 0) {
+      if (buffer[right] < items[left]) {
+        items[dest--] = items[left--];
+      } else {
+        items[dest--] = buffer[right--];
+      }
+    }
+    System.arraycopy(buffer, 0, items, first, right + 1);
+  }
+
+  /**
+   * Swap the adjacent blocks items[first..middle-1] and items[middle..last-1], through the buffer
+   * if the shorter one fits and by three reversals otherwise.
+   *
+   * @return the index where the block that started at first now starts
+   */
+  private static int rotate(long[] items, int first, int middle, int last, long[] buffer,
+      int bufferSize) {
+    int length1 = middle - first;
+    int length2 = last - middle;
+    if (length1 <= length2 && length1 <= bufferSize) {
+      System.arraycopy(items, first, buffer, 0, length1);
+      System.arraycopy(items, middle, items, first, length2);
+      System.arraycopy(buffer, 0, items, first + length2, length1);
+    } else if (length2 <= bufferSize) {
+      System.arraycopy(items, middle, buffer, 0, length2);
+      System.arraycopy(items, first, items, first + length2, length1);
+      System.arraycopy(buffer, 0, items, first, length2);
+    } else {
+      reverse(items, first, middle - 1);
+      reverse(items, middle, last - 1);
+      reverse(items, first, last - 1);
+    }
+    return first + length2;
+  }
+
+  /**
+   * Return the first index of items[low..high-1] whose item is not less than the key.
+   */
+  private static int lowerBound(long[] items, int low, int high, long key) {
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (items[mid] < key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Return the first index of items[low..high-1] whose item is greater than the key.
+   */
+  private static int upperBound(long[] items, int low, int high, long key) {
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (key < items[mid]) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  private static void reverse(long[] items, int low, int high) {
+    while (low < high) {
+      long temp = items[low];
+      items[low++] = items[high];
+      items[high--] = temp;
+    }
+  }
+
+  /**
+   * Merge sort the provided array of doubles.
+   *
+   * @param items array to sort
+   */
+  public static void mergeSortHalfSpace(double[] items) {
+    SortContext context = SortContext.acquire();
+    try {
+      mergeSortHalfSpace(items, context);
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Merge sort the provided array of doubles, taking half of its length in scratch space from the
+   * given context.
+   *
+   * @param items array to sort
+   * @param context source of the scratch buffer
+   */
+  public static void mergeSortHalfSpace(double[] items, SortContext context) {
+    double[] temp = context.doubles((items.length + 1) / 2);
+    mergeSortHalfSpace(items, 0, items.length - 1, temp);
+  }
+
+  /**
+   * Recursive helper method for the merge sort algorithm.
+   *
+   * @param items The array to sort
+   * @param start Index of the left end of the region to sort
+   * @param end Index of the right end of the region to sort.
+   * @param temp Scratch space for the left half of each merge
+   */
+  private static void mergeSortHalfSpace(double[] items, int start, int end, double[] temp) {
+    if (start < end) {
+      int mid = (start + end) / 2;
+      mergeSortHalfSpace(items, start, mid, temp);
+      mergeSortHalfSpace(items, mid + 1, end, temp);
+      merge(items, start, mid, end, temp);
+    }
+  }
+
+  /**
+   * Merge two adjacent sorted runs, copying only the left run aside.
+   *
+   * @param items array of items to sort
+   * @param start beginning index
+   * @param mid middle index
+   * @param end last index
+   */
+  public static void merge(double[] items, int start, int mid, int end) {
+    SortContext context = SortContext.acquire();
+    try {
+      merge(items, start, mid, end, context.doubles(mid - start + 1));
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Merge two adjacent sorted runs, copying the left run into the provided scratch buffer.
+   *
+   * @param items array of items to sort
+   * @param start beginning index
+   * @param mid middle index
+   * @param end last index
+   * @param temp scratch buffer with room for at least mid - start + 1 items
+   */
+  public static void merge(double[] items, int start, int mid, int end, double[] temp) {
+    int size = mid - start + 1;
+    int tmpIndex = 0;
+    int rightIndex = mid + 1;
+    int mergeIndex = start;
+    System.arraycopy(items, start, temp, 0, size);
+
+    while (tmpIndex < size && rightIndex <= end) {
+      if (Double.compare(temp[tmpIndex], items[rightIndex]) <= 0) {
+        items[mergeIndex] = temp[tmpIndex];
+        tmpIndex++;
+        mergeIndex++;
+      } else {
+        items[mergeIndex] = items[rightIndex];
+        rightIndex++;
+        mergeIndex++;
+      }
+    }
+    while (tmpIndex < size) {
+      items[mergeIndex] = temp[tmpIndex];
+      mergeIndex++;
+      tmpIndex++;
+    }
+
+  }
+
+  /**
+   * Merge sort the provided array of doubles by using an improved merge operation and switching to
+   * insertion sort for small sub-arrays.
+   *
+   * @param items array to be sorted
+   */
+  public static void mergeSortAdaptive(double[] items) {
+    mergeSortAdaptive(items, 0, items.length - 1);
+  }
+
+  /**
+   * Merge sort the provided array of doubles by using an improved merge operation and switching to
+   * insertion sort for small sub-arrays, taking scratch space from the given context.
+   *
+   * @param items array to be sorted
+   * @param context source of the scratch buffer
+   */
+  public static void mergeSortAdaptive(double[] items, SortContext context) {
+    double[] temp = context.doubles((items.length + 1) / 2);
+    mergeSortAdaptive(items, 0, items.length - 1, temp);
+  }
+
+  /**
+   * Merge sort the indicated region by using an improved merge operation and switching to
+   * insertion sort for small sub-arrays. Scratch space is borrowed from the calling thread.
+   *
+   * @param items array of items
+   * @param start start index
+   * @param end end index
+   */
+  protected static void mergeSortAdaptive(double[] items, int start, int end) {
+    SortContext context = SortContext.acquire();
+    try {
+      mergeSortAdaptive(items, start, end, context.doubles((end - start + 2) / 2));
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Recursive helper for the adaptive merge sort.
+   *
+   * @param items array of items
+   * @param start start index
+   * @param end end index
+   * @param temp scratch space for the left half of each merge
+   */
+  private static void mergeSortAdaptive(double[] items, int start, int end, double[] temp) {
+    if (start < end) {
+      if ((end - start + 1) < MAX_DOUBLE_THRESHOLD) {
+        BasicSorts.insertionSubsort(items, start, end);
+      } else {
+        int mid = (start + end) / 2;
+        mergeSortAdaptive(items, start, mid, temp);
+        mergeSortAdaptive(items, mid + 1, end, temp);
+        merge(items, start, mid, end, temp);
+      }
+    }
+  }
+
+  /**
+   * Primitive counterpart of {@link #mergeSubsortAdaptive(Comparable[], int, int)}.
+   *
+   * @param items items to sort
+   * @param start beginning index
+   * @param end last index
+   */
+  public static void mergeSubsortAdaptive(double[] items, int start, int end) {
+    int size = end - start + 1;
+    if (start < end) {
+      if (size >= MAX_DOUBLE_THRESHOLD) {
+        if (QuickSort.partition(items, start, end) < 2 * Math.log(size)) {
+          QuickSort.quickSort(items, start, end);
+        } else {
+          mergeSortAdaptive(items, start, end);
+        }
+      } else {
+        BasicSorts.insertionSubsort(items, start, end);
+      }
+    }
+  }
+
+  /**
+   * Stably merge sort the provided array of doubles in O(sqrt(n)) scratch space. See
+   * {@link #mergeSortInPlace(Object[], Comparator, SortContext)}.
+   *
+   * @param items array to sort
+   */
+  public static void mergeSortInPlace(double[] items) {
+    SortContext context = SortContext.acquire();
+    try {
+      mergeSortInPlace(items, context);
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Stably merge sort the provided array of doubles, taking O(sqrt(n)) scratch space from the given
+   * context.
+   *
+   * @param items array to sort
+   * @param context source of the scratch buffer
+   */
+  public static void mergeSortInPlace(double[] items, SortContext context) {
+    int bufferSize = inPlaceBufferSize(items.length);
+    mergeSortInPlace(items, 0, items.length - 1, context.doubles(bufferSize), bufferSize);
+  }
+
+  /**
+   * Recursive helper for the in-place merge sort.
+   *
+   * @param items array of items
+   * @param start start index
+   * @param end end index
+   * @param buffer scratch space for merges with a short side
+   * @param bufferSize number of slots of buffer to use
+   */
+  private static void mergeSortInPlace(double[] items, int start, int end, double[] buffer,
+      int bufferSize) {
+    if (end - start + 1 < MAX_DOUBLE_THRESHOLD) {
+      BasicSorts.insertionSubsort(items, start, end);
+      return;
+    }
+    int mid = (start + end) >>> 1;
+    mergeSortInPlace(items, start, mid, buffer, bufferSize);
+    mergeSortInPlace(items, mid + 1, end, buffer, bufferSize);
+    if (Double.compare(items[mid + 1], items[mid]) < 0) {
+      mergeInPlace(items, start, mid + 1, end + 1, buffer, bufferSize);
+    }
+  }
+
+  /**
+   * Stably merge the sorted runs items[first..middle-1] and items[middle..last-1]. A run short
+   * enough for the buffer is copied there and merged directly. Otherwise the longer run is cut in
+   * half, the other is cut where that middle item belongs, and rotating the two inner pieces past
+   * each other leaves two smaller merges; the smaller one is recursed on and the larger one looped
+   * on, so the stack stays O(log n) deep.
+   */
+  private static void mergeInPlace(double[] items, int first, int middle, int last, double[] buffer,
+      int bufferSize) {
+    while (first < middle && middle < last) {
+      int length1 = middle - first;
+      int length2 = last - middle;
+      if (length1 <= bufferSize) {
+        mergeLowBuffered(items, first, middle, last, buffer);
+        return;
+      }
+      if (length2 <= bufferSize) {
+        mergeHighBuffered(items, first, middle, last, buffer);
+        return;
+      }
+
+      int cut1;
+      int cut2;
+      if (length1 > length2) {
+        cut1 = first + length1 / 2;
+        cut2 = lowerBound(items, middle, last, items[cut1]);
+      } else {
+        cut2 = middle + length2 / 2;
+        cut1 = upperBound(items, first, middle, items[cut2]);
+      }
+      int newMiddle = rotate(items, cut1, middle, cut2, buffer, bufferSize);
+
+      if (newMiddle - first < last - newMiddle) {
+        mergeInPlace(items, first, cut1, newMiddle, buffer, bufferSize);
+        first = newMiddle;
+        middle = cut2;
+      } else {
+        mergeInPlace(items, newMiddle, cut2, last, buffer, bufferSize);
+        last = newMiddle;
+        middle = cut1;
+      }
+    }
+  }
+
+  /**
+   * Merge forwards, copying the left run into the buffer.
+   */
+  private static void mergeLowBuffered(double[] items, int first, int middle, int last,
+      double[] buffer) {
+    int length1 = middle - first;
+    System.arraycopy(items, first, buffer, 0, length1);
+    int left = 0;
+    int right = middle;
+    int dest = first;
+    while (left < length1 && right < last) {
+      if (Double.compare(items[right], buffer[left]) < 0) {
+        items[dest++] = items[right++];
+      } else {
+        items[dest++] = buffer[left++];
+      }
+    }
+    System.arraycopy(buffer, left, items, dest, length1 - left);
+  }
+
+  /**
+   * Merge backwards, copying the right run into the buffer.
+   */
+  private static void mergeHighBuffered(double[] items, int first, int middle, int last,
+      double[] buffer) {
+    int length2 = last - middle;
+    System.arraycopy(items, middle, buffer, 0, length2);
+    int left = middle - 1;
+    int right = length2 - 1;
+    int dest = last - 1;
+    while (left >= first && right >= 0) {
+      if (Double.compare(buffer[right], items[left]) < 0) {
+        items[dest--] = items[left--];
+      } else {
+        items[dest--] = buffer[right--];
+      }
+    }
+    System.arraycopy(buffer, 0, items, first, right + 1);
+  }
+
+  /**
+   * Swap the adjacent blocks items[first..middle-1] and items[middle..last-1], through the buffer
+   * if the shorter one fits and by three reversals otherwise.
+   *
+   * @return the index where the block that started at first now starts
+   */
+  private static int rotate(double[] items, int first, int middle, int last, double[] buffer,
+      int bufferSize) {
+    int length1 = middle - first;
+    int length2 = last - middle;
+    if (length1 <= length2 && length1 <= bufferSize) {
+      System.arraycopy(items, first, buffer, 0, length1);
+      System.arraycopy(items, middle, items, first, length2);
+      System.arraycopy(buffer, 0, items, first + length2, length1);
+    } else if (length2 <= bufferSize) {
+      System.arraycopy(items, middle, buffer, 0, length2);
+      System.arraycopy(items, first, items, first + length2, length1);
+      System.arraycopy(buffer, 0, items, first, length2);
+    } else {
+      reverse(items, first, middle - 1);
+      reverse(items, middle, last - 1);
+      reverse(items, first, last - 1);
+    }
+    return first + length2;
+  }
+
+  /**
+   * Return the first index of items[low..high-1] whose item is not less than the key.
+   */
+  private static int lowerBound(double[] items, int low, int high, double key) {
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (Double.compare(items[mid], key) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Return the first index of items[low..high-1] whose item is greater than the key.
+   */
+  private static int upperBound(double[] items, int low, int high, double key) {
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (Double.compare(key, items[mid]) < 0) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  private static void reverse(double[] items, int low, int high) {
+    while (low < high) {
+      double temp = items[low];
+      items[low++] = items[high];
+      items[high--] = temp;
     }
   }
 }
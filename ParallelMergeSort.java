@@ -0,0 +1,261 @@
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork/join merge sort. Regions larger than the cutoff are split into tasks that sort their halves
+ * in parallel; smaller regions are sorted sequentially by MergeSortImproved. Large merges are also
+ * split, by binary searching for the rank of a middle element, so the final merge is not a serial
+ * bottleneck.
+ *
+ * <p>A single buffer the size of the input is borrowed from the calling thread's SortContext.
+ * Levels of the recursion alternate between merging into the buffer and merging back into the
+ * array, so no level needs an extra copy.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ */
+public class ParallelMergeSort {
+
+  /** Regions at or below this many items are sorted or merged without forking. */
+  public static final int DEFAULT_CUTOFF = 8192;
+
+  /**
+   * Sort the provided array on the common fork/join pool.
+   *
+   * @param items array to sort
+   */
+  public static <T extends Comparable<T>> void parallelMergeSort(T[] items) {
+    parallelMergeSort(items, Comparator.naturalOrder());
+  }
+
+  /**
+   * Sort the provided array on the common fork/join pool, ordering items with the given comparator.
+   *
+   * @param items array to sort
+   * @param comparator ordering to sort by
+   */
+  public static <T> void parallelMergeSort(T[] items, Comparator<? super T> comparator) {
+    parallelMergeSort(items, comparator, ForkJoinPool.commonPool(), DEFAULT_CUTOFF);
+  }
+
+  /**
+   * Sort the provided array on the given pool.
+   *
+   * @param items array to sort
+   * @param pool pool that runs the sort tasks
+   * @param cutoff largest region that is sorted or merged sequentially
+   * @throws IllegalArgumentException if the cutoff is less than two
+   */
+  public static <T extends Comparable<T>> void parallelMergeSort(T[] items, ForkJoinPool pool,
+      int cutoff) {
+    parallelMergeSort(items, Comparator.naturalOrder(), pool, cutoff);
+  }
+
+  /**
+   * Sort the provided array on the given pool, ordering items with the given comparator.
+   *
+   * @param items array to sort
+   * @param comparator ordering to sort by
+   * @param pool pool that runs the sort tasks
+   * @param cutoff largest region that is sorted or merged sequentially
+   * @throws IllegalArgumentException if the cutoff is less than two
+   */
+  public static <T> void parallelMergeSort(T[] items, Comparator<? super T> comparator,
+      ForkJoinPool pool, int cutoff) {
+    if (cutoff < 2) {
+      throw new IllegalArgumentException("Cutoff must be at least two.");
+    }
+    if (items.length <= cutoff) {
+      MergeSortImproved.mergeSortAdaptive(items, comparator);
+      return;
+    }
+    SortContext context = SortContext.acquire();
+    try {
+      T[] buffer = context.objects(items.length);
+      pool.invoke(new SortTask<>(items, buffer, 0, items.length - 1, false, comparator, cutoff));
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Sorts items[start..end]. The sorted region ends up in the buffer when intoBuffer is set and in
+   * the items array otherwise; the other array's region is used as scratch.
+   */
+  private static class SortTask<T> extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final T[] items;
+    private final T[] buffer;
+    private final int start;
+    private final int end;
+    private final boolean intoBuffer;
+    private final Comparator<? super T> comparator;
+    private final int cutoff;
+
+    SortTask(T[] items, T[] buffer, int start, int end, boolean intoBuffer,
+        Comparator<? super T> comparator, int cutoff) {
+      this.items = items;
+      this.buffer = buffer;
+      this.start = start;
+      this.end = end;
+      this.intoBuffer = intoBuffer;
+      this.comparator = comparator;
+      this.cutoff = cutoff;
+    }
+
+    @Override
+    protected void compute() {
+      int size = end - start + 1;
+      if (size <= cutoff) {
+        MergeSortImproved.mergeSortAdaptive(items, start, end, comparator);
+        if (intoBuffer) {
+          System.arraycopy(items, start, buffer, start, size);
+          if (SortMetrics.ENABLED) {
+            SortMetrics.moves(size);
+          }
+        }
+        return;
+      }
+
+      // The halves land in the opposite array from this task's result, then merge across.
+      int mid = (start + end) >>> 1;
+      invokeAll(new SortTask<>(items, buffer, start, mid, !intoBuffer, comparator, cutoff),
+          new SortTask<>(items, buffer, mid + 1, end, !intoBuffer, comparator, cutoff));
+      T[] from = intoBuffer ? items : buffer;
+      T[] to = intoBuffer ? buffer : items;
+      new MergeTask<>(from, start, mid, mid + 1, end, to, start, comparator, cutoff).compute();
+    }
+  }
+
+  /**
+   * Stably merges from[leftStart..leftEnd] and from[rightStart..rightEnd] into the destination
+   * array beginning at destStart.
+   */
+  private static class MergeTask<T> extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final T[] from;
+    private final int leftStart;
+    private final int leftEnd;
+    private final int rightStart;
+    private final int rightEnd;
+    private final T[] to;
+    private final int destStart;
+    private final Comparator<? super T> comparator;
+    private final int cutoff;
+
+    MergeTask(T[] from, int leftStart, int leftEnd, int rightStart, int rightEnd, T[] to,
+        int destStart, Comparator<? super T> comparator, int cutoff) {
+      this.from = from;
+      this.leftStart = leftStart;
+      this.leftEnd = leftEnd;
+      this.rightStart = rightStart;
+      this.rightEnd = rightEnd;
+      this.to = to;
+      this.destStart = destStart;
+      this.comparator = comparator;
+      this.cutoff = cutoff;
+    }
+
+    @Override
+    protected void compute() {
+      int leftSize = leftEnd - leftStart + 1;
+      int rightSize = rightEnd - rightStart + 1;
+      if (leftSize + rightSize <= cutoff) {
+        mergeInto(from, leftStart, leftEnd, rightStart, rightEnd, to, destStart, comparator);
+        return;
+      }
+
+      // Split the larger run at its middle and find where that item ranks in the other run.
+      // Equal items from the left run must stay ahead of those from the right run.
+      int leftSplit;
+      int rightSplit;
+      T pivot;
+      if (leftSize >= rightSize) {
+        leftSplit = (leftStart + leftEnd) >>> 1;
+        pivot = from[leftSplit];
+        rightSplit = lowerBound(from, rightStart, rightEnd + 1, pivot, comparator);
+      } else {
+        rightSplit = (rightStart + rightEnd) >>> 1;
+        pivot = from[rightSplit];
+        leftSplit = upperBound(from, leftStart, leftEnd + 1, pivot, comparator);
+      }
+      int pivotDest = destStart + (leftSplit - leftStart) + (rightSplit - rightStart);
+      to[pivotDest] = pivot;
+      if (SortMetrics.ENABLED) {
+        SortMetrics.moves(1);
+      }
+
+      if (leftSize >= rightSize) {
+        invokeAll(
+            new MergeTask<>(from, leftStart, leftSplit - 1, rightStart, rightSplit - 1, to,
+                destStart, comparator, cutoff),
+            new MergeTask<>(from, leftSplit + 1, leftEnd, rightSplit, rightEnd, to,
+                pivotDest + 1, comparator, cutoff));
+      } else {
+        invokeAll(
+            new MergeTask<>(from, leftStart, leftSplit - 1, rightStart, rightSplit - 1, to,
+                destStart, comparator, cutoff),
+            new MergeTask<>(from, leftSplit, leftEnd, rightSplit + 1, rightEnd, to,
+                pivotDest + 1, comparator, cutoff));
+      }
+    }
+  }
+
+  /**
+   * Sequentially merge two sorted runs of one array into another array.
+   */
+  private static <T> void mergeInto(T[] from, int leftIndex, int leftEnd, int rightIndex,
+      int rightEnd, T[] to, int mergeIndex, Comparator<? super T> comparator) {
+    if (SortMetrics.ENABLED) {
+      SortMetrics.moves(leftEnd - leftIndex + 1 + rightEnd - rightIndex + 1);
+    }
+    while (leftIndex <= leftEnd && rightIndex <= rightEnd) {
+      if (comparator.compare(from[leftIndex], from[rightIndex]) <= 0) {
+        to[mergeIndex++] = from[leftIndex++];
+      } else {
+        to[mergeIndex++] = from[rightIndex++];
+      }
+    }
+    while (leftIndex <= leftEnd) {
+      to[mergeIndex++] = from[leftIndex++];
+    }
+    while (rightIndex <= rightEnd) {
+      to[mergeIndex++] = from[rightIndex++];
+    }
+  }
+
+  /**
+   * Return the first index in [low, high) whose item is not less than the key, or high.
+   */
+  private static <T> int lowerBound(T[] items, int low, int high, T key,
+      Comparator<? super T> comparator) {
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (comparator.compare(items[mid], key) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Return the first index in [low, high) whose item is greater than the key, or high.
+   */
+  private static <T> int upperBound(T[] items, int low, int high, T key,
+      Comparator<? super T> comparator) {
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (comparator.compare(items[mid], key) <= 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
@@ -0,0 +1,655 @@
+/**
+ * Pattern-defeating quicksort (pdqsort) for int and long arrays.
+ *
+ * <p>Partitioning follows BlockQuicksort: rather than stopping at each misplaced item, the scan
+ * records the offsets of misplaced items from both ends into small blocks, advancing a count by the
+ * result of each comparison instead of branching on it, and then swaps the recorded items in pairs.
+ * On random input this avoids the branch mispredictions that dominate QuickSort.partition.
+ *
+ * <p>Patterns are defeated as in pdqsort. A partition that leaves less than an eighth of the
+ * region on one side shuffles a few items on each side before the next pivot is chosen, and after
+ * about log2(n) such partitions the region is heapsorted, bounding the worst case at O(n log n). A
+ * balanced partition that moved nothing tries insertion sort on both sides and stops if they were
+ * already nearly sorted, so ordered input costs O(n). A pivot equal to the item just left of the
+ * region puts all its copies on the left in one pass, so runs of duplicates are not partitioned
+ * again.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ */
+public class PdqSort {
+
+  /** Regions below this size are insertion sorted. */
+  private static final int INSERTION_THRESHOLD = 24;
+
+  /** Regions above this size use the median of three medians as their pivot. */
+  private static final int NINTHER_THRESHOLD = 128;
+
+  /** Items a partial insertion sort may move before it gives up. */
+  private static final int PARTIAL_INSERTION_LIMIT = 8;
+
+  /** Number of items classified at a time from each end while partitioning. */
+  private static final int BLOCK_SIZE = 64;
+
+  /**
+   * Sort the provided ints using pattern-defeating quicksort.
+   *
+   * @param items array of items to sort
+   */
+  public static void pdqSort(int[] items) {
+    pdqSort(items, 0, items.length - 1);
+  }
+
+  /**
+   * Sort the indicated region of the int array using pattern-defeating quicksort.
+   *
+   * @param items array of items to sort
+   * @param start index of the left end of the region
+   * @param end index of the right end of the region
+   */
+  public static void pdqSort(int[] items, int start, int end) {
+    if (start < end) {
+      int size = end - start + 1;
+      sort(items, start, end + 1, 31 - Integer.numberOfLeadingZeros(size), true,
+          new int[2 * BLOCK_SIZE]);
+    }
+  }
+
+  /**
+   * Recursive helper working on items[begin..end-1]. Recurses into the left side of each partition
+   * and loops on the right. Unless leftmost is set, items[begin-1] is no greater than any item of
+   * the region.
+   *
+   * @param badAllowed unbalanced partitions left before the region is heapsorted
+   * @param offsets scratch space for two blocks of offsets
+   */
+  private static void sort(int[] items, int begin, int end, int badAllowed, boolean leftmost,
+      int[] offsets) {
+    while (true) {
+      int size = end - begin;
+      if (size < INSERTION_THRESHOLD) {
+        BasicSorts.insertionSubsort(items, begin, end - 1);
+        return;
+      }
+
+      // Move the median of three, or of three medians, to the front as the pivot.
+      int half = size / 2;
+      if (size > NINTHER_THRESHOLD) {
+        sortThree(items, begin, begin + half, end - 1);
+        sortThree(items, begin + 1, begin + half - 1, end - 2);
+        sortThree(items, begin + 2, begin + half + 1, end - 3);
+        sortThree(items, begin + half - 1, begin + half, begin + half + 1);
+        swap(items, begin, begin + half);
+      } else {
+        sortThree(items, begin + half, begin, end - 1);
+      }
+
+      // A pivot equal to the item before the region is the smallest value in it, so put every
+      // copy of it on the left and carry on with the rest; no copy is partitioned again.
+      if (!leftmost && items[begin - 1] >= items[begin]) {
+        begin = partitionLeft(items, begin, end) + 1;
+        continue;
+      }
+
+      int result = partitionRight(items, begin, end, offsets);
+      boolean alreadyPartitioned = result < 0;
+      int pivot = alreadyPartitioned ? -result - 1 : result;
+      int leftSize = pivot - begin;
+      int rightSize = end - pivot - 1;
+
+      if (leftSize < size / 8 || rightSize < size / 8) {
+        if (--badAllowed == 0) {
+          IntrospectiveSort.heapSort(items, begin, end - 1);
+          return;
+        }
+        // Break up whatever pattern produced the bad pivot.
+        if (leftSize >= INSERTION_THRESHOLD) {
+          swap(items, begin, begin + leftSize / 4);
+          swap(items, pivot - 1, pivot - leftSize / 4);
+          if (leftSize > NINTHER_THRESHOLD) {
+            swap(items, begin + 1, begin + leftSize / 4 + 1);
+            swap(items, begin + 2, begin + leftSize / 4 + 2);
+            swap(items, pivot - 2, pivot - leftSize / 4 - 1);
+            swap(items, pivot - 3, pivot - leftSize / 4 - 2);
+          }
+        }
+        if (rightSize >= INSERTION_THRESHOLD) {
+          swap(items, pivot + 1, pivot + 1 + rightSize / 4);
+          swap(items, end - 1, end - rightSize / 4);
+          if (rightSize > NINTHER_THRESHOLD) {
+            swap(items, pivot + 2, pivot + 2 + rightSize / 4);
+            swap(items, pivot + 3, pivot + 3 + rightSize / 4);
+            swap(items, end - 2, end - 1 - rightSize / 4);
+            swap(items, end - 3, end - 2 - rightSize / 4);
+          }
+        }
+      } else if (alreadyPartitioned && partialInsertionSort(items, begin, pivot)
+          && partialInsertionSort(items, pivot + 1, end)) {
+        // A balanced partition that moved nothing suggests sorted input; if both sides are
+        // nearly sorted, insertion sort finished them.
+        return;
+      }
+
+      sort(items, begin, pivot, badAllowed, leftmost, offsets);
+      begin = pivot + 1;
+      leftmost = false;
+    }
+  }
+
+  /**
+   * Partition items[begin..end-1] around items[begin], putting items equal to the pivot on the
+   * right. The unknown middle is classified a block at a time: the offsets of misplaced items are
+   * recorded without branching on the comparisons, and then swapped in pairs.
+   *
+   * @return the final index of the pivot, or -(index + 1) if no items had to be moved
+   */
+  private static int partitionRight(int[] items, int begin, int end, int[] offsets) {
+    int pivot = items[begin];
+    int first = begin;
+    int last = end;
+
+    // The pivot is a median, so there is an item at least as large to stop the first scan, and
+    // unless the first scan found nothing below the pivot there is one to stop the second.
+    while (items[++first] < pivot) {
+      // Skip items already on the left.
+    }
+    if (first - 1 == begin) {
+      while (first < last && items[--last] >= pivot) {
+        // Skip items already on the right.
+      }
+    } else {
+      while (items[--last] >= pivot) {
+        // Skip items already on the right.
+      }
+    }
+
+    boolean alreadyPartitioned = first >= last;
+    if (!alreadyPartitioned) {
+      swap(items, first, last);
+      first++;
+
+      // offsets[0..BLOCK_SIZE-1] hold offsets from leftBase of items that belong on the right,
+      // offsets[BLOCK_SIZE..] offsets back from rightBase of items that belong on the left.
+      int leftBase = first;
+      int rightBase = last;
+      int leftCount = 0;
+      int rightCount = 0;
+      int leftStart = 0;
+      int rightStart = 0;
+      while (first < last) {
+        int unknown = last - first;
+        int leftSplit = leftCount == 0 ? (rightCount == 0 ? unknown / 2 : unknown) : 0;
+        int rightSplit = rightCount == 0 ? unknown - leftSplit : 0;
+
+        // Fill the offset blocks. Every offset is written, but the count only advances past it
+        // when the item is misplaced.
+        int leftBlock = Math.min(leftSplit, BLOCK_SIZE);
+        for (int i = 0; i < leftBlock; i++) {
+          offsets[leftCount] = first - leftBase;
+          leftCount += items[first++] >= pivot ? 1 : 0;
+        }
+        int rightBlock = Math.min(rightSplit, BLOCK_SIZE);
+        for (int i = 0; i < rightBlock; i++) {
+          offsets[BLOCK_SIZE + rightCount] = rightBase - last + 1;
+          rightCount += items[--last] < pivot ? 1 : 0;
+        }
+
+        int count = Math.min(leftCount, rightCount);
+        swapOffsets(items, leftBase, rightBase, offsets, leftStart, BLOCK_SIZE + rightStart,
+            count, leftCount == rightCount);
+        leftCount -= count;
+        rightCount -= count;
+        leftStart += count;
+        rightStart += count;
+        if (leftCount == 0) {
+          leftStart = 0;
+          leftBase = first;
+        }
+        if (rightCount == 0) {
+          rightStart = 0;
+          rightBase = last;
+        }
+      }
+
+      // One block may still hold misplaced items; swap them across the boundary.
+      if (leftCount > 0) {
+        while (leftCount-- > 0) {
+          swap(items, leftBase + offsets[leftStart + leftCount], --last);
+        }
+        first = last;
+      }
+      if (rightCount > 0) {
+        while (rightCount-- > 0) {
+          swap(items, rightBase - offsets[BLOCK_SIZE + rightStart + rightCount], first++);
+        }
+      }
+    }
+
+    int pivotIndex = first - 1;
+    items[begin] = items[pivotIndex];
+    items[pivotIndex] = pivot;
+    return alreadyPartitioned ? -pivotIndex - 1 : pivotIndex;
+  }
+
+  /**
+   * Exchange count misplaced items from the left block with as many from the right block. When the
+   * counts differ the exchange is done as one cycle, which moves each item once instead of twice.
+   */
+  private static void swapOffsets(int[] items, int leftBase, int rightBase, int[] offsets,
+      int leftStart, int rightStart, int count, boolean useSwaps) {
+    if (useSwaps) {
+      for (int i = 0; i < count; i++) {
+        swap(items, leftBase + offsets[leftStart + i], rightBase - offsets[rightStart + i]);
+      }
+    } else if (count > 0) {
+      int left = leftBase + offsets[leftStart];
+      int right = rightBase - offsets[rightStart];
+      int temp = items[left];
+      items[left] = items[right];
+      for (int i = 1; i < count; i++) {
+        left = leftBase + offsets[leftStart + i];
+        items[right] = items[left];
+        right = rightBase - offsets[rightStart + i];
+        items[left] = items[right];
+      }
+      items[right] = temp;
+    }
+  }
+
+  /**
+   * Partition items[begin..end-1] around items[begin], putting items equal to the pivot on the
+   * left. Used when the pivot is known to be the smallest value of the region.
+   *
+   * @return the final index of the pivot
+   */
+  private static int partitionLeft(int[] items, int begin, int end) {
+    int pivot = items[begin];
+    int first = begin;
+    int last = end;
+
+    while (pivot < items[--last]) {
+      // Skip items already on the right.
+    }
+    if (last + 1 == end) {
+      while (first < last && pivot >= items[++first]) {
+        // Skip items already on the left.
+      }
+    } else {
+      while (pivot >= items[++first]) {
+        // Skip items already on the left.
+      }
+    }
+
+    while (first < last) {
+      swap(items, first, last);
+      while (pivot < items[--last]) {
+        // Skip items already on the right.
+      }
+      while (pivot >= items[++first]) {
+        // Skip items already on the left.
+      }
+    }
+
+    items[begin] = items[last];
+    items[last] = pivot;
+    return last;
+  }
+
+  /**
+   * Insertion sort items[begin..end-1], giving up once more than PARTIAL_INSERTION_LIMIT items
+   * have been moved.
+   *
+   * @return true if the region is now sorted
+   */
+  private static boolean partialInsertionSort(int[] items, int begin, int end) {
+    int moved = 0;
+    for (int i = begin + 1; i < end; i++) {
+      if (items[i] < items[i - 1]) {
+        int itemToShift = items[i];
+        int j = i;
+        do {
+          items[j] = items[j - 1];
+          j--;
+        } while (j > begin && itemToShift < items[j - 1]);
+        items[j] = itemToShift;
+        moved += i - j;
+        if (moved > PARTIAL_INSERTION_LIMIT) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Order the items at three indices so that the middle index holds their median.
+   */
+  private static void sortThree(int[] items, int a, int b, int c) {
+    if (items[b] < items[a]) {
+      swap(items, a, b);
+    }
+    if (items[c] < items[b]) {
+      swap(items, b, c);
+      if (items[b] < items[a]) {
+        swap(items, a, b);
+      }
+    }
+  }
+
+  private static void swap(int[] items, int i, int j) {
+    int temp = items[i];
+    items[i] = items[j];
+    items[j] = temp;
+  }
+
+  /**
+   * Sort the provided longs using pattern-defeating quicksort.
+   *
+   * @param items array of items to sort
+   */
+  public static void pdqSort(long[] items) {
+    pdqSort(items, 0, items.length - 1);
+  }
+
+  /**
+   * Sort the indicated region of the long array using pattern-defeating quicksort.
+   *
+   * @param items array of items to sort
+   * @param start index of the left end of the region
+   * @param end index of the right end of the region
+   */
+  public static void pdqSort(long[] items, int start, int end) {
+    if (start < end) {
+      int size = end - start + 1;
+      sort(items, start, end + 1, 31 - Integer.numberOfLeadingZeros(size), true,
+          new int[2 * BLOCK_SIZE]);
+    }
+  }
+
+  /**
+   * Recursive helper working on items[begin..end-1]. Recurses into the left side of each partition
+   * and loops on the right. Unless leftmost is set, items[begin-1] is no greater than any item of
+   * the region.
+   *
+   * @param badAllowed unbalanced partitions left before the region is heapsorted
+   * @param offsets scratch space for two blocks of offsets
+   */
+  private static void sort(long[] items, int begin, int end, int badAllowed, boolean leftmost,
+      int[] offsets) {
+    while (true) {
+      int size = end - begin;
+      if (size < INSERTION_THRESHOLD) {
+        BasicSorts.insertionSubsort(items, begin, end - 1);
+        return;
+      }
+
+      // Move the median of three, or of three medians, to the front as the pivot.
+      int half = size / 2;
+      if (size > NINTHER_THRESHOLD) {
+        sortThree(items, begin, begin + half, end - 1);
+        sortThree(items, begin + 1, begin + half - 1, end - 2);
+        sortThree(items, begin + 2, begin + half + 1, end - 3);
+        sortThree(items, begin + half - 1, begin + half, begin + half + 1);
+        swap(items, begin, begin + half);
+      } else {
+        sortThree(items, begin + half, begin, end - 1);
+      }
+
+      // A pivot equal to the item before the region is the smallest value in it, so put every
+      // copy of it on the left and carry on with the rest; no copy is partitioned again.
+      if (!leftmost && items[begin - 1] >= items[begin]) {
+        begin = partitionLeft(items, begin, end) + 1;
+        continue;
+      }
+
+      int result = partitionRight(items, begin, end, offsets);
+      boolean alreadyPartitioned = result < 0;
+      int pivot = alreadyPartitioned ? -result - 1 : result;
+      int leftSize = pivot - begin;
+      int rightSize = end - pivot - 1;
+
+      if (leftSize < size / 8 || rightSize < size / 8) {
+        if (--badAllowed == 0) {
+          IntrospectiveSort.heapSort(items, begin, end - 1);
+          return;
+        }
+        // Break up whatever pattern produced the bad pivot.
+        if (leftSize >= INSERTION_THRESHOLD) {
+          swap(items, begin, begin + leftSize / 4);
+          swap(items, pivot - 1, pivot - leftSize / 4);
+          if (leftSize > NINTHER_THRESHOLD) {
+            swap(items, begin + 1, begin + leftSize / 4 + 1);
+            swap(items, begin + 2, begin + leftSize / 4 + 2);
+            swap(items, pivot - 2, pivot - leftSize / 4 - 1);
+            swap(items, pivot - 3, pivot - leftSize / 4 - 2);
+          }
+        }
+        if (rightSize >= INSERTION_THRESHOLD) {
+          swap(items, pivot + 1, pivot + 1 + rightSize / 4);
+          swap(items, end - 1, end - rightSize / 4);
+          if (rightSize > NINTHER_THRESHOLD) {
+            swap(items, pivot + 2, pivot + 2 + rightSize / 4);
+            swap(items, pivot + 3, pivot + 3 + rightSize / 4);
+            swap(items, end - 2, end - 1 - rightSize / 4);
+            swap(items, end - 3, end - 2 - rightSize / 4);
+          }
+        }
+      } else if (alreadyPartitioned && partialInsertionSort(items, begin, pivot)
+          && partialInsertionSort(items, pivot + 1, end)) {
+        // A balanced partition that moved nothing suggests sorted input; if both sides are
+        // nearly sorted, insertion sort finished them.
+        return;
+      }
+
+      sort(items, begin, pivot, badAllowed, leftmost, offsets);
+      begin = pivot + 1;
+      leftmost = false;
+    }
+  }
+
+  /**
+   * Partition items[begin..end-1] around items[begin], putting items equal to the pivot on the
+   * right. The unknown middle is classified a block at a time: the offsets of misplaced items are
+   * recorded without branching on the comparisons, and then swapped in pairs.
+   *
+   * @return the final index of the pivot, or -(index + 1) if no items had to be moved
+   */
+  private static int partitionRight(long[] items, int begin, int end, int[] offsets) {
+    long pivot = items[begin];
+    int first = begin;
+    int last = end;
+
+    // The pivot is a median, so there is an item at least as large to stop the first scan, and
+    // unless the first scan found nothing below the pivot there is one to stop the second.
+    while (items[++first] < pivot) {
+      // Skip items already on the left.
+    }
+    if (first - 1 == begin) {
+      while (first < last && items[--last] >= pivot) {
+        // Skip items already on the right.
+      }
+    } else {
+      while (items[--last] >= pivot) {
+        // Skip items already on the right.
+      }
+    }
+
+    boolean alreadyPartitioned = first >= last;
+    if (!alreadyPartitioned) {
+      swap(items, first, last);
+      first++;
+
+      // offsets[0..BLOCK_SIZE-1] hold offsets from leftBase of items that belong on the right,
+      // offsets[BLOCK_SIZE..] offsets back from rightBase of items that belong on the left.
+      int leftBase = first;
+      int rightBase = last;
+      int leftCount = 0;
+      int rightCount = 0;
+      int leftStart = 0;
+      int rightStart = 0;
+      while (first < last) {
+        int unknown = last - first;
+        int leftSplit = leftCount == 0 ? (rightCount == 0 ? unknown / 2 : unknown) : 0;
+        int rightSplit = rightCount == 0 ? unknown - leftSplit : 0;
+
+        // Fill the offset blocks. Every offset is written, but the count only advances past it
+        // when the item is misplaced.
+        int leftBlock = Math.min(leftSplit, BLOCK_SIZE);
+        for (int i = 0; i < leftBlock; i++) {
+          offsets[leftCount] = first - leftBase;
+          leftCount += items[first++] >= pivot ? 1 : 0;
+        }
+        int rightBlock = Math.min(rightSplit, BLOCK_SIZE);
+        for (int i = 0; i < rightBlock; i++) {
+          offsets[BLOCK_SIZE + rightCount] = rightBase - last + 1;
+          rightCount += items[--last] < pivot ? 1 : 0;
+        }
+
+        int count = Math.min(leftCount, rightCount);
+        swapOffsets(items, leftBase, rightBase, offsets, leftStart, BLOCK_SIZE + rightStart,
+            count, leftCount == rightCount);
+        leftCount -= count;
+        rightCount -= count;
+        leftStart += count;
+        rightStart += count;
+        if (leftCount == 0) {
+          leftStart = 0;
+          leftBase = first;
+        }
+        if (rightCount == 0) {
+          rightStart = 0;
+          rightBase = last;
+        }
+      }
+
+      // One block may still hold misplaced items; swap them across the boundary.
+      if (leftCount > 0) {
+        while (leftCount-- > 0) {
+          swap(items, leftBase + offsets[leftStart + leftCount], --last);
+        }
+        first = last;
+      }
+      if (rightCount > 0) {
+        while (rightCount-- > 0) {
+          swap(items, rightBase - offsets[BLOCK_SIZE + rightStart + rightCount], first++);
+        }
+      }
+    }
+
+    int pivotIndex = first - 1;
+    items[begin] = items[pivotIndex];
+    items[pivotIndex] = pivot;
+    return alreadyPartitioned ? -pivotIndex - 1 : pivotIndex;
+  }
+
+  /**
+   * Exchange count misplaced items from the left block with as many from the right block. When the
+   * counts differ the exchange is done as one cycle, which moves each item once instead of twice.
+   */
+  private static void swapOffsets(long[] items, int leftBase, int rightBase, int[] offsets,
+      int leftStart, int rightStart, int count, boolean useSwaps) {
+    if (useSwaps) {
+      for (int i = 0; i < count; i++) {
+        swap(items, leftBase + offsets[leftStart + i], rightBase - offsets[rightStart + i]);
+      }
+    } else if (count > 0) {
+      int left = leftBase + offsets[leftStart];
+      int right = rightBase - offsets[rightStart];
+      long temp = items[left];
+      items[left] = items[right];
+      for (int i = 1; i < count; i++) {
+        left = leftBase + offsets[leftStart + i];
+        items[right] = items[left];
+        right = rightBase - offsets[rightStart + i];
+        items[left] = items[right];
+      }
+      items[right] = temp;
+    }
+  }
+
+  /**
+   * Partition items[begin..end-1] around items[begin], putting items equal to the pivot on the
+   * left. Used when the pivot is known to be the smallest value of the region.
+   *
+   * @return the final index of the pivot
+   */
+  private static int partitionLeft(long[] items, int begin, int end) {
+    long pivot = items[begin];
+    int first = begin;
+    int last = end;
+
+    while (pivot < items[--last]) {
+      // Skip items already on the right.
+    }
+    if (last + 1 == end) {
+      while (first < last && pivot >= items[++first]) {
+        // Skip items already on the left.
+      }
+    } else {
+      while (pivot >= items[++first]) {
+        // Skip items already on the left.
+      }
+    }
+
+    while (first < last) {
+      swap(items, first, last);
+      while (pivot < items[--last]) {
+        // Skip items already on the right.
+      }
+      while (pivot >= items[++first]) {
+        // Skip items already on the left.
+      }
+    }
+
+    items[begin] = items[last];
+    items[last] = pivot;
+    return last;
+  }
+
+  /**
+   * Insertion sort items[begin..end-1], giving up once more than PARTIAL_INSERTION_LIMIT items
+   * have been moved.
+   *
+   * @return true if the region is now sorted
+   */
+  private static boolean partialInsertionSort(long[] items, int begin, int end) {
+    int moved = 0;
+    for (int i = begin + 1; i < end; i++) {
+      if (items[i] < items[i - 1]) {
+        long itemToShift = items[i];
+        int j = i;
+        do {
+          items[j] = items[j - 1];
+          j--;
+        } while (j > begin && itemToShift < items[j - 1]);
+        items[j] = itemToShift;
+        moved += i - j;
+        if (moved > PARTIAL_INSERTION_LIMIT) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Order the items at three indices so that the middle index holds their median.
+   */
+  private static void sortThree(long[] items, int a, int b, int c) {
+    if (items[b] < items[a]) {
+      swap(items, a, b);
+    }
+    if (items[c] < items[b]) {
+      swap(items, b, c);
+      if (items[b] < items[a]) {
+        swap(items, a, b);
+      }
+    }
+  }
+
+  private static void swap(long[] items, int i, int j) {
+    long temp = items[i];
+    items[i] = items[j];
+    items[j] = temp;
+  }
+}
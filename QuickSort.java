@@ -1,13 +1,28 @@
+import java.util.Comparator;
+
 /**
  * QuickSort class.
  */
 public class QuickSort {
+  /** Regions at or below this size are insertion sorted by the three-way and dual-pivot sorts. */
+  private static final int INSERTION_THRESHOLD = 16;
+
+  /** Three-way regions above this size use the median of three medians as their pivot. */
+  private static final int NINTHER_THRESHOLD = 128;
+
   /**
    * Quicksort the provided array.
    */
   public static <T extends Comparable<T>> void quickSort(T[] items) {
+    quickSort(items, Comparator.naturalOrder());
+  }
+
+  /**
+   * Quicksort the provided array, ordering items with the given comparator.
+   */
+  public static <T> void quickSort(T[] items, Comparator<? super T> comparator) {
     if (items.length > 0) {
-      quickSort(items, 0, items.length - 1);
+      quickSort(items, 0, items.length - 1, comparator);
     }
   }
 
@@ -17,12 +32,20 @@ public class QuickSort {
    * @param items The items to sort
    * @param left The starting index of the region to sort
    * @param right The ending index of the region to sort.
+   * @param comparator The ordering to sort by.
    */
-  private static <T extends Comparable<T>> void quickSort(T[] items, int left, int right) {
+  protected static <T> void quickSort(T[] items, int left, int right,
+      Comparator<? super T> comparator) {
     if (left < right) {
-      int lastSmallIndex = partition(items, left, right);
-      quickSort(items, left, lastSmallIndex);
-      quickSort(items, lastSmallIndex + 1, right);
+      if (SortMetrics.ENABLED) {
+        SortMetrics.enter();
+      }
+      int lastSmallIndex = partition(items, left, right, comparator);
+      quickSort(items, left, lastSmallIndex, comparator);
+      quickSort(items, lastSmallIndex + 1, right, comparator);
+      if (SortMetrics.ENABLED) {
+        SortMetrics.exit();
+      }
     }
   }
 
@@ -34,6 +57,18 @@ public class QuickSort {
    * @return The final index of the pivot item.
    */
   protected static <T extends Comparable<T>> int partition(T[] items, int left, int right) {
+    return partition(items, left, right, Comparator.naturalOrder());
+  }
+
+  /**
+   * Partition the indicated region of the array, ordering items with the given comparator.
+   *
+   * @return The final index of the pivot item.
+   */
+  protected static <T> int partition(T[] items, int left, int right,
+      Comparator<? super T> comparator) {
+    int first = left;
+    int last = right;
     int pivotIndex = left + (right - left) / 2;
     T pivotItem = items[pivotIndex];
 
@@ -41,12 +76,12 @@ public class QuickSort {
     boolean isDone = false;
     while (!isDone) {
       // Skip rightward past items < pivot.
-      while (items[left].compareTo(pivotItem) < 0) {
+      while (comparator.compare(items[left], pivotItem) < 0) {
         left++;
       }
 
       // Skip leftward past items > pivot.
-      while (items[right].compareTo(pivotItem) > 0) {
+      while (comparator.compare(items[right], pivotItem) > 0) {
         right--;
       }
 
@@ -57,6 +92,622 @@ public class QuickSort {
         T temp = items[left];
         items[left] = items[right];
         items[right] = temp;
+        if (SortMetrics.ENABLED) {
+          SortMetrics.moves(2);
+        }
+
+        left++;
+        right--;
+      }
+    }
+
+    if (SortMetrics.ENABLED) {
+      SortMetrics.partition(right - first + 1, last - right);
+    }
+    return right;
+  }
+
+  /**
+   * Quicksort the provided array with three-way partitioning, which gathers the items equal to the
+   * pivot in the middle and leaves them out of both recursive calls. Inputs with only a few
+   * distinct keys are sorted in close to linear time.
+   */
+  public static <T extends Comparable<T>> void quickSort3Way(T[] items) {
+    quickSort3Way(items, Comparator.naturalOrder());
+  }
+
+  /**
+   * Quicksort the provided array with three-way partitioning, ordering items with the given
+   * comparator.
+   */
+  public static <T> void quickSort3Way(T[] items, Comparator<? super T> comparator) {
+    if (items.length > 0) {
+      quickSort3Way(items, 0, items.length - 1, comparator);
+    }
+  }
+
+  /**
+   * Recursive helper method for three-way quicksort. The region is split, Bentley-McIlroy style,
+   * into items less than, equal to and greater than a median-of-three pivot (a ninther for large
+   * regions). The smaller outer part is recursed on and the larger one looped on, and past
+   * about 2 log2(n) levels the region is heapsorted, as in IntrospectiveSort, so the stack stays
+   * O(log n) deep and the worst case is O(n log n). Small regions are insertion sorted.
+   *
+   * @param items The items to sort
+   * @param left The starting index of the region to sort
+   * @param right The ending index of the region to sort.
+   * @param comparator The ordering to sort by.
+   */
+  protected static <T> void quickSort3Way(T[] items, int left, int right,
+      Comparator<? super T> comparator) {
+    if (left < right) {
+      quickSort3Way(items, left, right, depthLimit(right - left + 1), comparator);
+    }
+  }
+
+  private static <T> void quickSort3Way(T[] items, int left, int right, int depthLimit,
+      Comparator<? super T> comparator) {
+    if (SortMetrics.ENABLED) {
+      SortMetrics.enter();
+    }
+    while (right - left + 1 > INSERTION_THRESHOLD) {
+      if (depthLimit == 0) {
+        IntrospectiveSort.heapSort(items, left, right, comparator);
+        break;
+      }
+      depthLimit--;
+      swap(items, left, pivotIndex(items, left, right, comparator));
+      T pivotItem = items[left];
+
+      // Bentley-McIlroy partitioning: scan from both ends as in Hoare's scheme, parking items equal
+      // to the pivot at the ends, in items[left..equalLow] and items[equalHigh..right].
+      int i = left;
+      int j = right + 1;
+      int equalLow = left;
+      int equalHigh = right + 1;
+      while (true) {
+        while (comparator.compare(items[++i], pivotItem) < 0) {
+          if (i == right) {
+            break;
+          }
+        }
+        while (comparator.compare(pivotItem, items[--j]) < 0) {
+          if (j == left) {
+            break;
+          }
+        }
+        if (i == j && comparator.compare(items[i], pivotItem) == 0) {
+          swap(items, ++equalLow, i);
+        }
+        if (i >= j) {
+          break;
+        }
+        swap(items, i, j);
+        if (comparator.compare(items[i], pivotItem) == 0) {
+          swap(items, ++equalLow, i);
+        }
+        if (comparator.compare(items[j], pivotItem) == 0) {
+          swap(items, --equalHigh, j);
+        }
+      }
+
+      // Swap the parked items into the middle, leaving items[left..j] < pivot and
+      // items[i..right] > pivot.
+      i = j + 1;
+      for (int k = left; k <= equalLow; k++) {
+        swap(items, k, j--);
+      }
+      for (int k = right; k >= equalHigh; k--) {
+        swap(items, k, i++);
+      }
+
+      if (SortMetrics.ENABLED) {
+        SortMetrics.partition(j - left + 1, right - i + 1);
+      }
+      if (j - left < right - i) {
+        quickSort3Way(items, left, j, depthLimit, comparator);
+        left = i;
+      } else {
+        quickSort3Way(items, i, right, depthLimit, comparator);
+        right = j;
+      }
+    }
+    if (right - left + 1 <= INSERTION_THRESHOLD) {
+      BasicSorts.insertionSubsort(items, left, right, comparator);
+    }
+    if (SortMetrics.ENABLED) {
+      SortMetrics.exit();
+    }
+  }
+
+  /**
+   * Quicksort the provided array around two pivots at a time, splitting each region into three
+   * parts. It makes fewer passes over the data than single-pivot quicksort, and the middle part is
+   * skipped entirely when the two pivots are equal.
+   */
+  public static <T extends Comparable<T>> void dualPivotQuickSort(T[] items) {
+    dualPivotQuickSort(items, Comparator.naturalOrder());
+  }
+
+  /**
+   * Quicksort the provided array around two pivots at a time, ordering items with the given
+   * comparator.
+   */
+  public static <T> void dualPivotQuickSort(T[] items, Comparator<? super T> comparator) {
+    if (items.length > 0) {
+      dualPivotQuickSort(items, 0, items.length - 1, comparator);
+    }
+  }
+
+  /**
+   * Recursive helper method for dual-pivot quicksort. Five items spread around the middle of the
+   * region are sorted in place and the second and fourth become the pivots, so the region is split
+   * into items less than the low pivot, items between the pivots and items greater than the high
+   * pivot. The two smaller parts are recursed on and the largest looped on, and past about
+   * 2 log2(n) levels the region is heapsorted, so the stack stays O(log n) deep and the worst case
+   * is O(n log n). Small regions are insertion sorted.
+   *
+   * @param items The items to sort
+   * @param left The starting index of the region to sort
+   * @param right The ending index of the region to sort.
+   * @param comparator The ordering to sort by.
+   */
+  protected static <T> void dualPivotQuickSort(T[] items, int left, int right,
+      Comparator<? super T> comparator) {
+    if (left < right) {
+      dualPivotQuickSort(items, left, right, depthLimit(right - left + 1), comparator);
+    }
+  }
+
+  private static <T> void dualPivotQuickSort(T[] items, int left, int right, int depthLimit,
+      Comparator<? super T> comparator) {
+    if (SortMetrics.ENABLED) {
+      SortMetrics.enter();
+    }
+    while (right - left + 1 > INSERTION_THRESHOLD) {
+      if (depthLimit == 0) {
+        IntrospectiveSort.heapSort(items, left, right, comparator);
+        break;
+      }
+      depthLimit--;
+
+      int mid = left + (right - left) / 2;
+      int step = (right - left + 1) / 6;
+      sortFive(items, mid - 2 * step, mid - step, mid, mid + step, mid + 2 * step, comparator);
+      swap(items, left, mid - step);
+      swap(items, right, mid + step);
+      T low = items[left];
+      T high = items[right];
+
+      // items[left+1..lessEnd-1] < low, items[greaterStart+1..right-1] > high.
+      int lessEnd = left + 1;
+      int greaterStart = right - 1;
+      int index = lessEnd;
+      while (index <= greaterStart) {
+        if (comparator.compare(items[index], low) < 0) {
+          swap(items, index, lessEnd++);
+        } else if (comparator.compare(items[index], high) > 0) {
+          while (index < greaterStart && comparator.compare(items[greaterStart], high) > 0) {
+            greaterStart--;
+          }
+          swap(items, index, greaterStart--);
+          if (comparator.compare(items[index], low) < 0) {
+            swap(items, index, lessEnd++);
+          }
+        }
+        index++;
+      }
+
+      // Move the pivots between the parts.
+      swap(items, left, --lessEnd);
+      swap(items, right, ++greaterStart);
+
+      // Items equal to both pivots need no more work.
+      int lowerSize = lessEnd - left;
+      int middleSize = comparator.compare(low, high) < 0 ? greaterStart - lessEnd - 1 : 0;
+      int upperSize = right - greaterStart;
+      if (lowerSize >= middleSize && lowerSize >= upperSize) {
+        dualPivotQuickSort(items, lessEnd + 1, lessEnd + middleSize, depthLimit, comparator);
+        dualPivotQuickSort(items, greaterStart + 1, right, depthLimit, comparator);
+        right = lessEnd - 1;
+      } else if (upperSize >= middleSize) {
+        dualPivotQuickSort(items, left, lessEnd - 1, depthLimit, comparator);
+        dualPivotQuickSort(items, lessEnd + 1, lessEnd + middleSize, depthLimit, comparator);
+        left = greaterStart + 1;
+      } else {
+        dualPivotQuickSort(items, left, lessEnd - 1, depthLimit, comparator);
+        dualPivotQuickSort(items, greaterStart + 1, right, depthLimit, comparator);
+        left = lessEnd + 1;
+        right = greaterStart - 1;
+      }
+    }
+    if (right - left + 1 <= INSERTION_THRESHOLD) {
+      BasicSorts.insertionSubsort(items, left, right, comparator);
+    }
+    if (SortMetrics.ENABLED) {
+      SortMetrics.exit();
+    }
+  }
+
+  /**
+   * Return the index of the median of the items at left, middle and right, or for regions above
+   * NINTHER_THRESHOLD the median of three such medians.
+   */
+  private static <T> int pivotIndex(T[] items, int left, int right,
+      Comparator<? super T> comparator) {
+    int mid = left + (right - left) / 2;
+    if (right - left + 1 > NINTHER_THRESHOLD) {
+      int step = (right - left + 1) / 8;
+      int low = medianOfThree(items, left, left + step, left + 2 * step, comparator);
+      int middle = medianOfThree(items, mid - step, mid, mid + step, comparator);
+      int high = medianOfThree(items, right - 2 * step, right - step, right, comparator);
+      return medianOfThree(items, low, middle, high, comparator);
+    }
+    return medianOfThree(items, left, mid, right, comparator);
+  }
+
+  private static <T> int medianOfThree(T[] items, int a, int b, int c,
+      Comparator<? super T> comparator) {
+    if (comparator.compare(items[a], items[b]) < 0) {
+      return comparator.compare(items[b], items[c]) < 0 ? b
+          : comparator.compare(items[a], items[c]) < 0 ? c : a;
+    }
+    return comparator.compare(items[a], items[c]) < 0 ? a
+        : comparator.compare(items[b], items[c]) < 0 ? c : b;
+  }
+
+  /**
+   * Sort the items at five ascending indices with a nine-comparison sorting network.
+   */
+  private static <T> void sortFive(T[] items, int a, int b, int c, int d, int e,
+      Comparator<? super T> comparator) {
+    sortTwo(items, a, b, comparator);
+    sortTwo(items, d, e, comparator);
+    sortTwo(items, c, e, comparator);
+    sortTwo(items, c, d, comparator);
+    sortTwo(items, a, d, comparator);
+    sortTwo(items, a, c, comparator);
+    sortTwo(items, b, e, comparator);
+    sortTwo(items, b, d, comparator);
+    sortTwo(items, b, c, comparator);
+  }
+
+  private static <T> void sortTwo(T[] items, int i, int j, Comparator<? super T> comparator) {
+    if (comparator.compare(items[i], items[j]) > 0) {
+      swap(items, i, j);
+    }
+  }
+
+  private static <T> void swap(T[] items, int i, int j) {
+    T temp = items[i];
+    items[i] = items[j];
+    items[j] = temp;
+    if (SortMetrics.ENABLED) {
+      SortMetrics.moves(2);
+    }
+  }
+  /**
+   * Return the number of partitioning levels allowed before falling back to heapsort.
+   */
+  private static int depthLimit(int size) {
+    return 2 * (31 - Integer.numberOfLeadingZeros(size));
+  }
+
+
+  /**
+   * Quicksort the provided array of ints.
+   */
+  public static void quickSort(int[] items) {
+    if (items.length > 0) {
+      quickSort(items, 0, items.length - 1);
+    }
+  }
+
+  /**
+   * Recursive helper method for quicksort.
+   *
+   * @param items The items to sort
+   * @param left The starting index of the region to sort
+   * @param right The ending index of the region to sort.
+   */
+  protected static void quickSort(int[] items, int left, int right) {
+    if (left < right) {
+      int lastSmallIndex = partition(items, left, right);
+      quickSort(items, left, lastSmallIndex);
+      quickSort(items, lastSmallIndex + 1, right);
+    }
+  }
+
+  /**
+   * Partition the indicated region of the array around its middle item.
+   *
+   * @return The final index of the pivot item.
+   */
+  protected static int partition(int[] items, int left, int right) {
+    int pivotIndex = left + (right - left) / 2;
+    int pivotItem = items[pivotIndex];
+
+    boolean isDone = false;
+    while (!isDone) {
+      while (items[left] < pivotItem) {
+        left++;
+      }
+
+      while (items[right] > pivotItem) {
+        right--;
+      }
+
+      if (left >= right) {
+        isDone = true;
+
+      } else {
+        int temp = items[left];
+        items[left] = items[right];
+        items[right] = temp;
+
+        left++;
+        right--;
+      }
+    }
+
+    return right;
+  }
+
+  /**
+   * Quicksort the provided array of ints with three-way partitioning.
+   */
+  public static void quickSort3Way(int[] items) {
+    if (items.length > 0) {
+      quickSort3Way(items, 0, items.length - 1);
+    }
+  }
+
+  /**
+   * Recursive helper method for three-way quicksort, bounded like the object version.
+   *
+   * @param items The items to sort
+   * @param left The starting index of the region to sort
+   * @param right The ending index of the region to sort.
+   */
+  protected static void quickSort3Way(int[] items, int left, int right) {
+    if (left < right) {
+      quickSort3Way(items, left, right, depthLimit(right - left + 1));
+    }
+  }
+
+  private static void quickSort3Way(int[] items, int left, int right, int depthLimit) {
+    while (right - left + 1 > INSERTION_THRESHOLD) {
+      if (depthLimit == 0) {
+        IntrospectiveSort.heapSort(items, left, right);
+        return;
+      }
+      depthLimit--;
+      swap(items, left, pivotIndex(items, left, right));
+      int pivotItem = items[left];
+      int i = left;
+      int j = right + 1;
+      int equalLow = left;
+      int equalHigh = right + 1;
+      while (true) {
+        while (items[++i] < pivotItem) {
+          if (i == right) {
+            break;
+          }
+        }
+        while (pivotItem < items[--j]) {
+          if (j == left) {
+            break;
+          }
+        }
+        if (i == j && items[i] == pivotItem) {
+          swap(items, ++equalLow, i);
+        }
+        if (i >= j) {
+          break;
+        }
+        swap(items, i, j);
+        if (items[i] == pivotItem) {
+          swap(items, ++equalLow, i);
+        }
+        if (items[j] == pivotItem) {
+          swap(items, --equalHigh, j);
+        }
+      }
+
+      i = j + 1;
+      for (int k = left; k <= equalLow; k++) {
+        swap(items, k, j--);
+      }
+      for (int k = right; k >= equalHigh; k--) {
+        swap(items, k, i++);
+      }
+
+      if (j - left < right - i) {
+        quickSort3Way(items, left, j, depthLimit);
+        left = i;
+      } else {
+        quickSort3Way(items, i, right, depthLimit);
+        right = j;
+      }
+    }
+    BasicSorts.insertionSubsort(items, left, right);
+  }
+
+  /**
+   * Quicksort the provided array of ints around two pivots at a time.
+   */
+  public static void dualPivotQuickSort(int[] items) {
+    if (items.length > 0) {
+      dualPivotQuickSort(items, 0, items.length - 1);
+    }
+  }
+
+  /**
+   * Recursive helper method for dual-pivot quicksort, bounded like the object version.
+   *
+   * @param items The items to sort
+   * @param left The starting index of the region to sort
+   * @param right The ending index of the region to sort.
+   */
+  protected static void dualPivotQuickSort(int[] items, int left, int right) {
+    if (left < right) {
+      dualPivotQuickSort(items, left, right, depthLimit(right - left + 1));
+    }
+  }
+
+  private static void dualPivotQuickSort(int[] items, int left, int right, int depthLimit) {
+    while (right - left + 1 > INSERTION_THRESHOLD) {
+      if (depthLimit == 0) {
+        IntrospectiveSort.heapSort(items, left, right);
+        return;
+      }
+      depthLimit--;
+
+      int mid = left + (right - left) / 2;
+      int step = (right - left + 1) / 6;
+      sortFive(items, mid - 2 * step, mid - step, mid, mid + step, mid + 2 * step);
+      swap(items, left, mid - step);
+      swap(items, right, mid + step);
+      int low = items[left];
+      int high = items[right];
+
+      int lessEnd = left + 1;
+      int greaterStart = right - 1;
+      int index = lessEnd;
+      while (index <= greaterStart) {
+        if (items[index] < low) {
+          swap(items, index, lessEnd++);
+        } else if (items[index] > high) {
+          while (index < greaterStart && items[greaterStart] > high) {
+            greaterStart--;
+          }
+          swap(items, index, greaterStart--);
+          if (items[index] < low) {
+            swap(items, index, lessEnd++);
+          }
+        }
+        index++;
+      }
+
+      swap(items, left, --lessEnd);
+      swap(items, right, ++greaterStart);
+
+      int lowerSize = lessEnd - left;
+      int middleSize = low < high ? greaterStart - lessEnd - 1 : 0;
+      int upperSize = right - greaterStart;
+      if (lowerSize >= middleSize && lowerSize >= upperSize) {
+        dualPivotQuickSort(items, lessEnd + 1, lessEnd + middleSize, depthLimit);
+        dualPivotQuickSort(items, greaterStart + 1, right, depthLimit);
+        right = lessEnd - 1;
+      } else if (upperSize >= middleSize) {
+        dualPivotQuickSort(items, left, lessEnd - 1, depthLimit);
+        dualPivotQuickSort(items, lessEnd + 1, lessEnd + middleSize, depthLimit);
+        left = greaterStart + 1;
+      } else {
+        dualPivotQuickSort(items, left, lessEnd - 1, depthLimit);
+        dualPivotQuickSort(items, greaterStart + 1, right, depthLimit);
+        left = lessEnd + 1;
+        right = greaterStart - 1;
+      }
+    }
+    if (right - left + 1 <= INSERTION_THRESHOLD) {
+      BasicSorts.insertionSubsort(items, left, right);
+    }
+  }
+
+  private static int pivotIndex(int[] items, int left, int right) {
+    int mid = left + (right - left) / 2;
+    if (right - left + 1 > NINTHER_THRESHOLD) {
+      int step = (right - left + 1) / 8;
+      int low = medianOfThree(items, left, left + step, left + 2 * step);
+      int middle = medianOfThree(items, mid - step, mid, mid + step);
+      int high = medianOfThree(items, right - 2 * step, right - step, right);
+      return medianOfThree(items, low, middle, high);
+    }
+    return medianOfThree(items, left, mid, right);
+  }
+
+  private static int medianOfThree(int[] items, int a, int b, int c) {
+    if (items[a] < items[b]) {
+      return items[b] < items[c] ? b : items[a] < items[c] ? c : a;
+    }
+    return items[a] < items[c] ? a : items[b] < items[c] ? c : b;
+  }
+
+  private static void sortFive(int[] items, int a, int b, int c, int d, int e) {
+    sortTwo(items, a, b);
+    sortTwo(items, d, e);
+    sortTwo(items, c, e);
+    sortTwo(items, c, d);
+    sortTwo(items, a, d);
+    sortTwo(items, a, c);
+    sortTwo(items, b, e);
+    sortTwo(items, b, d);
+    sortTwo(items, b, c);
+  }
+
+  private static void sortTwo(int[] items, int i, int j) {
+    if (items[i] > items[j]) {
+      swap(items, i, j);
+    }
+  }
+
+  private static void swap(int[] items, int i, int j) {
+    int temp = items[i];
+    items[i] = items[j];
+    items[j] = temp;
+  }
+
+  /**
+   * Quicksort the provided array of longs.
+   */
+  public static void quickSort(long[] items) {
+    if (items.length > 0) {
+      quickSort(items, 0, items.length - 1);
+    }
+  }
+
+  /**
+   * Recursive helper method for quicksort.
+   *
+   * @param items The items to sort
+   * @param left The starting index of the region to sort
+   * @param right The ending index of the region to sort.
+   */
+  protected static void quickSort(long[] items, int left, int right) {
+    if (left < right) {
+      int lastSmallIndex = partition(items, left, right);
+      quickSort(items, left, lastSmallIndex);
+      quickSort(items, lastSmallIndex + 1, right);
+    }
+  }
+
+  /**
+   * Partition the indicated region of the array around its middle item.
+   *
+   * @return The final index of the pivot item.
+   */
+  protected static int partition(long[] items, int left, int right) {
+    int pivotIndex = left + (right - left) / 2;
+    long pivotItem = items[pivotIndex];
+
+    boolean isDone = false;
+    while (!isDone) {
+      while (items[left] < pivotItem) {
+        left++;
+      }
+
+      while (items[right] > pivotItem) {
+        right--;
+      }
+
+      if (left >= right) {
+        isDone = true;
+
+      } else {
+        long temp = items[left];
+        items[left] = items[right];
+        items[right] = temp;
 
         left++;
         right--;
@@ -65,4 +716,475 @@ public class QuickSort {
 
     return right;
   }
+
+  /**
+   * Quicksort the provided array of longs with three-way partitioning.
+   */
+  public static void quickSort3Way(long[] items) {
+    if (items.length > 0) {
+      quickSort3Way(items, 0, items.length - 1);
+    }
+  }
+
+  /**
+   * Recursive helper method for three-way quicksort, bounded like the object version.
+   *
+   * @param items The items to sort
+   * @param left The starting index of the region to sort
+   * @param right The ending index of the region to sort.
+   */
+  protected static void quickSort3Way(long[] items, int left, int right) {
+    if (left < right) {
+      quickSort3Way(items, left, right, depthLimit(right - left + 1));
+    }
+  }
+
+  private static void quickSort3Way(long[] items, int left, int right, int depthLimit) {
+    while (right - left + 1 > INSERTION_THRESHOLD) {
+      if (depthLimit == 0) {
+        IntrospectiveSort.heapSort(items, left, right);
+        return;
+      }
+      depthLimit--;
+      swap(items, left, pivotIndex(items, left, right));
+      long pivotItem = items[left];
+      int i = left;
+      int j = right + 1;
+      int equalLow = left;
+      int equalHigh = right + 1;
+      while (true) {
+        while (items[++i] < pivotItem) {
+          if (i == right) {
+            break;
+          }
+        }
+        while (pivotItem < items[--j]) {
+          if (j == left) {
+            break;
+          }
+        }
+        if (i == j && items[i] == pivotItem) {
+          swap(items, ++equalLow, i);
+        }
+        if (i >= j) {
+          break;
+        }
+        swap(items, i, j);
+        if (items[i] == pivotItem) {
+          swap(items, ++equalLow, i);
+        }
+        if (items[j] == pivotItem) {
+          swap(items, --equalHigh, j);
+        }
+      }
+
+      i = j + 1;
+      for (int k = left; k <= equalLow; k++) {
+        swap(items, k, j--);
+      }
+      for (int k = right; k >= equalHigh; k--) {
+        swap(items, k, i++);
+      }
+
+      if (j - left < right - i) {
+        quickSort3Way(items, left, j, depthLimit);
+        left = i;
+      } else {
+        quickSort3Way(items, i, right, depthLimit);
+        right = j;
+      }
+    }
+    BasicSorts.insertionSubsort(items, left, right);
+  }
+
+  /**
+   * Quicksort the provided array of longs around two pivots at a time.
+   */
+  public static void dualPivotQuickSort(long[] items) {
+    if (items.length > 0) {
+      dualPivotQuickSort(items, 0, items.length - 1);
+    }
+  }
+
+  /**
+   * Recursive helper method for dual-pivot quicksort, bounded like the object version.
+   *
+   * @param items The items to sort
+   * @param left The starting index of the region to sort
+   * @param right The ending index of the region to sort.
+   */
+  protected static void dualPivotQuickSort(long[] items, int left, int right) {
+    if (left < right) {
+      dualPivotQuickSort(items, left, right, depthLimit(right - left + 1));
+    }
+  }
+
+  private static void dualPivotQuickSort(long[] items, int left, int right, int depthLimit) {
+    while (right - left + 1 > INSERTION_THRESHOLD) {
+      if (depthLimit == 0) {
+        IntrospectiveSort.heapSort(items, left, right);
+        return;
+      }
+      depthLimit--;
+
+      int mid = left + (right - left) / 2;
+      int step = (right - left + 1) / 6;
+      sortFive(items, mid - 2 * step, mid - step, mid, mid + step, mid + 2 * step);
+      swap(items, left, mid - step);
+      swap(items, right, mid + step);
+      long low = items[left];
+      long high = items[right];
+
+      int lessEnd = left + 1;
+      int greaterStart = right - 1;
+      int index = lessEnd;
+      while (index <= greaterStart) {
+        if (items[index] < low) {
+          swap(items, index, lessEnd++);
+        } else if (items[index] > high) {
+          while (index < greaterStart && items[greaterStart] > high) {
+            greaterStart--;
+          }
+          swap(items, index, greaterStart--);
+          if (items[index] < low) {
+            swap(items, index, lessEnd++);
+          }
+        }
+        index++;
+      }
+
+      swap(items, left, --lessEnd);
+      swap(items, right, ++greaterStart);
+
+      int lowerSize = lessEnd - left;
+      int middleSize = low < high ? greaterStart - lessEnd - 1 : 0;
+      int upperSize = right - greaterStart;
+      if (lowerSize >= middleSize && lowerSize >= upperSize) {
+        dualPivotQuickSort(items, lessEnd + 1, lessEnd + middleSize, depthLimit);
+        dualPivotQuickSort(items, greaterStart + 1, right, depthLimit);
+        right = lessEnd - 1;
+      } else if (upperSize >= middleSize) {
+        dualPivotQuickSort(items, left, lessEnd - 1, depthLimit);
+        dualPivotQuickSort(items, lessEnd + 1, lessEnd + middleSize, depthLimit);
+        left = greaterStart + 1;
+      } else {
+        dualPivotQuickSort(items, left, lessEnd - 1, depthLimit);
+        dualPivotQuickSort(items, greaterStart + 1, right, depthLimit);
+        left = lessEnd + 1;
+        right = greaterStart - 1;
+      }
+    }
+    if (right - left + 1 <= INSERTION_THRESHOLD) {
+      BasicSorts.insertionSubsort(items, left, right);
+    }
+  }
+
+  private static int pivotIndex(long[] items, int left, int right) {
+    int mid = left + (right - left) / 2;
+    if (right - left + 1 > NINTHER_THRESHOLD) {
+      int step = (right - left + 1) / 8;
+      int low = medianOfThree(items, left, left + step, left + 2 * step);
+      int middle = medianOfThree(items, mid - step, mid, mid + step);
+      int high = medianOfThree(items, right - 2 * step, right - step, right);
+      return medianOfThree(items, low, middle, high);
+    }
+    return medianOfThree(items, left, mid, right);
+  }
+
+  private static int medianOfThree(long[] items, int a, int b, int c) {
+    if (items[a] < items[b]) {
+      return items[b] < items[c] ? b : items[a] < items[c] ? c : a;
+    }
+    return items[a] < items[c] ? a : items[b] < items[c] ? c : b;
+  }
+
+  private static void sortFive(long[] items, int a, int b, int c, int d, int e) {
+    sortTwo(items, a, b);
+    sortTwo(items, d, e);
+    sortTwo(items, c, e);
+    sortTwo(items, c, d);
+    sortTwo(items, a, d);
+    sortTwo(items, a, c);
+    sortTwo(items, b, e);
+    sortTwo(items, b, d);
+    sortTwo(items, b, c);
+  }
+
+  private static void sortTwo(long[] items, int i, int j) {
+    if (items[i] > items[j]) {
+      swap(items, i, j);
+    }
+  }
+
+  private static void swap(long[] items, int i, int j) {
+    long temp = items[i];
+    items[i] = items[j];
+    items[j] = temp;
+  }
+
+  /**
+   * Quicksort the provided array of doubles.
+   */
+  public static void quickSort(double[] items) {
+    if (items.length > 0) {
+      quickSort(items, 0, items.length - 1);
+    }
+  }
+
+  /**
+   * Recursive helper method for quicksort.
+   *
+   * @param items The items to sort
+   * @param left The starting index of the region to sort
+   * @param right The ending index of the region to sort.
+   */
+  protected static void quickSort(double[] items, int left, int right) {
+    if (left < right) {
+      int lastSmallIndex = partition(items, left, right);
+      quickSort(items, left, lastSmallIndex);
+      quickSort(items, lastSmallIndex + 1, right);
+    }
+  }
+
+  /**
+   * Partition the indicated region of the array around its middle item.
+   *
+   * @return The final index of the pivot item.
+   */
+  protected static int partition(double[] items, int left, int right) {
+    int pivotIndex = left + (right - left) / 2;
+    double pivotItem = items[pivotIndex];
+
+    boolean isDone = false;
+    while (!isDone) {
+      while (Double.compare(items[left], pivotItem) < 0) {
+        left++;
+      }
+
+      while (Double.compare(items[right], pivotItem) > 0) {
+        right--;
+      }
+
+      if (left >= right) {
+        isDone = true;
+
+      } else {
+        double temp = items[left];
+        items[left] = items[right];
+        items[right] = temp;
+
+        left++;
+        right--;
+      }
+    }
+
+    return right;
+  }
+
+  /**
+   * Quicksort the provided array of doubles with three-way partitioning.
+   */
+  public static void quickSort3Way(double[] items) {
+    if (items.length > 0) {
+      quickSort3Way(items, 0, items.length - 1);
+    }
+  }
+
+  /**
+   * Recursive helper method for three-way quicksort, bounded like the object version.
+   *
+   * @param items The items to sort
+   * @param left The starting index of the region to sort
+   * @param right The ending index of the region to sort.
+   */
+  protected static void quickSort3Way(double[] items, int left, int right) {
+    if (left < right) {
+      quickSort3Way(items, left, right, depthLimit(right - left + 1));
+    }
+  }
+
+  private static void quickSort3Way(double[] items, int left, int right, int depthLimit) {
+    while (right - left + 1 > INSERTION_THRESHOLD) {
+      if (depthLimit == 0) {
+        IntrospectiveSort.heapSort(items, left, right);
+        return;
+      }
+      depthLimit--;
+      swap(items, left, pivotIndex(items, left, right));
+      double pivotItem = items[left];
+      int i = left;
+      int j = right + 1;
+      int equalLow = left;
+      int equalHigh = right + 1;
+      while (true) {
+        while (Double.compare(items[++i], pivotItem) < 0) {
+          if (i == right) {
+            break;
+          }
+        }
+        while (Double.compare(pivotItem, items[--j]) < 0) {
+          if (j == left) {
+            break;
+          }
+        }
+        if (i == j && Double.compare(items[i], pivotItem) == 0) {
+          swap(items, ++equalLow, i);
+        }
+        if (i >= j) {
+          break;
+        }
+        swap(items, i, j);
+        if (Double.compare(items[i], pivotItem) == 0) {
+          swap(items, ++equalLow, i);
+        }
+        if (Double.compare(items[j], pivotItem) == 0) {
+          swap(items, --equalHigh, j);
+        }
+      }
+
+      i = j + 1;
+      for (int k = left; k <= equalLow; k++) {
+        swap(items, k, j--);
+      }
+      for (int k = right; k >= equalHigh; k--) {
+        swap(items, k, i++);
+      }
+
+      if (j - left < right - i) {
+        quickSort3Way(items, left, j, depthLimit);
+        left = i;
+      } else {
+        quickSort3Way(items, i, right, depthLimit);
+        right = j;
+      }
+    }
+    BasicSorts.insertionSubsort(items, left, right);
+  }
+
+  /**
+   * Quicksort the provided array of doubles around two pivots at a time.
+   */
+  public static void dualPivotQuickSort(double[] items) {
+    if (items.length > 0) {
+      dualPivotQuickSort(items, 0, items.length - 1);
+    }
+  }
+
+  /**
+   * Recursive helper method for dual-pivot quicksort, bounded like the object version.
+   *
+   * @param items The items to sort
+   * @param left The starting index of the region to sort
+   * @param right The ending index of the region to sort.
+   */
+  protected static void dualPivotQuickSort(double[] items, int left, int right) {
+    if (left < right) {
+      dualPivotQuickSort(items, left, right, depthLimit(right - left + 1));
+    }
+  }
+
+  private static void dualPivotQuickSort(double[] items, int left, int right, int depthLimit) {
+    while (right - left + 1 > INSERTION_THRESHOLD) {
+      if (depthLimit == 0) {
+        IntrospectiveSort.heapSort(items, left, right);
+        return;
+      }
+      depthLimit--;
+
+      int mid = left + (right - left) / 2;
+      int step = (right - left + 1) / 6;
+      sortFive(items, mid - 2 * step, mid - step, mid, mid + step, mid + 2 * step);
+      swap(items, left, mid - step);
+      swap(items, right, mid + step);
+      double low = items[left];
+      double high = items[right];
+
+      int lessEnd = left + 1;
+      int greaterStart = right - 1;
+      int index = lessEnd;
+      while (index <= greaterStart) {
+        if (Double.compare(items[index], low) < 0) {
+          swap(items, index, lessEnd++);
+        } else if (Double.compare(items[index], high) > 0) {
+          while (index < greaterStart && Double.compare(items[greaterStart], high) > 0) {
+            greaterStart--;
+          }
+          swap(items, index, greaterStart--);
+          if (Double.compare(items[index], low) < 0) {
+            swap(items, index, lessEnd++);
+          }
+        }
+        index++;
+      }
+
+      swap(items, left, --lessEnd);
+      swap(items, right, ++greaterStart);
+
+      int lowerSize = lessEnd - left;
+      int middleSize = Double.compare(low, high) < 0 ? greaterStart - lessEnd - 1 : 0;
+      int upperSize = right - greaterStart;
+      if (lowerSize >= middleSize && lowerSize >= upperSize) {
+        dualPivotQuickSort(items, lessEnd + 1, lessEnd + middleSize, depthLimit);
+        dualPivotQuickSort(items, greaterStart + 1, right, depthLimit);
+        right = lessEnd - 1;
+      } else if (upperSize >= middleSize) {
+        dualPivotQuickSort(items, left, lessEnd - 1, depthLimit);
+        dualPivotQuickSort(items, lessEnd + 1, lessEnd + middleSize, depthLimit);
+        left = greaterStart + 1;
+      } else {
+        dualPivotQuickSort(items, left, lessEnd - 1, depthLimit);
+        dualPivotQuickSort(items, greaterStart + 1, right, depthLimit);
+        left = lessEnd + 1;
+        right = greaterStart - 1;
+      }
+    }
+    if (right - left + 1 <= INSERTION_THRESHOLD) {
+      BasicSorts.insertionSubsort(items, left, right);
+    }
+  }
+
+  private static int pivotIndex(double[] items, int left, int right) {
+    int mid = left + (right - left) / 2;
+    if (right - left + 1 > NINTHER_THRESHOLD) {
+      int step = (right - left + 1) / 8;
+      int low = medianOfThree(items, left, left + step, left + 2 * step);
+      int middle = medianOfThree(items, mid - step, mid, mid + step);
+      int high = medianOfThree(items, right - 2 * step, right - step, right);
+      return medianOfThree(items, low, middle, high);
+    }
+    return medianOfThree(items, left, mid, right);
+  }
+
+  private static int medianOfThree(double[] items, int a, int b, int c) {
+    if (Double.compare(items[a], items[b]) < 0) {
+      return Double.compare(items[b], items[c]) < 0 ? b
+          : Double.compare(items[a], items[c]) < 0 ? c : a;
+    }
+    return Double.compare(items[a], items[c]) < 0 ? a
+        : Double.compare(items[b], items[c]) < 0 ? c : b;
+  }
+
+  private static void sortFive(double[] items, int a, int b, int c, int d, int e) {
+    sortTwo(items, a, b);
+    sortTwo(items, d, e);
+    sortTwo(items, c, e);
+    sortTwo(items, c, d);
+    sortTwo(items, a, d);
+    sortTwo(items, a, c);
+    sortTwo(items, b, e);
+    sortTwo(items, b, d);
+    sortTwo(items, b, c);
+  }
+
+  private static void sortTwo(double[] items, int i, int j) {
+    if (Double.compare(items[i], items[j]) > 0) {
+      swap(items, i, j);
+    }
+  }
+
+  private static void swap(double[] items, int i, int j) {
+    double temp = items[i];
+    items[i] = items[j];
+    items[j] = temp;
+  }
 }
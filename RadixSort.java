@@ -0,0 +1,465 @@
+import java.util.Arrays;
+
+/**
+ * Non-comparison sorts: LSD radix sort for ints and longs, counting sort for small key ranges, and
+ * MSD radix sort or multikey quicksort for strings.
+ *
+ * <p>The LSD sorts histogram every 8-bit digit in a single pass, skip the digits on which all keys
+ * agree, and flip the sign bit of the most significant digit so negative keys sort first. When the
+ * keys span a range no larger than about twice the input size they switch to counting sort.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ */
+public class RadixSort {
+
+  /** Largest key range counting sort will allocate counts for. */
+  public static final int MAX_COUNTING_RANGE = 1 << 20;
+
+  private static final int RADIX = 256;
+  private static final int INSERTION_THRESHOLD = 32;
+
+  /** Multikey quicksort regions above this size use the median of three medians as their pivot. */
+  private static final int NINTHER_THRESHOLD = 128;
+
+  /**
+   * Sort the provided ints with LSD radix sort, or counting sort if the key range is small.
+   *
+   * @param items array to sort
+   */
+  public static void radixSort(int[] items) {
+    SortContext context = SortContext.acquire();
+    try {
+      radixSort(items, context);
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Sort the provided ints, taking the scratch buffer from the given context.
+   *
+   * @param items array to sort
+   * @param context source of the scratch buffer
+   */
+  public static void radixSort(int[] items, SortContext context) {
+    int size = items.length;
+    if (size <= INSERTION_THRESHOLD) {
+      BasicSorts.insertionSubsort(items, 0, size - 1);
+      return;
+    }
+
+    int[] counts = new int[4 * RADIX];
+    int min = items[0];
+    int max = items[0];
+    for (int item : items) {
+      min = Math.min(min, item);
+      max = Math.max(max, item);
+      counts[item & 0xff]++;
+      counts[RADIX + ((item >>> 8) & 0xff)]++;
+      counts[2 * RADIX + ((item >>> 16) & 0xff)]++;
+      counts[3 * RADIX + ((item >>> 24) ^ 0x80)]++;
+    }
+    long range = (long) max - min + 1;
+    if (range <= MAX_COUNTING_RANGE && range <= 2L * size) {
+      countingSort(items, min, (int) range, context);
+      return;
+    }
+
+    int[] from = items;
+    int[] to = context.ints(size);
+    for (int digit = 0; digit < 4; digit++) {
+      int offset = digit * RADIX;
+      int shift = digit * 8;
+      int flip = digit == 3 ? 0x80 : 0;
+      if (counts[offset + (((items[0] >>> shift) & 0xff) ^ flip)] == size) {
+        continue;
+      }
+      toOffsets(counts, offset);
+      for (int i = 0; i < size; i++) {
+        int item = from[i];
+        to[counts[offset + (((item >>> shift) & 0xff) ^ flip)]++] = item;
+      }
+      int[] temp = from;
+      from = to;
+      to = temp;
+    }
+    if (from != items) {
+      System.arraycopy(from, 0, items, 0, size);
+    }
+  }
+
+  /**
+   * Sort the provided longs with LSD radix sort, or counting sort if the key range is small.
+   *
+   * @param items array to sort
+   */
+  public static void radixSort(long[] items) {
+    SortContext context = SortContext.acquire();
+    try {
+      radixSort(items, context);
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Sort the provided longs, taking the scratch buffer from the given context.
+   *
+   * @param items array to sort
+   * @param context source of the scratch buffer
+   */
+  public static void radixSort(long[] items, SortContext context) {
+    int size = items.length;
+    if (size <= INSERTION_THRESHOLD) {
+      BasicSorts.insertionSubsort(items, 0, size - 1);
+      return;
+    }
+
+    int[] counts = new int[8 * RADIX];
+    long min = items[0];
+    long max = items[0];
+    for (long item : items) {
+      min = Math.min(min, item);
+      max = Math.max(max, item);
+      for (int digit = 0; digit < 7; digit++) {
+        counts[digit * RADIX + (int) ((item >>> (digit * 8)) & 0xff)]++;
+      }
+      counts[7 * RADIX + (int) ((item >>> 56) ^ 0x80)]++;
+    }
+    // A negative difference means the range overflowed a long, so it is certainly too large.
+    long range = max - min + 1;
+    if (range > 0 && range <= MAX_COUNTING_RANGE && range <= 2L * size) {
+      countingSort(items, min, (int) range, context);
+      return;
+    }
+
+    long[] from = items;
+    long[] to = context.longs(size);
+    for (int digit = 0; digit < 8; digit++) {
+      int offset = digit * RADIX;
+      int shift = digit * 8;
+      int flip = digit == 7 ? 0x80 : 0;
+      if (counts[offset + ((int) ((items[0] >>> shift) & 0xff) ^ flip)] == size) {
+        continue;
+      }
+      toOffsets(counts, offset);
+      for (int i = 0; i < size; i++) {
+        long item = from[i];
+        to[counts[offset + ((int) ((item >>> shift) & 0xff) ^ flip)]++] = item;
+      }
+      long[] temp = from;
+      from = to;
+      to = temp;
+    }
+    if (from != items) {
+      System.arraycopy(from, 0, items, 0, size);
+    }
+  }
+
+  /**
+   * Replace one digit's histogram with the starting offset of each bucket.
+   */
+  private static void toOffsets(int[] counts, int offset) {
+    int sum = 0;
+    for (int bucket = offset; bucket < offset + RADIX; bucket++) {
+      int count = counts[bucket];
+      counts[bucket] = sum;
+      sum += count;
+    }
+  }
+
+  /**
+   * Sort the provided ints with counting sort.
+   *
+   * @param items array to sort
+   * @throws IllegalArgumentException if the keys span more than MAX_COUNTING_RANGE values
+   */
+  public static void countingSort(int[] items) {
+    SortContext context = SortContext.acquire();
+    try {
+      countingSort(items, context);
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Sort the provided ints with counting sort, taking the counts from the given context.
+   *
+   * @param items array to sort
+   * @param context source of the counts buffer
+   * @throws IllegalArgumentException if the keys span more than MAX_COUNTING_RANGE values
+   */
+  public static void countingSort(int[] items, SortContext context) {
+    if (items.length < 2) {
+      return;
+    }
+    int min = items[0];
+    int max = items[0];
+    for (int item : items) {
+      min = Math.min(min, item);
+      max = Math.max(max, item);
+    }
+    long range = (long) max - min + 1;
+    if (range > MAX_COUNTING_RANGE) {
+      throw new IllegalArgumentException("Key range too large for counting sort.");
+    }
+    countingSort(items, min, (int) range, context);
+  }
+
+  /**
+   * Counting sort of ints known to lie in [min, min + range).
+   */
+  private static void countingSort(int[] items, int min, int range, SortContext context) {
+    int[] counts = context.ints(range);
+    Arrays.fill(counts, 0, range, 0);
+    for (int item : items) {
+      counts[item - min]++;
+    }
+    int index = 0;
+    for (int key = 0; key < range; key++) {
+      for (int count = counts[key]; count > 0; count--) {
+        items[index++] = min + key;
+      }
+    }
+  }
+
+  /**
+   * Counting sort of longs known to lie in [min, min + range).
+   */
+  private static void countingSort(long[] items, long min, int range, SortContext context) {
+    int[] counts = context.ints(range);
+    Arrays.fill(counts, 0, range, 0);
+    for (long item : items) {
+      counts[(int) (item - min)]++;
+    }
+    int index = 0;
+    for (int key = 0; key < range; key++) {
+      for (int count = counts[key]; count > 0; count--) {
+        items[index++] = min + key;
+      }
+    }
+  }
+
+  /**
+   * Sort the provided strings with MSD radix sort. Strings containing characters above 0xff are
+   * sorted with multikey quicksort instead, since they do not fit the 256-way buckets.
+   *
+   * @param items array to sort
+   */
+  public static void radixSort(String[] items) {
+    SortContext context = SortContext.acquire();
+    try {
+      radixSort(items, context);
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Sort the provided strings with MSD radix sort, taking the scratch buffer from the given
+   * context.
+   *
+   * @param items array to sort
+   * @param context source of the scratch buffer
+   */
+  public static void radixSort(String[] items, SortContext context) {
+    for (String item : items) {
+      for (int i = 0; i < item.length(); i++) {
+        if (item.charAt(i) > 0xff) {
+          multikeyQuickSort(items);
+          return;
+        }
+      }
+    }
+    Object[] aux = context.objects(items.length);
+    // A nested call covers at most half its caller's range, so there are at most log2(n) levels.
+    int levels = 32 - Integer.numberOfLeadingZeros(items.length);
+    int[] counts = context.ints(levels * (RADIX + 2));
+    msdSort(items, aux, counts, 0, 0, items.length - 1, 0);
+  }
+
+  /**
+   * Recursive helper for MSD radix sort. All strings in items[start..end] share their first depth
+   * characters. Bucket 0 holds strings that end at this depth. Every bucket but the largest is
+   * recursed on, or insertion sorted if small, and the largest is looped on, so a long prefix
+   * shared by every string advances the depth without growing the stack. Each level of nesting
+   * keeps its bucket counts in its own slice of counts.
+   */
+  private static void msdSort(String[] items, Object[] aux, int[] counts, int level, int start,
+      int end, int depth) {
+    int base = level * (RADIX + 2);
+    while (end - start >= INSERTION_THRESHOLD) {
+      Arrays.fill(counts, base, base + RADIX + 2, 0);
+      for (int i = start; i <= end; i++) {
+        counts[base + charAt(items[i], depth) + 2]++;
+      }
+      for (int bucket = 0; bucket < RADIX + 1; bucket++) {
+        counts[base + bucket + 1] += counts[base + bucket];
+      }
+      for (int i = start; i <= end; i++) {
+        aux[counts[base + charAt(items[i], depth) + 1]++] = items[i];
+      }
+      System.arraycopy(aux, 0, items, start, end - start + 1);
+
+      // Strings with next character c now sit between counts[base + c] and counts[base + c + 1].
+      // Strings that ended at this depth come first and need no more work.
+      int largest = 0;
+      for (int bucket = 1; bucket < RADIX; bucket++) {
+        if (counts[base + bucket + 1] - counts[base + bucket]
+            > counts[base + largest + 1] - counts[base + largest]) {
+          largest = bucket;
+        }
+      }
+      for (int bucket = 0; bucket < RADIX; bucket++) {
+        int low = start + counts[base + bucket];
+        int high = start + counts[base + bucket + 1] - 1;
+        if (bucket == largest || high <= low) {
+          continue;
+        }
+        if (high - low >= INSERTION_THRESHOLD) {
+          msdSort(items, aux, counts, level + 1, low, high, depth + 1);
+        } else {
+          insertionSort(items, low, high, depth + 1);
+        }
+      }
+      end = start + counts[base + largest + 1] - 1;
+      start += counts[base + largest];
+      depth++;
+    }
+    insertionSort(items, start, end, depth);
+  }
+
+  /**
+   * Sort the provided strings with multikey (three-way radix) quicksort.
+   *
+   * @param items array to sort
+   */
+  public static void multikeyQuickSort(String[] items) {
+    multikeyQuickSort(items, 0, items.length - 1, 0);
+  }
+
+  /**
+   * Recursive helper for multikey quicksort. All strings in items[start..end] share their first
+   * depth characters. Of the three parts a partition leaves, the two smaller are recursed on and
+   * the largest is looped on, so each call covers at most half of its caller's range and the stack
+   * stays O(log n) deep however long the shared prefixes are.
+   */
+  private static void multikeyQuickSort(String[] items, int start, int end, int depth) {
+    while (end - start >= INSERTION_THRESHOLD) {
+      swap(items, start, choosePivot(items, start, end, depth));
+      int pivot = charAt(items[start], depth);
+      int less = start;
+      int greater = end;
+      int i = start + 1;
+      while (i <= greater) {
+        int current = charAt(items[i], depth);
+        if (current < pivot) {
+          swap(items, less++, i++);
+        } else if (current > pivot) {
+          swap(items, i, greater--);
+        } else {
+          i++;
+        }
+      }
+
+      // Strings equal to a pivot of -1 have all ended and need no more work.
+      int lowerSize = less - start;
+      int middleSize = pivot >= 0 ? greater - less + 1 : 0;
+      int upperSize = end - greater;
+      if (lowerSize >= middleSize && lowerSize >= upperSize) {
+        if (pivot >= 0) {
+          multikeyQuickSort(items, less, greater, depth + 1);
+        }
+        multikeyQuickSort(items, greater + 1, end, depth);
+        end = less - 1;
+      } else if (upperSize >= middleSize) {
+        multikeyQuickSort(items, start, less - 1, depth);
+        if (pivot >= 0) {
+          multikeyQuickSort(items, less, greater, depth + 1);
+        }
+        start = greater + 1;
+      } else {
+        multikeyQuickSort(items, start, less - 1, depth);
+        multikeyQuickSort(items, greater + 1, end, depth);
+        start = less;
+        end = greater;
+        depth++;
+      }
+    }
+    insertionSort(items, start, end, depth);
+  }
+
+  /**
+   * Return the index of the pivot for multikey quicksort: the median of three characters at the
+   * given depth, or for large regions the median of three such medians.
+   */
+  private static int choosePivot(String[] items, int start, int end, int depth) {
+    int mid = start + (end - start) / 2;
+    if (end - start + 1 > NINTHER_THRESHOLD) {
+      int step = (end - start + 1) / 8;
+      int low = medianOfThree(items, start, start + step, start + 2 * step, depth);
+      int middle = medianOfThree(items, mid - step, mid, mid + step, depth);
+      int high = medianOfThree(items, end - 2 * step, end - step, end, depth);
+      return medianOfThree(items, low, middle, high, depth);
+    }
+    return medianOfThree(items, start, mid, end, depth);
+  }
+
+  /**
+   * Return whichever of the three indices holds the median character at the given depth.
+   */
+  private static int medianOfThree(String[] items, int a, int b, int c, int depth) {
+    int x = charAt(items[a], depth);
+    int y = charAt(items[b], depth);
+    int z = charAt(items[c], depth);
+    if (x < y) {
+      return y < z ? b : x < z ? c : a;
+    }
+    return x < z ? a : y < z ? c : b;
+  }
+
+  /**
+   * Insertion sort strings that share their first depth characters.
+   */
+  private static void insertionSort(String[] items, int start, int end, int depth) {
+    for (int i = start + 1; i <= end; i++) {
+      String itemToShift = items[i];
+      int j = i;
+      while (j > start && lessFrom(itemToShift, items[j - 1], depth)) {
+        items[j] = items[j - 1];
+        j--;
+      }
+      items[j] = itemToShift;
+    }
+  }
+
+  /**
+   * Return true if the first string is less than the second, comparing from the given index on.
+   */
+  private static boolean lessFrom(String first, String second, int depth) {
+    int length = Math.min(first.length(), second.length());
+    for (int i = depth; i < length; i++) {
+      char a = first.charAt(i);
+      char b = second.charAt(i);
+      if (a != b) {
+        return a < b;
+      }
+    }
+    return first.length() < second.length();
+  }
+
+  /**
+   * Return the character at the given index, or -1 past the end of the string.
+   */
+  private static int charAt(String item, int index) {
+    return index < item.length() ? item.charAt(index) : -1;
+  }
+
+  private static void swap(String[] items, int i, int j) {
+    String temp = items[i];
+    items[i] = items[j];
+    items[j] = temp;
+  }
+}
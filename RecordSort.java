@@ -0,0 +1,355 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Sorts fixed-width binary records where they lie in a ByteBuffer, which may be a direct buffer off
+ * the heap or a memory-mapped file, without turning them into objects. Records are ordered by a key
+ * of keyLength bytes at keyOffset within each record, read straight from the buffer and compared
+ * as an unsigned big-endian number, or as a signed one (two's complement, like the keys
+ * ExternalSort writes) if signedKey is set. The records are the buffer's remaining bytes.
+ *
+ * <p>There are three ways to sort. sortInPlace is an introsort that swaps whole records, needing
+ * no memory beyond two records; it is not stable. order packs the first four key bytes of each
+ * record with its index into a long, sorts those with the LongSorter given to the constructor
+ * (LSD radix sort by default), breaks ties on longer keys four bytes at a time, and returns the
+ * record indices in sorted order, leaving the records alone so large payloads need not move at
+ * all. sortByIndex does the same and then moves each record once, following the cycles of the
+ * permutation. Both are stable.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ */
+public class RecordSort {
+  private static final int INSERTION_THRESHOLD = 16;
+
+  private final int recordSize;
+  private final int keyOffset;
+  private final int keyLength;
+  private final boolean signedKey;
+  private final LongSorter indexSorter;
+
+  /**
+   * Create a record sort whose index sorts use LSD radix sort.
+   *
+   * @param recordSize bytes per record
+   * @param keyOffset offset of the key within each record
+   * @param keyLength bytes in the key
+   * @param signedKey whether the key is a signed big-endian integer rather than unsigned
+   */
+  public RecordSort(int recordSize, int keyOffset, int keyLength, boolean signedKey) {
+    this(recordSize, keyOffset, keyLength, signedKey, RadixSort::radixSort);
+  }
+
+  /**
+   * Create a record sort.
+   *
+   * @param recordSize bytes per record
+   * @param keyOffset offset of the key within each record
+   * @param keyLength bytes in the key
+   * @param signedKey whether the key is a signed big-endian integer rather than unsigned
+   * @param indexSorter sort applied to the packed key prefixes and indices
+   */
+  public RecordSort(int recordSize, int keyOffset, int keyLength, boolean signedKey,
+      LongSorter indexSorter) {
+    if (keyLength < 1) {
+      throw new IllegalArgumentException("Key must be at least one byte.");
+    }
+    if (keyOffset < 0 || recordSize < keyLength || keyOffset > recordSize - keyLength) {
+      throw new IllegalArgumentException("Key must lie within the record.");
+    }
+
+    this.recordSize = recordSize;
+    this.keyOffset = keyOffset;
+    this.keyLength = keyLength;
+    this.signedKey = signedKey;
+    this.indexSorter = indexSorter;
+  }
+
+  /**
+   * Sort the records in place by swapping them. Records with equal keys may be reordered.
+   *
+   * @param records buffer whose remaining bytes are the records
+   * @throws IllegalArgumentException if the remaining bytes are not a multiple of the record size
+   */
+  public void sortInPlace(ByteBuffer records) {
+    ByteBuffer view = view(records);
+    int count = view.limit() / recordSize;
+    if (count > 1) {
+      int depthLimit = 2 * (31 - Integer.numberOfLeadingZeros(count));
+      introspectiveSort(view, 0, count - 1, depthLimit, ByteBuffer.wrap(new byte[keyLength]),
+          new byte[recordSize]);
+    }
+  }
+
+  /**
+   * Sort the records by sorting their packed key prefixes and indices, then moving each record
+   * once into its place. Records with equal keys keep their order.
+   *
+   * @param records buffer whose remaining bytes are the records
+   * @throws IllegalArgumentException if the remaining bytes are not a multiple of the record size
+   */
+  public void sortByIndex(ByteBuffer records) {
+    ByteBuffer view = view(records);
+    int[] order = order(view);
+    byte[] temp = new byte[recordSize];
+
+    // order[slot] is the record that belongs in slot. Follow each cycle from an out-of-place slot,
+    // holding its record aside until the slot it belongs in is reached.
+    for (int start = 0; start < order.length; start++) {
+      if (order[start] == start) {
+        continue;
+      }
+      view.get(start * recordSize, temp, 0, recordSize);
+      int slot = start;
+      while (order[slot] != start) {
+        int source = order[slot];
+        view.put(slot * recordSize, view, source * recordSize, recordSize);
+        order[slot] = slot;
+        slot = source;
+      }
+      view.put(slot * recordSize, temp, 0, recordSize);
+      order[slot] = slot;
+    }
+  }
+
+  /**
+   * Return the indices of the records in sorted order, leaving the records unchanged. Records
+   * with equal keys keep their order.
+   *
+   * @param records buffer whose remaining bytes are the records
+   * @return the index of the smallest record, then the next, and so on
+   * @throws IllegalArgumentException if the remaining bytes are not a multiple of the record size
+   */
+  public int[] order(ByteBuffer records) {
+    ByteBuffer view = view(records);
+    int count = view.limit() / recordSize;
+    long[] packed = new long[count];
+    for (int i = 0; i < count; i++) {
+      packed[i] = (long) chunk(view, i, 0) << 32 | i;
+    }
+    indexSorter.sort(packed);
+    if (keyLength > 4) {
+      refine(view, packed, 0, count, 4);
+    }
+
+    int[] order = new int[count];
+    for (int i = 0; i < count; i++) {
+      order[i] = (int) packed[i];
+    }
+    return order;
+  }
+
+  /**
+   * Order runs of packed[from..to-1] that share their key bytes before offset by the next four key
+   * bytes, repacking each run's indices with those bytes. The index in the low half keeps equal
+   * keys in their original order.
+   */
+  private void refine(ByteBuffer view, long[] packed, int from, int to, int offset) {
+    int runStart = from;
+    for (int i = from + 1; i <= to; i++) {
+      if (i < to && packed[i] >>> 32 == packed[runStart] >>> 32) {
+        continue;
+      }
+      if (i - runStart > 1) {
+        for (int j = runStart; j < i; j++) {
+          int index = (int) packed[j];
+          packed[j] = (long) chunk(view, index, offset) << 32 | index;
+        }
+        Arrays.sort(packed, runStart, i);
+        if (offset + 4 < keyLength) {
+          refine(view, packed, runStart, i, offset + 4);
+        }
+      }
+      runStart = i;
+    }
+  }
+
+  /**
+   * Return up to four key bytes of a record from the given offset, zero padded, as an int that
+   * orders like those bytes under signed comparison.
+   */
+  private int chunk(ByteBuffer view, int record, int offset) {
+    int position = record * recordSize + keyOffset + offset;
+    int value;
+    if (keyLength - offset >= 4) {
+      value = view.getInt(position);
+    } else {
+      value = 0;
+      for (int i = 0; i < 4; i++) {
+        value <<= 8;
+        if (offset + i < keyLength) {
+          value |= view.get(position + i) & 0xff;
+        }
+      }
+    }
+    // Unsigned bytes order like signed ints once the sign bit is flipped.
+    return offset == 0 && signedKey ? value : value ^ Integer.MIN_VALUE;
+  }
+
+  /**
+   * Return a zero-based big-endian view of the buffer's remaining bytes.
+   */
+  private ByteBuffer view(ByteBuffer records) {
+    ByteBuffer view = records.slice().order(ByteOrder.BIG_ENDIAN);
+    if (view.limit() % recordSize != 0) {
+      throw new IllegalArgumentException("Buffer length is not a multiple of the record size.");
+    }
+    return view;
+  }
+
+  /**
+   * Compare the keys at two positions, which may be in different buffers. The first chunk is
+   * compared signed when the key is signed, which orders its leading byte as signed and the rest
+   * as unsigned.
+   */
+  private int compareKeys(ByteBuffer first, int firstKey, ByteBuffer second, int secondKey) {
+    int offset = 0;
+    while (offset + 8 <= keyLength) {
+      long a = first.getLong(firstKey + offset);
+      long b = second.getLong(secondKey + offset);
+      if (a != b) {
+        return offset == 0 && signedKey ? Long.compare(a, b) : Long.compareUnsigned(a, b);
+      }
+      offset += 8;
+    }
+    if (offset + 4 <= keyLength) {
+      int a = first.getInt(firstKey + offset);
+      int b = second.getInt(secondKey + offset);
+      if (a != b) {
+        return offset == 0 && signedKey ? Integer.compare(a, b) : Integer.compareUnsigned(a, b);
+      }
+      offset += 4;
+    }
+    for (; offset < keyLength; offset++) {
+      byte a = first.get(firstKey + offset);
+      byte b = second.get(secondKey + offset);
+      if (a != b) {
+        return offset == 0 && signedKey ? Byte.compare(a, b) : Byte.compareUnsigned(a, b);
+      }
+    }
+    return 0;
+  }
+
+  private int compareRecords(ByteBuffer view, int first, int second) {
+    return compareKeys(view, key(first), view, key(second));
+  }
+
+  private int key(int record) {
+    return record * recordSize + keyOffset;
+  }
+
+  /**
+   * Recursive helper for sortInPlace, following IntrospectiveSort: recurse into the smaller side
+   * of each partition, heapsort regions still unsorted at the depth limit and insertion sort small
+   * ones.
+   */
+  private void introspectiveSort(ByteBuffer view, int start, int end, int depthLimit,
+      ByteBuffer pivot, byte[] temp) {
+    while (end - start + 1 > INSERTION_THRESHOLD) {
+      if (depthLimit == 0) {
+        heapSort(view, start, end, temp);
+        return;
+      }
+      depthLimit--;
+
+      int mid = start + (end - start) / 2;
+      sortThree(view, start, mid, end, temp);
+      int split = partition(view, start, end, pivot, temp);
+      if (split - start < end - split) {
+        introspectiveSort(view, start, split, depthLimit, pivot, temp);
+        start = split + 1;
+      } else {
+        introspectiveSort(view, split + 1, end, depthLimit, pivot, temp);
+        end = split;
+      }
+    }
+    insertionSort(view, start, end, temp);
+  }
+
+  /**
+   * Partition the records around the key of the middle one, as QuickSort.partition does. The
+   * pivot key is copied out first, since the record holding it may move.
+   *
+   * @return the index of the last record of the left side
+   */
+  private int partition(ByteBuffer view, int left, int right, ByteBuffer pivot, byte[] temp) {
+    view.get(key(left + (right - left) / 2), pivot.array(), 0, keyLength);
+    while (true) {
+      while (compareKeys(view, key(left), pivot, 0) < 0) {
+        left++;
+      }
+      while (compareKeys(view, key(right), pivot, 0) > 0) {
+        right--;
+      }
+      if (left >= right) {
+        return right;
+      }
+      swap(view, left++, right--, temp);
+    }
+  }
+
+  private void sortThree(ByteBuffer view, int a, int b, int c, byte[] temp) {
+    if (compareRecords(view, b, a) < 0) {
+      swap(view, a, b, temp);
+    }
+    if (compareRecords(view, c, b) < 0) {
+      swap(view, b, c, temp);
+      if (compareRecords(view, b, a) < 0) {
+        swap(view, a, b, temp);
+      }
+    }
+  }
+
+  /**
+   * Insertion sort the records, holding the record being placed in temp and shifting the larger
+   * ones up a record at a time.
+   */
+  private void insertionSort(ByteBuffer view, int start, int end, byte[] temp) {
+    ByteBuffer held = ByteBuffer.wrap(temp);
+    for (int i = start + 1; i <= end; i++) {
+      if (compareRecords(view, i, i - 1) >= 0) {
+        continue;
+      }
+      view.get(i * recordSize, temp, 0, recordSize);
+      int j = i;
+      do {
+        view.put(j * recordSize, view, (j - 1) * recordSize, recordSize);
+        j--;
+      } while (j > start && compareKeys(held, keyOffset, view, key(j - 1)) < 0);
+      view.put(j * recordSize, temp, 0, recordSize);
+    }
+  }
+
+  private void heapSort(ByteBuffer view, int start, int end, byte[] temp) {
+    int size = end - start + 1;
+    for (int i = size / 2 - 1; i >= 0; i--) {
+      siftDown(view, start, i, size, temp);
+    }
+    for (int last = size - 1; last > 0; last--) {
+      swap(view, start, start + last, temp);
+      siftDown(view, start, 0, last, temp);
+    }
+  }
+
+  private void siftDown(ByteBuffer view, int start, int node, int size, byte[] temp) {
+    int child = 2 * node + 1;
+    while (child < size) {
+      if (child + 1 < size && compareRecords(view, start + child, start + child + 1) < 0) {
+        child++;
+      }
+      if (compareRecords(view, start + node, start + child) >= 0) {
+        return;
+      }
+      swap(view, start + node, start + child, temp);
+      node = child;
+      child = 2 * node + 1;
+    }
+  }
+
+  private void swap(ByteBuffer view, int first, int second, byte[] temp) {
+    view.get(first * recordSize, temp, 0, recordSize);
+    view.put(first * recordSize, view, second * recordSize, recordSize);
+    view.put(second * recordSize, temp, 0, recordSize);
+  }
+}
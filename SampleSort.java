@@ -0,0 +1,354 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntConsumer;
+
+/**
+ * Parallel sample sort for very large arrays. A random sample of the input is sorted and every
+ * OVERSAMPLING-th sample item becomes one of BUCKETS - 1 splitters. Chunks of the input are then
+ * classified in parallel by descending a splitter tree stored as an implicit array, where each
+ * level's comparison adds to the node index instead of branching on it. The bucket counts of every
+ * chunk give each item's place, the items are scattered into a buffer in parallel, and the buckets
+ * are sorted independently, objects with MergeSortImproved and primitives with IntrospectiveSort,
+ * and copied back. Unlike ParallelMergeSort there is no cascade of merges at the end: each item
+ * moves twice and the final position of every bucket is known before it is sorted.
+ *
+ * <p>Buckets receive about n / BUCKETS items each, except that all copies of a splitter that
+ * occurs many times in the input fall into the same bucket, so inputs with few distinct values
+ * parallelize poorly. Sorting is not stable.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ */
+public class SampleSort {
+
+  /** Arrays at or below this many items are sorted sequentially. */
+  public static final int CUTOFF = 1 << 16;
+
+  private static final int LOG_BUCKETS = 8;
+  private static final int BUCKETS = 1 << LOG_BUCKETS;
+
+  /** Sample items drawn per bucket. */
+  private static final int OVERSAMPLING = 16;
+
+  /** Smallest chunk of the input classified by one task. */
+  private static final int MIN_CHUNK = 1 << 14;
+
+  /**
+   * Sort the provided array on the common fork/join pool.
+   *
+   * @param items array to sort
+   */
+  public static <T extends Comparable<T>> void sampleSort(T[] items) {
+    sampleSort(items, Comparator.naturalOrder(), ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Sort the provided array on the given pool.
+   *
+   * @param items array to sort
+   * @param pool pool that runs the classification and bucket tasks
+   */
+  public static <T extends Comparable<T>> void sampleSort(T[] items, ForkJoinPool pool) {
+    sampleSort(items, Comparator.naturalOrder(), pool);
+  }
+
+  /**
+   * Sort the provided array on the given pool, ordering items with the given comparator.
+   *
+   * @param items array to sort
+   * @param comparator ordering to sort by
+   * @param pool pool that runs the classification and bucket tasks
+   */
+  public static <T> void sampleSort(T[] items, Comparator<? super T> comparator,
+      ForkJoinPool pool) {
+    int size = items.length;
+    if (size <= CUTOFF) {
+      MergeSortImproved.mergeSortAdaptive(items, comparator);
+      return;
+    }
+
+    // Every OVERSAMPLING-th item of a sorted random sample becomes a splitter, stored as an
+    // implicit binary search tree: the children of node j are 2j and 2j + 1.
+    T[] sample = Arrays.copyOf(items, BUCKETS * OVERSAMPLING);
+    Random random = ThreadLocalRandom.current();
+    for (int i = 0; i < sample.length; i++) {
+      sample[i] = items[random.nextInt(size)];
+    }
+    MergeSortImproved.mergeSortAdaptive(sample, comparator);
+    T[] tree = Arrays.copyOf(sample, BUCKETS);
+    buildTree(sample, tree, 1, 0, BUCKETS);
+
+    SortContext context = SortContext.acquire();
+    try {
+      T[] buffer = context.objects(size);
+      int chunks = chunkCount(size, pool);
+      byte[] oracle = new byte[size];
+      int[][] counts = new int[chunks][BUCKETS];
+      runAll(pool, chunks, chunk -> {
+        int[] count = counts[chunk];
+        int end = chunkStart(chunk + 1, chunks, size);
+        for (int i = chunkStart(chunk, chunks, size); i < end; i++) {
+          int node = 1;
+          for (int level = 0; level < LOG_BUCKETS; level++) {
+            node = 2 * node + (comparator.compare(items[i], tree[node]) > 0 ? 1 : 0);
+          }
+          oracle[i] = (byte) (node - BUCKETS);
+          count[node - BUCKETS]++;
+        }
+      });
+
+      int[] bucketStarts = offsets(counts);
+      runAll(pool, chunks, chunk -> {
+        int[] next = counts[chunk];
+        int end = chunkStart(chunk + 1, chunks, size);
+        for (int i = chunkStart(chunk, chunks, size); i < end; i++) {
+          buffer[next[oracle[i] & 0xff]++] = items[i];
+        }
+      });
+      if (SortMetrics.ENABLED) {
+        SortMetrics.moves(size);
+      }
+
+      runAll(pool, BUCKETS, bucket -> {
+        int start = bucketStarts[bucket];
+        int end = bucketStarts[bucket + 1] - 1;
+        MergeSortImproved.mergeSortAdaptive(buffer, start, end, comparator);
+        System.arraycopy(buffer, start, items, start, end - start + 1);
+      });
+      if (SortMetrics.ENABLED) {
+        SortMetrics.moves(size);
+      }
+    } finally {
+      context.release();
+    }
+  }
+
+  /**
+   * Fill the implicit tree below node with the splitters of buckets from..to-1: the node gets the
+   * splitter between the two halves, the last sample item of the lower half's final bucket.
+   */
+  private static <T> void buildTree(T[] sample, T[] tree, int node, int from, int to) {
+    if (to - from < 2) {
+      return;
+    }
+    int mid = (from + to) / 2;
+    tree[node] = sample[mid * OVERSAMPLING - 1];
+    buildTree(sample, tree, 2 * node, from, mid);
+    buildTree(sample, tree, 2 * node + 1, mid, to);
+  }
+
+  /**
+   * Sort the provided ints on the common fork/join pool.
+   *
+   * @param items array to sort
+   */
+  public static void sampleSort(int[] items) {
+    sampleSort(items, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Sort the provided ints on the given pool.
+   *
+   * @param items array to sort
+   * @param pool pool that runs the classification and bucket tasks
+   */
+  public static void sampleSort(int[] items, ForkJoinPool pool) {
+    int size = items.length;
+    if (size <= CUTOFF) {
+      IntrospectiveSort.introspectiveSort(items);
+      return;
+    }
+
+    int[] sample = new int[BUCKETS * OVERSAMPLING];
+    Random random = ThreadLocalRandom.current();
+    for (int i = 0; i < sample.length; i++) {
+      sample[i] = items[random.nextInt(size)];
+    }
+    IntrospectiveSort.introspectiveSort(sample);
+    int[] tree = new int[BUCKETS];
+    buildTree(sample, tree, 1, 0, BUCKETS);
+
+    SortContext context = SortContext.acquire();
+    try {
+      int[] buffer = context.ints(size);
+      int chunks = chunkCount(size, pool);
+      byte[] oracle = new byte[size];
+      int[][] counts = new int[chunks][BUCKETS];
+      runAll(pool, chunks, chunk -> {
+        int[] count = counts[chunk];
+        int end = chunkStart(chunk + 1, chunks, size);
+        for (int i = chunkStart(chunk, chunks, size); i < end; i++) {
+          int item = items[i];
+          int node = 1;
+          for (int level = 0; level < LOG_BUCKETS; level++) {
+            node = 2 * node + (item > tree[node] ? 1 : 0);
+          }
+          oracle[i] = (byte) (node - BUCKETS);
+          count[node - BUCKETS]++;
+        }
+      });
+
+      int[] bucketStarts = offsets(counts);
+      runAll(pool, chunks, chunk -> {
+        int[] next = counts[chunk];
+        int end = chunkStart(chunk + 1, chunks, size);
+        for (int i = chunkStart(chunk, chunks, size); i < end; i++) {
+          buffer[next[oracle[i] & 0xff]++] = items[i];
+        }
+      });
+
+      runAll(pool, BUCKETS, bucket -> {
+        int start = bucketStarts[bucket];
+        int end = bucketStarts[bucket + 1] - 1;
+        IntrospectiveSort.introspectiveSort(buffer, start, end);
+        System.arraycopy(buffer, start, items, start, end - start + 1);
+      });
+    } finally {
+      context.release();
+    }
+  }
+
+  private static void buildTree(int[] sample, int[] tree, int node, int from, int to) {
+    if (to - from < 2) {
+      return;
+    }
+    int mid = (from + to) / 2;
+    tree[node] = sample[mid * OVERSAMPLING - 1];
+    buildTree(sample, tree, 2 * node, from, mid);
+    buildTree(sample, tree, 2 * node + 1, mid, to);
+  }
+
+  /**
+   * Sort the provided longs on the common fork/join pool.
+   *
+   * @param items array to sort
+   */
+  public static void sampleSort(long[] items) {
+    sampleSort(items, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Sort the provided longs on the given pool.
+   *
+   * @param items array to sort
+   * @param pool pool that runs the classification and bucket tasks
+   */
+  public static void sampleSort(long[] items, ForkJoinPool pool) {
+    int size = items.length;
+    if (size <= CUTOFF) {
+      IntrospectiveSort.introspectiveSort(items);
+      return;
+    }
+
+    long[] sample = new long[BUCKETS * OVERSAMPLING];
+    Random random = ThreadLocalRandom.current();
+    for (int i = 0; i < sample.length; i++) {
+      sample[i] = items[random.nextInt(size)];
+    }
+    IntrospectiveSort.introspectiveSort(sample);
+    long[] tree = new long[BUCKETS];
+    buildTree(sample, tree, 1, 0, BUCKETS);
+
+    SortContext context = SortContext.acquire();
+    try {
+      long[] buffer = context.longs(size);
+      int chunks = chunkCount(size, pool);
+      byte[] oracle = new byte[size];
+      int[][] counts = new int[chunks][BUCKETS];
+      runAll(pool, chunks, chunk -> {
+        int[] count = counts[chunk];
+        int end = chunkStart(chunk + 1, chunks, size);
+        for (int i = chunkStart(chunk, chunks, size); i < end; i++) {
+          long item = items[i];
+          int node = 1;
+          for (int level = 0; level < LOG_BUCKETS; level++) {
+            node = 2 * node + (item > tree[node] ? 1 : 0);
+          }
+          oracle[i] = (byte) (node - BUCKETS);
+          count[node - BUCKETS]++;
+        }
+      });
+
+      int[] bucketStarts = offsets(counts);
+      runAll(pool, chunks, chunk -> {
+        int[] next = counts[chunk];
+        int end = chunkStart(chunk + 1, chunks, size);
+        for (int i = chunkStart(chunk, chunks, size); i < end; i++) {
+          buffer[next[oracle[i] & 0xff]++] = items[i];
+        }
+      });
+
+      runAll(pool, BUCKETS, bucket -> {
+        int start = bucketStarts[bucket];
+        int end = bucketStarts[bucket + 1] - 1;
+        IntrospectiveSort.introspectiveSort(buffer, start, end);
+        System.arraycopy(buffer, start, items, start, end - start + 1);
+      });
+    } finally {
+      context.release();
+    }
+  }
+
+  private static void buildTree(long[] sample, long[] tree, int node, int from, int to) {
+    if (to - from < 2) {
+      return;
+    }
+    int mid = (from + to) / 2;
+    tree[node] = sample[mid * OVERSAMPLING - 1];
+    buildTree(sample, tree, 2 * node, from, mid);
+    buildTree(sample, tree, 2 * node + 1, mid, to);
+  }
+
+  /**
+   * Run task(0) .. task(count - 1) on the pool and wait for all of them.
+   */
+  private static void runAll(ForkJoinPool pool, int count, IntConsumer task) {
+    List<ForkJoinTask<?>> tasks = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      int index = i;
+      tasks.add(ForkJoinTask.adapt(() -> task.accept(index)));
+    }
+    pool.invoke(ForkJoinTask.adapt(() -> {
+      ForkJoinTask.invokeAll(tasks);
+    }));
+  }
+
+  /**
+   * Return the number of chunks to classify in parallel: a few per worker, so that a slow worker
+   * does not hold up the rest, but none smaller than MIN_CHUNK.
+   */
+  private static int chunkCount(int size, ForkJoinPool pool) {
+    return Math.max(1, Math.min(4 * pool.getParallelism(), size / MIN_CHUNK));
+  }
+
+  private static int chunkStart(int chunk, int chunks, int size) {
+    return (int) ((long) size * chunk / chunks);
+  }
+
+  /**
+   * Replace each chunk's bucket counts with the position where the chunk's first item of that
+   * bucket goes: buckets are laid out in order, and within a bucket the chunks are.
+   *
+   * @return the start of each bucket, followed by the total size
+   */
+  private static int[] offsets(int[][] counts) {
+    int[] bucketStarts = new int[BUCKETS + 1];
+    int position = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      bucketStarts[bucket] = position;
+      for (int[] count : counts) {
+        int items = count[bucket];
+        count[bucket] = position;
+        position += items;
+      }
+    }
+    bucketStarts[BUCKETS] = position;
+    return bucketStarts;
+  }
+}
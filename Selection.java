@@ -0,0 +1,227 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Selection and partial sorting, for when only the k smallest items, the k largest or a single
+ * order statistic such as the median is needed. These cost O(n) or O(n + k log k) instead of the
+ * O(n log n) of a full sort.
+ *
+ * <p>nthElement is an introselect: it partitions with QuickSort.partition, keeping only the side
+ * that holds the wanted position. Whenever the region fails to halve within a few partitions, as on
+ * adversarial input such as Generators.generateEvil, it pivots on the median of medians until it
+ * does, which guarantees linear time.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ */
+public class Selection {
+
+  /** Regions at or below this size are finished with insertion sort. */
+  private static final int INSERTION_THRESHOLD = 16;
+
+  /** Partitions allowed to leave the region more than half its earlier size. */
+  private static final int MAX_STALLED = 2;
+
+  /**
+   * Rearrange the items so that items[n] is the item that would be there if the array were sorted,
+   * with no greater item before it and no smaller item after it.
+   *
+   * @param items array of items
+   * @param n index of the item to select
+   * @throws IllegalArgumentException if n is not an index of the array
+   */
+  public static <T extends Comparable<T>> void nthElement(T[] items, int n) {
+    nthElement(items, n, Comparator.naturalOrder());
+  }
+
+  /**
+   * Rearrange the items so that items[n] is the item that would be there if the array were sorted
+   * with the given comparator, with no greater item before it and no smaller item after it.
+   *
+   * @param items array of items
+   * @param n index of the item to select
+   * @param comparator ordering to select by
+   * @throws IllegalArgumentException if n is not an index of the array
+   */
+  public static <T> void nthElement(T[] items, int n, Comparator<? super T> comparator) {
+    if (n < 0 || n >= items.length) {
+      throw new IllegalArgumentException("Index must be within the array.");
+    }
+    select(items, 0, items.length - 1, n, false, comparator);
+  }
+
+  /**
+   * Sort the k smallest items into items[0..k-1]. The order of the remaining items is unspecified.
+   *
+   * @param items array of items
+   * @param k number of items to sort into place
+   * @throws IllegalArgumentException if k is negative or larger than the array
+   */
+  public static <T extends Comparable<T>> void partialSort(T[] items, int k) {
+    partialSort(items, k, Comparator.naturalOrder());
+  }
+
+  /**
+   * Sort the k smallest items, by the given comparator, into items[0..k-1]. The order of the
+   * remaining items is unspecified.
+   *
+   * @param items array of items
+   * @param k number of items to sort into place
+   * @param comparator ordering to sort by
+   * @throws IllegalArgumentException if k is negative or larger than the array
+   */
+  public static <T> void partialSort(T[] items, int k, Comparator<? super T> comparator) {
+    if (k < 0 || k > items.length) {
+      throw new IllegalArgumentException("k must be between 0 and the number of items.");
+    }
+    if (k == 0) {
+      return;
+    }
+    if (k < items.length) {
+      nthElement(items, k - 1, comparator);
+    }
+    IntrospectiveSort.introspectiveSort(items, 0, k - 1, comparator);
+  }
+
+  /**
+   * Return the k largest items, largest first, reading the input once and keeping at most k items
+   * in a heap, so the input may be a stream far larger than memory. Equal items keep no particular
+   * order.
+   *
+   * @param items the input
+   * @param k number of items to keep
+   * @return the k largest items, or all of them if there are fewer, in descending order
+   * @throws IllegalArgumentException if k is negative
+   */
+  public static <T extends Comparable<T>> List<T> topK(Iterable<? extends T> items, int k) {
+    return topK(items, k, Comparator.naturalOrder());
+  }
+
+  /**
+   * Return the k largest items by the given comparator, largest first, keeping at most k items in a
+   * heap. Pass a reversed comparator for the k smallest.
+   *
+   * @param items the input
+   * @param k number of items to keep
+   * @param comparator ordering to rank by
+   * @return the k largest items, or all of them if there are fewer, in descending order
+   * @throws IllegalArgumentException if k is negative
+   */
+  public static <T> List<T> topK(Iterable<? extends T> items, int k,
+      Comparator<? super T> comparator) {
+    if (k < 0) {
+      throw new IllegalArgumentException("k must not be negative.");
+    }
+    // A min-heap of the largest items so far: its root is the one the next larger item replaces.
+    List<T> heap = new ArrayList<>();
+    if (k == 0) {
+      return heap;
+    }
+    for (T item : items) {
+      if (heap.size() < k) {
+        heap.add(item);
+        siftUp(heap, heap.size() - 1, comparator);
+      } else if (comparator.compare(item, heap.get(0)) > 0) {
+        heap.set(0, item);
+        siftDown(heap, 0, heap.size(), comparator);
+      }
+    }
+
+    // Pop the minimum into the slot the shrinking heap vacates, leaving the largest first.
+    for (int size = heap.size() - 1; size > 0; size--) {
+      T smallest = heap.get(0);
+      heap.set(0, heap.get(size));
+      heap.set(size, smallest);
+      siftDown(heap, 0, size, comparator);
+    }
+    return heap;
+  }
+
+  /**
+   * Narrow items[left..right] down to the position n, partitioning around the middle item until
+   * the region stops halving often enough, and around the median of medians while it does not or
+   * when guaranteed is set.
+   */
+  private static <T> void select(T[] items, int left, int right, int n, boolean guaranteed,
+      Comparator<? super T> comparator) {
+    int halvedFrom = right - left + 1;
+    int stalled = 0;
+    while (right - left + 1 > INSERTION_THRESHOLD) {
+      if (guaranteed || stalled > MAX_STALLED) {
+        // QuickSort.partition pivots on the middle item, so put the guaranteed pivot there.
+        swap(items, medianOfMedians(items, left, right, comparator), left + (right - left) / 2);
+      }
+      int split = QuickSort.partition(items, left, right, comparator);
+      if (n <= split) {
+        right = split;
+      } else {
+        left = split + 1;
+      }
+
+      if (right - left + 1 <= halvedFrom / 2) {
+        halvedFrom = right - left + 1;
+        stalled = 0;
+      } else {
+        stalled++;
+      }
+    }
+    BasicSorts.insertionSubsort(items, left, right, comparator);
+  }
+
+  /**
+   * Return the index of an item of items[left..right] that has at least about 3/10 of the region
+   * on either side of it: the median of the medians of groups of five, which are gathered at the
+   * start of the region.
+   */
+  private static <T> int medianOfMedians(T[] items, int left, int right,
+      Comparator<? super T> comparator) {
+    int medians = 0;
+    for (int group = left; group <= right; group += 5) {
+      int groupEnd = Math.min(group + 4, right);
+      BasicSorts.insertionSubsort(items, group, groupEnd, comparator);
+      swap(items, left + medians, group + (groupEnd - group) / 2);
+      medians++;
+    }
+    int middle = left + (medians - 1) / 2;
+    select(items, left, left + medians - 1, middle, true, comparator);
+    return middle;
+  }
+
+  private static <T> void siftUp(List<T> heap, int node, Comparator<? super T> comparator) {
+    T item = heap.get(node);
+    while (node > 0) {
+      int parent = (node - 1) / 2;
+      if (comparator.compare(item, heap.get(parent)) >= 0) {
+        break;
+      }
+      heap.set(node, heap.get(parent));
+      node = parent;
+    }
+    heap.set(node, item);
+  }
+
+  private static <T> void siftDown(List<T> heap, int node, int size,
+      Comparator<? super T> comparator) {
+    T item = heap.get(node);
+    int child = 2 * node + 1;
+    while (child < size) {
+      if (child + 1 < size && comparator.compare(heap.get(child + 1), heap.get(child)) < 0) {
+        child++;
+      }
+      if (comparator.compare(item, heap.get(child)) <= 0) {
+        break;
+      }
+      heap.set(node, heap.get(child));
+      node = child;
+      child = 2 * node + 1;
+    }
+    heap.set(node, item);
+  }
+
+  private static <T> void swap(T[] items, int i, int j) {
+    T temp = items[i];
+    items[i] = items[j];
+    items[j] = temp;
+  }
+}
@@ -0,0 +1,69 @@
+/**
+ * Leaf sorts for the small int and long regions that the recursive sorts stop splitting. When the
+ * JVM was started with --add-modules jdk.incubator.vector, regions of up to VectorSorts.MAX_SIZE
+ * items are sorted by the vectorized networks of {@link VectorSorts}; otherwise, and for regions
+ * too small to gain from them, they are insertion sorted.
+ *
+ * <p>The networks can be switched off with -Dsortvector.enabled=false, for comparison or on a
+ * machine whose JIT does not compile the Vector API to SIMD instructions.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ */
+public class SmallSorts {
+  /**
+   * Whether the vectorized networks are in use. Fixed when this class is initialized.
+   */
+  public static final boolean VECTORIZED = vectorAvailable();
+
+  /**
+   * Regions below this size are insertion sorted even when the networks are available.
+   */
+  private static final int MIN_VECTOR_SIZE = 16;
+
+  /**
+   * Sort only the given window of the array in place.
+   *
+   * @param items The array to partially sort.
+   * @param start The inclusive starting index of the window.
+   * @param end The inclusive ending index of the window.
+   */
+  public static void subsort(int[] items, int start, int end) {
+    int size = end - start + 1;
+    if (VECTORIZED && size >= MIN_VECTOR_SIZE && size <= VectorSorts.MAX_SIZE) {
+      VectorSorts.sortSmall(items, start, end);
+    } else {
+      BasicSorts.insertionSubsort(items, start, end);
+    }
+  }
+
+  /**
+   * Sort only the given window of the array in place.
+   *
+   * @param items The array to partially sort.
+   * @param start The inclusive starting index of the window.
+   * @param end The inclusive ending index of the window.
+   */
+  public static void subsort(long[] items, int start, int end) {
+    int size = end - start + 1;
+    if (VECTORIZED && size >= MIN_VECTOR_SIZE && size <= VectorSorts.MAX_SIZE) {
+      VectorSorts.sortSmall(items, start, end);
+    } else {
+      BasicSorts.insertionSubsort(items, start, end);
+    }
+  }
+
+  /**
+   * Return whether the Vector API module is resolved and gives vectors of at least four ints. The
+   * module is checked first so that VectorSorts is never loaded without it.
+   */
+  private static boolean vectorAvailable() {
+    if (!Boolean.parseBoolean(System.getProperty("sortvector.enabled", "true"))) {
+      return false;
+    }
+    if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+      return false;
+    }
+    return VectorSorts.intLanes() >= 4;
+  }
+}
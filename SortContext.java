@@ -0,0 +1,167 @@
+import java.util.Arrays;
+
+/**
+ * Reusable scratch space for sorts that need auxiliary arrays. A sort asks its context for a
+ * buffer once, up front, and threads that buffer through every recursive call, so a context that
+ * has already grown to the needed size makes the sort allocation free.
+ *
+ * <p>Callers can create and pass their own context, or borrow the calling thread's cached one with
+ * {@link #acquire()} and hand it back with {@link #release()}. Buffers grow in power-of-two size
+ * classes; buffers above {@link #MAX_CACHED_LENGTH} are dropped on release rather than kept alive
+ * by the thread. A context is not thread safe, and a thread whose cached context is already in use
+ * (for example by a compareTo that sorts) is given a fresh one.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ */
+public class SortContext {
+
+  /** Largest buffer length a thread's cached context keeps between sorts. */
+  public static final int MAX_CACHED_LENGTH = 1 << 20;
+
+  private static final ThreadLocal<SortContext> CACHED = ThreadLocal.withInitial(SortContext::new);
+
+  private Object[] objects = new Object[0];
+  private int objectsUsed;
+  private int[] ints = new int[0];
+  private long[] longs = new long[0];
+  private double[] doubles = new double[0];
+  private boolean cached;
+  private boolean inUse;
+
+  /**
+   * Create an empty context. Buffers are allocated the first time they are requested.
+   */
+  public SortContext() {
+  }
+
+  /**
+   * Create a context whose object buffer already holds the given number of items.
+   *
+   * @param capacity initial object buffer length
+   */
+  public SortContext(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Capacity cannot be negative.");
+    }
+    objects = new Object[capacity];
+  }
+
+  /**
+   * Borrow the calling thread's cached context, or a fresh context if the cached one is in use.
+   * Every call must be paired with {@link #release()}.
+   *
+   * @return a context for the duration of one sort
+   */
+  public static SortContext acquire() {
+    SortContext context = CACHED.get();
+    if (context.inUse) {
+      context = new SortContext();
+    } else {
+      context.cached = true;
+    }
+    context.inUse = true;
+    return context;
+  }
+
+  /**
+   * Return a borrowed context. Object references left in the buffer are cleared so the context
+   * does not keep sorted items reachable, and oversized buffers are dropped.
+   */
+  public void release() {
+    Arrays.fill(objects, 0, objectsUsed, null);
+    objectsUsed = 0;
+    if (cached) {
+      if (objects.length > MAX_CACHED_LENGTH) {
+        objects = new Object[0];
+      }
+      if (ints.length > MAX_CACHED_LENGTH) {
+        ints = new int[0];
+      }
+      if (longs.length > MAX_CACHED_LENGTH) {
+        longs = new long[0];
+      }
+      if (doubles.length > MAX_CACHED_LENGTH) {
+        doubles = new double[0];
+      }
+    }
+    inUse = false;
+  }
+
+  /**
+   * Return an object buffer with at least the given length.
+   *
+   * @param length required length
+   * @return the buffer, which may be longer than requested
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T[] objects(int length) {
+    if (SortMetrics.ENABLED) {
+      SortMetrics.scratch(length);
+    }
+    if (objects.length < length) {
+      objects = new Object[sizeClass(length)];
+    }
+    objectsUsed = Math.max(objectsUsed, length);
+    return (T[]) objects;
+  }
+
+  /**
+   * Return an int buffer with at least the given length.
+   *
+   * @param length required length
+   * @return the buffer, which may be longer than requested
+   */
+  public int[] ints(int length) {
+    if (SortMetrics.ENABLED) {
+      SortMetrics.scratch(length);
+    }
+    if (ints.length < length) {
+      ints = new int[sizeClass(length)];
+    }
+    return ints;
+  }
+
+  /**
+   * Return a long buffer with at least the given length.
+   *
+   * @param length required length
+   * @return the buffer, which may be longer than requested
+   */
+  public long[] longs(int length) {
+    if (SortMetrics.ENABLED) {
+      SortMetrics.scratch(length);
+    }
+    if (longs.length < length) {
+      longs = new long[sizeClass(length)];
+    }
+    return longs;
+  }
+
+  /**
+   * Return a double buffer with at least the given length.
+   *
+   * @param length required length
+   * @return the buffer, which may be longer than requested
+   */
+  public double[] doubles(int length) {
+    if (SortMetrics.ENABLED) {
+      SortMetrics.scratch(length);
+    }
+    if (doubles.length < length) {
+      doubles = new double[sizeClass(length)];
+    }
+    return doubles;
+  }
+
+  /**
+   * Round a length up to the next power of two, or return it unchanged if that would overflow.
+   */
+  private static int sizeClass(int length) {
+    int rounded = Integer.highestOneBit(length);
+    if (rounded == length || rounded >= 1 << 30) {
+      return length;
+    }
+    return rounded << 1;
+  }
+}
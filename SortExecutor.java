@@ -0,0 +1,297 @@
+import java.util.Comparator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sorts many small arrays asynchronously on a pool of worker threads, for callers that would
+ * otherwise make one sort call per array on their own threads. Each submitted array is sorted in
+ * place and its future completes with the same array.
+ *
+ * <p>Jobs are queued by size class, and a worker drains a batch of jobs of one class at a time, up
+ * to a fixed number of elements, so the per-task overhead is shared by the batch and a batch of
+ * tiny arrays never waits behind a large one. While the pool keeps up every job is its own batch;
+ * as jobs pile up the batches fill. Each class is drained by at most as many workers as the pool
+ * has, and idle workers steal from busy ones. A batch sorts with the worker's cached SortContext,
+ * so the workers' scratch buffers are reused from job to job.
+ *
+ * <p>At most the given capacity of jobs may be queued or running at once; submit blocks until
+ * there is room, which pushes back on callers that submit faster than the pool sorts. Object
+ * arrays are sorted stably with the adaptive merge sort, primitive arrays with PdqSort.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ */
+public class SortExecutor implements AutoCloseable {
+
+  /** Number of jobs that may be queued or running when no capacity is given. */
+  public static final int DEFAULT_CAPACITY = 1 << 14;
+
+  /** Largest array of each size class; arrays above the last form one more class. */
+  private static final int[] CLASS_LIMITS = {64, 1024, 16384};
+
+  /** A worker stops taking jobs into a batch once it holds this many elements. */
+  private static final int BATCH_ELEMENTS = 1 << 15;
+
+  /**
+   * A queued sort.
+   */
+  private interface Job {
+    int size();
+
+    /**
+     * Sort the array and complete the job's future, exceptionally if the sort throws.
+     */
+    void run(SortContext context);
+  }
+
+  /**
+   * The queue of one size class and the number of workers draining it.
+   */
+  private static class SizeClass {
+    private final Queue<Job> jobs = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger drains = new AtomicInteger();
+  }
+
+  private final ForkJoinPool pool;
+  private final int parallelism;
+  private final int capacity;
+  private final Semaphore slots;
+  private final SizeClass[] classes;
+  private volatile boolean closed;
+
+  /**
+   * Create an executor with a worker per processor and the default capacity.
+   */
+  public SortExecutor() {
+    this(Runtime.getRuntime().availableProcessors(), DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Create an executor.
+   *
+   * @param parallelism number of worker threads
+   * @param capacity number of jobs that may be queued or running at once
+   * @throws IllegalArgumentException if either number is not positive
+   */
+  public SortExecutor(int parallelism, int capacity) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be positive.");
+    }
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be positive.");
+    }
+    // Async mode runs queued batches in submission order rather than newest first.
+    this.pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+        null, true);
+    this.parallelism = parallelism;
+    this.capacity = capacity;
+    this.slots = new Semaphore(capacity);
+    this.classes = new SizeClass[CLASS_LIMITS.length + 1];
+    for (int i = 0; i < classes.length; i++) {
+      classes[i] = new SizeClass();
+    }
+  }
+
+  /**
+   * Sort the items asynchronously, blocking while the executor is full.
+   *
+   * @param items array to sort
+   * @return a future completed with the sorted array
+   * @throws IllegalStateException if the executor has been closed
+   */
+  public <T extends Comparable<T>> CompletableFuture<T[]> submit(T[] items) {
+    return submit(items, Comparator.naturalOrder());
+  }
+
+  /**
+   * Sort the items with the given comparator asynchronously, blocking while the executor is full.
+   *
+   * @param items array to sort
+   * @param comparator ordering to sort by
+   * @return a future completed with the sorted array, or with the comparator's exception
+   * @throws IllegalStateException if the executor has been closed
+   */
+  public <T> CompletableFuture<T[]> submit(T[] items, Comparator<? super T> comparator) {
+    CompletableFuture<T[]> future = new CompletableFuture<>();
+    enqueue(future, new Job() {
+      @Override
+      public int size() {
+        return items.length;
+      }
+
+      @Override
+      public void run(SortContext context) {
+        try {
+          MergeSortImproved.mergeSortAdaptive(items, comparator, context);
+          future.complete(items);
+        } catch (Throwable exception) {
+          future.completeExceptionally(exception);
+        }
+      }
+    });
+    return future;
+  }
+
+  /**
+   * Sort the ints asynchronously, blocking while the executor is full.
+   *
+   * @param items array to sort
+   * @return a future completed with the sorted array
+   * @throws IllegalStateException if the executor has been closed
+   */
+  public CompletableFuture<int[]> submit(int[] items) {
+    CompletableFuture<int[]> future = new CompletableFuture<>();
+    enqueue(future, new Job() {
+      @Override
+      public int size() {
+        return items.length;
+      }
+
+      @Override
+      public void run(SortContext context) {
+        try {
+          PdqSort.pdqSort(items);
+          future.complete(items);
+        } catch (Throwable exception) {
+          future.completeExceptionally(exception);
+        }
+      }
+    });
+    return future;
+  }
+
+  /**
+   * Sort the longs asynchronously, blocking while the executor is full.
+   *
+   * @param items array to sort
+   * @return a future completed with the sorted array
+   * @throws IllegalStateException if the executor has been closed
+   */
+  public CompletableFuture<long[]> submit(long[] items) {
+    CompletableFuture<long[]> future = new CompletableFuture<>();
+    enqueue(future, new Job() {
+      @Override
+      public int size() {
+        return items.length;
+      }
+
+      @Override
+      public void run(SortContext context) {
+        try {
+          PdqSort.pdqSort(items);
+          future.complete(items);
+        } catch (Throwable exception) {
+          future.completeExceptionally(exception);
+        }
+      }
+    });
+    return future;
+  }
+
+  /**
+   * Return the number of jobs submitted and not yet finished.
+   *
+   * @return the number of queued and running jobs
+   */
+  public int pending() {
+    return capacity - slots.availablePermits();
+  }
+
+  /**
+   * Stop accepting jobs, wait for the submitted ones to finish and stop the workers.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    slots.acquireUninterruptibly(capacity);
+    slots.release(capacity);
+    pool.shutdown();
+  }
+
+  /**
+   * Take a slot for the job, waiting for one if the executor is full, and queue it in its size
+   * class. If the waiting thread is interrupted the future fails instead.
+   */
+  private void enqueue(CompletableFuture<?> future, Job job) {
+    if (closed) {
+      throw new IllegalStateException("The executor has been closed.");
+    }
+    try {
+      slots.acquire();
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      future.completeExceptionally(exception);
+      return;
+    }
+    if (closed) {
+      slots.release();
+      throw new IllegalStateException("The executor has been closed.");
+    }
+
+    SizeClass sizeClass = classes[classOf(job.size())];
+    sizeClass.jobs.add(job);
+    startDrain(sizeClass);
+  }
+
+  /**
+   * Start another worker on the size class unless as many as the pool has already drain it.
+   */
+  private void startDrain(SizeClass sizeClass) {
+    int drains = sizeClass.drains.get();
+    while (drains < parallelism) {
+      if (sizeClass.drains.compareAndSet(drains, drains + 1)) {
+        pool.execute(() -> drain(sizeClass));
+        return;
+      }
+      drains = sizeClass.drains.get();
+    }
+  }
+
+  /**
+   * Run one batch from the size class, then requeue this drain if jobs remain, so that the classes
+   * take turns on the workers. Each job's slot is released, and the drain is retired, even if a
+   * job throws.
+   */
+  private void drain(SizeClass sizeClass) {
+    boolean requeue = false;
+    SortContext context = SortContext.acquire();
+    try {
+      int elements = 0;
+      Job job;
+      while (elements < BATCH_ELEMENTS && (job = sizeClass.jobs.poll()) != null) {
+        try {
+          job.run(context);
+        } finally {
+          slots.release();
+        }
+        elements += Math.max(job.size(), 1);
+      }
+      requeue = !sizeClass.jobs.isEmpty();
+    } finally {
+      context.release();
+      if (!requeue) {
+        sizeClass.drains.decrementAndGet();
+        // A job queued after the last check may have found every drain busy.
+        if (!sizeClass.jobs.isEmpty()) {
+          startDrain(sizeClass);
+        }
+      }
+    }
+    if (requeue) {
+      pool.execute(() -> drain(sizeClass));
+    }
+  }
+
+  private static int classOf(int size) {
+    for (int i = 0; i < CLASS_LIMITS.length; i++) {
+      if (size <= CLASS_LIMITS[i]) {
+        return i;
+      }
+    }
+    return CLASS_LIMITS.length;
+  }
+}
@@ -0,0 +1,166 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Operation counts gathered while the generic sorts run: comparisons, element moves, maximum
+ * recursion depth and the balance of quicksort partitions, plus the bytes a thread allocates and
+ * the largest scratch buffer requested from a SortContext.
+ *
+ * <p>Counting is switched on for the whole run by starting the JVM with
+ * -Dsortmetrics.enabled=true (SortProfiler sets the property for its -o flag). ENABLED is a
+ * constant, so when it is false the JIT removes every guarded call and the sorts pay nothing.
+ * Comparisons are only counted for sorts that are handed a comparator from
+ * {@link #counting(Comparator)}; moves, depth and partitions are counted by the Comparator cores of
+ * BasicSorts, QuickSort, IntrospectiveSort, MergeSort, MergeSortImproved and ParallelMergeSort. The
+ * primitive engines are not instrumented, except that the scratch they take from a SortContext is
+ * recorded like that of every other sort.
+ *
+ * <p>Counters are shared by all threads, so a parallel sort is counted in full, and are cleared by
+ * {@link #reset()}.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ */
+public class SortMetrics {
+  /**
+   * Whether the sorts record metrics. Fixed when this class is initialized.
+   */
+  public static final boolean ENABLED = Boolean.getBoolean("sortmetrics.enabled");
+
+  private static final LongAdder COMPARISONS = new LongAdder();
+  private static final LongAdder MOVES = new LongAdder();
+  private static final AtomicInteger MAX_DEPTH = new AtomicInteger();
+  private static final AtomicInteger MAX_SCRATCH = new AtomicInteger();
+  private static final LongAdder PARTITIONS = new LongAdder();
+  private static final DoubleAdder IMBALANCE = new DoubleAdder();
+  private static final ThreadLocal<int[]> DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+
+  /**
+   * Clear every counter.
+   */
+  public static void reset() {
+    COMPARISONS.reset();
+    MOVES.reset();
+    MAX_DEPTH.set(0);
+    MAX_SCRATCH.set(0);
+    PARTITIONS.reset();
+    IMBALANCE.reset();
+  }
+
+  /**
+   * Wrap a comparator so that every comparison it makes is counted.
+   *
+   * @param comparator the ordering to count
+   * @return the counting comparator
+   */
+  public static <T> Comparator<T> counting(Comparator<T> comparator) {
+    return (a, b) -> {
+      COMPARISONS.increment();
+      return comparator.compare(a, b);
+    };
+  }
+
+  /**
+   * Record that the given number of elements were written into an array.
+   *
+   * @param count number of elements moved
+   */
+  public static void moves(long count) {
+    MOVES.add(count);
+  }
+
+  /**
+   * Record entry into a level of recursion on the calling thread. Pair with {@link #exit()}.
+   */
+  public static void enter() {
+    int depth = ++DEPTH.get()[0];
+    MAX_DEPTH.accumulateAndGet(depth, Math::max);
+  }
+
+  /**
+   * Record return from a level of recursion on the calling thread.
+   */
+  public static void exit() {
+    DEPTH.get()[0]--;
+  }
+
+  /**
+   * Record that a sort asked its SortContext for a scratch buffer of the given length.
+   *
+   * @param length number of elements requested
+   */
+  public static void scratch(int length) {
+    MAX_SCRATCH.accumulateAndGet(length, Math::max);
+  }
+
+  /**
+   * Record the sizes of the two sides produced by one partition.
+   *
+   * @param left number of items in the left side
+   * @param right number of items in the right side
+   */
+  public static void partition(int left, int right) {
+    PARTITIONS.increment();
+    IMBALANCE.add((double) Math.abs(left - right) / (left + right));
+  }
+
+  /**
+   * @return comparisons counted since the last reset
+   */
+  public static long comparisons() {
+    return COMPARISONS.sum();
+  }
+
+  /**
+   * @return element moves counted since the last reset
+   */
+  public static long moves() {
+    return MOVES.sum();
+  }
+
+  /**
+   * @return the deepest recursion reached on any thread since the last reset
+   */
+  public static int maxDepth() {
+    return MAX_DEPTH.get();
+  }
+
+  /**
+   * Return the length of the largest scratch buffer requested from a SortContext since the last
+   * reset. Sorts that allocate their own scratch arrays, such as MergeSort, are not included.
+   *
+   * @return the largest requested length, in elements
+   */
+  public static int maxScratch() {
+    return MAX_SCRATCH.get();
+  }
+
+  /**
+   * Return the mean imbalance of the partitions made since the last reset: the difference in size
+   * of the two sides over their total, from 0 for even splits towards 1 for the most lopsided.
+   *
+   * @return the mean imbalance, or 0 if there were no partitions
+   */
+  public static double imbalance() {
+    long partitions = PARTITIONS.sum();
+    return partitions == 0 ? 0 : IMBALANCE.sum() / partitions;
+  }
+
+  /**
+   * Return the total number of bytes the calling thread has allocated so far.
+   *
+   * @throws UnsupportedOperationException if the JVM cannot report per-thread allocation
+   */
+  public static long threadAllocatedBytes() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      throw new UnsupportedOperationException("Allocation measurement is not supported.");
+    }
+    return ((com.sun.management.ThreadMXBean) bean)
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+}
@@ -1,12 +1,31 @@
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
 import joptsimple.OptionException;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
@@ -21,15 +40,45 @@ import joptsimple.OptionSpec;
  */
 public class SortProfiler {
   private static final String[] ALL_SORT_NAMES = {"insertion", "selection", "merge", "merge_half",
-      "merge_adaptive", "quick", "introspective", "timsort"};
+      "merge_inplace", "merge_adaptive", "merge_natural", "merge_parallel", "sample", "quick",
+      "quick_3way", "quick_dual", "introspective", "timsort", "adaptive"};
+  /** Sorts that run on a fork/join pool; runs that include one are timed by wall clock. */
+  private static final Set<String> PARALLEL_SORT_NAMES = Set.of("merge_parallel", "sample",
+      "sample_int", "sample_long", "adaptive", "adaptive_int", "adaptive_long");
+  private static final int SELECTION_K = 100;
+  private static final int LOAD_INPUTS = 64;
+  private static final String SHARD_HEADER_NANOS = "n,sort,trial,nanos";
+  private static final String SHARD_HEADER_BYTES = "n,sort,trial,bytes";
+  private static final String[] METRIC_NAMES = {"cmp", "moves", "bytes", "scratch", "depth",
+      "imbalance"};
+
+  /**
+   * A sort under test. Every trial hands each sort the same boxed input; the sort copies it into
+   * the representation it works on and returns the work to be timed, so the copy (and any
+   * unboxing) stays outside the measurement. As a Function it can be handed to code outside the
+   * default package, such as the JMH benchmarks, which cannot name this type.
+   */
+  @FunctionalInterface
+  public interface ProfiledSort extends Function<Integer[], Runnable> {
+    Runnable prepare(Integer[] items);
+
+    @Override
+    default Runnable apply(Integer[] items) {
+      return prepare(items);
+    }
+  }
 
   private Generator gen;
-  private List<Sorter<Integer>> sorts;
+  private List<ProfiledSort> sorts;
   private List<String> sortNames;
   private int start;
   private int interval;
   private int max;
   private int trials;
+  private boolean wallClock;
+  private boolean measureAllocation;
+  private boolean recordMetrics;
+  private long seed;
 
   /**
    * Create a sort profiler object.
@@ -42,7 +91,7 @@ public class SortProfiler {
    * @param trials The number of trials
    * @param gen The sequence generator to use
    */
-  public SortProfiler(List<Sorter<Integer>> sorts, List<String> sortNames, int start, int interval,
+  public SortProfiler(List<ProfiledSort> sorts, List<String> sortNames, int start, int interval,
       int max, int trials, Generator gen) {
     if (start < 0) {
       throw new IllegalArgumentException("Start value cannot be negative.");
@@ -66,6 +115,38 @@ public class SortProfiler {
     this.trials = trials;
   }
 
+  /**
+   * Choose whether trials are timed by wall clock instead of the profiling thread's CPU time.
+   * Parallel sorts do most of their work on other threads, so only wall-clock time is meaningful
+   * for them.
+   *
+   * @param wallClock true to measure elapsed wall-clock time
+   */
+  public void setWallClock(boolean wallClock) {
+    this.wallClock = wallClock;
+  }
+
+  /**
+   * Choose whether to report the bytes allocated by the profiling thread during each sort instead
+   * of its running time. A sort that reuses a warmed-up SortContext should report zero.
+   *
+   * @param measureAllocation true to measure allocated bytes
+   */
+  public void setMeasureAllocation(boolean measureAllocation) {
+    this.measureAllocation = measureAllocation;
+  }
+
+  /**
+   * Choose whether to print the SortMetrics operation counts of each sort next to its time:
+   * comparisons, element moves, bytes allocated by the profiling thread, maximum recursion depth
+   * and mean partition imbalance. The sorts only count when SortMetrics.ENABLED is set.
+   *
+   * @param recordMetrics true to add the metrics columns
+   */
+  public void setRecordMetrics(boolean recordMetrics) {
+    this.recordMetrics = recordMetrics;
+  }
+
   /**
    * Run the required number of sorting trials and print the results.
    *
@@ -78,77 +159,731 @@ public class SortProfiler {
     out.print("N");
     for (int i = 0; i < sorts.size(); i++) {
       out.print(",\t" + sortNames.get(i));
+      if (recordMetrics) {
+        for (String metric : METRIC_NAMES) {
+          out.print(",\t" + sortNames.get(i) + "_" + metric);
+        }
+      }
     }
     out.print("\n");
 
-    // Warm up the JVM by doing some un-timed sorts...
-    for (int s = 0; s < sorts.size(); s++) {
-      for (int i = 0; i < 10000; i++) {
-        Integer[] items = gen.generate(100);
-        timeSort(sorts.get(s), items);
-      }
-    }
+    warmUp();
 
     for (int n = start; n <= max; n += interval) {
       // Gather the data for size n
       long[] sortTimeTotals = new long[sorts.size()];
+      double[][] metricTotals = new double[sorts.size()][METRIC_NAMES.length];
       for (int trial = 0; trial < trials; trial++) {
         Integer[] items = gen.generate(n);
         for (int s = 0; s < sorts.size(); s++) {
-          sortTimeTotals[s] += timeSort(sorts.get(s), items);
+          if (recordMetrics) {
+            sortTimeTotals[s] += measureWithMetrics(sorts.get(s), items, metricTotals[s]);
+          } else {
+            sortTimeTotals[s] += measure(sorts.get(s), items);
+          }
         }
       }
 
       // Print one row of data.
       out.print(n);
       for (int s = 0; s < sorts.size(); s++) {
-        double averageTime = (sortTimeTotals[s] / trials) / 1000000000.0;
-        out.format(",\t%.8f", averageTime);
+        printAverage(out, sortTimeTotals[s], trials, measureAllocation);
+        if (recordMetrics) {
+          for (int m = 0; m < METRIC_NAMES.length - 1; m++) {
+            out.format(",\t%d", Math.round(metricTotals[s][m] / trials));
+          }
+          out.format(",\t%.4f", metricTotals[s][METRIC_NAMES.length - 1] / trials);
+        }
       }
       out.print("\n");
     }
   }
 
+  /**
+   * Set the seed that parallel and sharded sweeps generate their inputs from. Every shard of one
+   * sweep must use the same seed.
+   *
+   * @param seed the seed
+   */
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * Print one table cell: the average of a total over a number of trials, as bytes or as seconds
+   * from nanoseconds.
+   */
+  private static void printAverage(PrintStream out, long total, long count, boolean bytes) {
+    if (bytes) {
+      out.format(",\t%d", total / count);
+    } else {
+      double averageTime = (total / count) / 1000000000.0;
+      out.format(",\t%.8f", averageTime);
+    }
+  }
+
+  /**
+   * Run the sweep on a pool of worker threads. Every (size, trial, sort) cell is measured once,
+   * by whichever worker takes it next; each worker warms up before taking cells and measures on
+   * its own thread, so CPU-time and allocation figures are not shared between workers. Workers
+   * should not outnumber the cores, and parallel sorts in the sweep will compete with them.
+   *
+   * <p>The input for a size and trial is generated from a random source seeded by the profiler's
+   * seed, the size and the trial, so every sort of a trial sees the same input whichever worker,
+   * shard or process measures it.
+   *
+   * <p>With one shard the usual table of averages is printed. Otherwise only every shardCount-th
+   * cell of the sweep, starting from shard, is measured, and the cells are printed one per line for
+   * {@link #mergeShards} to combine.
+   *
+   * @param outStream The results will be printed to this stream.
+   * @param workers number of worker threads
+   * @param shard zero-based index of the slice of the sweep to run
+   * @param shardCount number of slices the sweep is divided into
+   * @throws InterruptedException if interrupted while waiting for the workers
+   * @throws IllegalArgumentException if the worker or shard numbers are invalid, or metrics are
+   *         being recorded, since the metric counters are shared by all threads
+   */
+  public void runParallel(OutputStream outStream, int workers, int shard, int shardCount)
+      throws InterruptedException {
+    if (workers < 1) {
+      throw new IllegalArgumentException("Number of workers must be positive.");
+    }
+    if (shardCount < 1 || shard < 0 || shard >= shardCount) {
+      throw new IllegalArgumentException("Shard index is out of range.");
+    }
+    if (recordMetrics) {
+      throw new IllegalArgumentException("Metrics cannot be recorded by parallel workers.");
+    }
+    PrintStream out = new PrintStream(outStream);
+
+    // Cell c of the sweep is sort c % sorts, trial (c / sorts) % trials of the size c / cellsPerN.
+    int sizes = max < start ? 0 : (max - start) / interval + 1;
+    int cellsPerN = trials * sorts.size();
+    // Shards take cells round robin, rotated by one each trial so that a shard count that divides
+    // the number of sorts does not hand every trial of a sort to the same shard.
+    List<Integer> cells = new ArrayList<>();
+    for (int c = 0; c < sizes * cellsPerN; c++) {
+      if ((c + c / sorts.size()) % shardCount == shard) {
+        cells.add(c);
+      }
+    }
+
+    long[] results = new long[cells.size()];
+    AtomicInteger next = new AtomicInteger();
+    AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    Thread[] threads = new Thread[Math.min(workers, Math.max(cells.size(), 1))];
+    for (int w = 0; w < threads.length; w++) {
+      threads[w] = new Thread(() -> {
+        try {
+          warmUp();
+          for (int i = next.getAndIncrement(); i < cells.size(); i = next.getAndIncrement()) {
+            int cell = cells.get(i);
+            int n = start + cell / cellsPerN * interval;
+            int trial = cell % cellsPerN / sorts.size();
+            Integer[] items = gen.generate(n, new Random(seed + 1000003L * n + trial));
+            results[i] = measure(sorts.get(cell % sorts.size()), items);
+          }
+        } catch (RuntimeException exception) {
+          failure.compareAndSet(null, exception);
+          next.set(cells.size());
+        }
+      }, "profiler-worker-" + w);
+      threads[w].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+
+    if (shardCount > 1) {
+      out.print(measureAllocation ? SHARD_HEADER_BYTES : SHARD_HEADER_NANOS);
+      out.print("\n");
+      for (int i = 0; i < cells.size(); i++) {
+        int cell = cells.get(i);
+        out.format("%d,%s,%d,%d\n", start + cell / cellsPerN * interval,
+            sortNames.get(cell % sorts.size()), cell % cellsPerN / sorts.size(), results[i]);
+      }
+      out.flush();
+      return;
+    }
+
+    long[][] totals = new long[sizes][sorts.size()];
+    for (int i = 0; i < cells.size(); i++) {
+      int cell = cells.get(i);
+      totals[cell / cellsPerN][cell % sorts.size()] += results[i];
+    }
+    out.print("N");
+    for (String name : sortNames) {
+      out.print(",\t" + name);
+    }
+    out.print("\n");
+    for (int row = 0; row < sizes; row++) {
+      out.print(start + row * interval);
+      for (int s = 0; s < sorts.size(); s++) {
+        printAverage(out, totals[row][s], trials, measureAllocation);
+      }
+      out.print("\n");
+    }
+    out.flush();
+  }
+
+  /**
+   * Combine the cell files printed by sharded {@link #runParallel} runs into the usual table of
+   * averages. Sorts appear in the order they are first seen; a size a sort has no cells for is
+   * left blank.
+   *
+   * @param files the shard files
+   * @param outStream The table will be printed to this stream.
+   * @throws IOException if a file cannot be read
+   * @throws IllegalArgumentException if a file is not a shard file or the files measure
+   *         different units
+   */
+  public static void mergeShards(List<Path> files, OutputStream outStream) throws IOException {
+    String header = null;
+    Map<String, Map<Integer, long[]>> cells = new LinkedHashMap<>();
+    TreeSet<Integer> sizes = new TreeSet<>();
+    for (Path file : files) {
+      List<String> lines = Files.readAllLines(file);
+      if (lines.isEmpty()
+          || !(lines.get(0).equals(SHARD_HEADER_NANOS) || lines.get(0).equals(SHARD_HEADER_BYTES))
+          || (header != null && !header.equals(lines.get(0)))) {
+        throw new IllegalArgumentException("Not a matching shard file: " + file);
+      }
+      header = lines.get(0);
+      for (String line : lines.subList(1, lines.size())) {
+        String[] fields = line.split(",");
+        if (fields.length != 4) {
+          throw new IllegalArgumentException("Malformed line in " + file + ": " + line);
+        }
+        int n = Integer.parseInt(fields[0]);
+        long[] cell = cells.computeIfAbsent(fields[1], name -> new TreeMap<>())
+            .computeIfAbsent(n, size -> new long[2]);
+        cell[0] += Long.parseLong(fields[3]);
+        cell[1]++;
+        sizes.add(n);
+      }
+    }
+
+    PrintStream out = new PrintStream(outStream);
+    out.print("N");
+    for (String name : cells.keySet()) {
+      out.print(",\t" + name);
+    }
+    out.print("\n");
+    for (int n : sizes) {
+      out.print(n);
+      for (Map<Integer, long[]> bySize : cells.values()) {
+        long[] cell = bySize.get(n);
+        if (cell == null) {
+          out.print(",\t");
+        } else {
+          printAverage(out, cell[0], cell[1], SHARD_HEADER_BYTES.equals(header));
+        }
+      }
+      out.print("\n");
+    }
+    out.flush();
+  }
+
+  /**
+   * Run the required number of trials and print the distribution of each sort's latency at each
+   * input size, one record per sort and size. Every trial is timed by both wall clock and thread
+   * CPU time, and the collections the JVM reports between the start and end of a trial are
+   * attributed to it. Times are in nanoseconds; percentiles use the nearest-rank method.
+   *
+   * @param outStream The results will be printed to this stream.
+   * @param format "csv" for one comma-separated row per record or "json" for an array of objects
+   * @throws IllegalArgumentException if the format is not recognized
+   */
+  public void runDistribution(OutputStream outStream, String format) {
+    if (!format.equals("csv") && !format.equals("json")) {
+      throw new IllegalArgumentException("Unrecognized format.");
+    }
+    PrintStream out = new PrintStream(outStream);
+    boolean json = format.equals("json");
+    if (json) {
+      out.print("[");
+    } else {
+      out.print("n,sort,trials,wall_mean,wall_p50,wall_p90,wall_p99,wall_max,"
+          + "cpu_mean,cpu_p50,cpu_p90,cpu_p99,cpu_max,gc_count,gc_millis\n");
+    }
+
+    warmUp();
+
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    boolean first = true;
+    for (int n = start; n <= max; n += interval) {
+      long[][] wall = new long[sorts.size()][trials];
+      long[][] cpu = new long[sorts.size()][trials];
+      long[] gcCounts = new long[sorts.size()];
+      long[] gcMillis = new long[sorts.size()];
+      for (int trial = 0; trial < trials; trial++) {
+        Integer[] items = gen.generate(n);
+        for (int s = 0; s < sorts.size(); s++) {
+          Runnable work = sorts.get(s).prepare(items);
+          long gcCountBefore = 0;
+          long gcMillisBefore = 0;
+          for (GarbageCollectorMXBean collector : collectors) {
+            gcCountBefore += Math.max(collector.getCollectionCount(), 0);
+            gcMillisBefore += Math.max(collector.getCollectionTime(), 0);
+          }
+          long cpuStart = bean.getCurrentThreadCpuTime();
+          long wallStart = System.nanoTime();
+          work.run();
+          wall[s][trial] = System.nanoTime() - wallStart;
+          cpu[s][trial] = bean.getCurrentThreadCpuTime() - cpuStart;
+          for (GarbageCollectorMXBean collector : collectors) {
+            gcCounts[s] += Math.max(collector.getCollectionCount(), 0);
+            gcMillis[s] += Math.max(collector.getCollectionTime(), 0);
+          }
+          gcCounts[s] -= gcCountBefore;
+          gcMillis[s] -= gcMillisBefore;
+        }
+      }
+
+      for (int s = 0; s < sorts.size(); s++) {
+        Arrays.sort(wall[s]);
+        Arrays.sort(cpu[s]);
+        if (json) {
+          out.print(first ? "\n" : ",\n");
+          out.format("  {\"n\": %d, \"sort\": \"%s\", \"trials\": %d, \"wall\": %s, \"cpu\": %s,"
+              + " \"gcCount\": %d, \"gcMillis\": %d}", n, sortNames.get(s), trials,
+              jsonSummary(wall[s]), jsonSummary(cpu[s]), gcCounts[s], gcMillis[s]);
+        } else {
+          out.format("%d,%s,%d,%s,%s,%d,%d\n", n, sortNames.get(s), trials,
+              csvSummary(wall[s]), csvSummary(cpu[s]), gcCounts[s], gcMillis[s]);
+        }
+        first = false;
+      }
+    }
+    if (json) {
+      out.print("\n]\n");
+    }
+    out.flush();
+  }
+
+  /**
+   * Format the mean, p50, p90, p99 and max of sorted samples as comma-separated values.
+   */
+  private static String csvSummary(long[] sorted) {
+    return String.format("%d,%d,%d,%d,%d", mean(sorted), percentile(sorted, 50),
+        percentile(sorted, 90), percentile(sorted, 99), max(sorted));
+  }
+
+  /**
+   * Format the mean, p50, p90, p99 and max of sorted samples as a JSON object.
+   */
+  private static String jsonSummary(long[] sorted) {
+    return String.format("{\"mean\": %d, \"p50\": %d, \"p90\": %d, \"p99\": %d, \"max\": %d}",
+        mean(sorted), percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99),
+        max(sorted));
+  }
+
+  private static long mean(long[] samples) {
+    if (samples.length == 0) {
+      return 0;
+    }
+    long total = 0;
+    for (long sample : samples) {
+      total += sample;
+    }
+    return total / samples.length;
+  }
+
+  /**
+   * Return the nearest-rank percentile of the sorted samples, or 0 if there are none.
+   */
+  private static long percentile(long[] sorted, int percent) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+    return sorted[Math.max(rank, 1) - 1];
+  }
+
+  private static long max(long[] sorted) {
+    return sorted.length == 0 ? 0 : sorted[sorted.length - 1];
+  }
+
+  /**
+   * Warm up the JVM by doing some un-timed sorts.
+   */
+  private void warmUp() {
+    for (int s = 0; s < sorts.size(); s++) {
+      for (int i = 0; i < 10000; i++) {
+        Integer[] items = gen.generate(100);
+        measure(sorts.get(s), items);
+      }
+    }
+  }
+
+  /**
+   * Benchmark ExternalSort instead of the in-memory sorts. For each input size a temporary file of
+   * that many records is written, with keys from the generator, and sorted into a second file.
+   * Prints the average wall-clock seconds per sort and the throughput in MB/s of input sorted.
+   *
+   * @param outStream The results will be printed to this stream.
+   * @param recordSize bytes per record; the key occupies the first four
+   * @param memoryBudget memory budget of the external sort in bytes
+   * @param fanIn merge fan-in of the external sort
+   * @throws IOException if the temporary files cannot be written
+   */
+  public void runExternal(OutputStream outStream, int recordSize, long memoryBudget, int fanIn)
+      throws IOException {
+    PrintStream out = new PrintStream(outStream);
+    Path dir = Files.createTempDirectory("external");
+    Path input = dir.resolve("input.bin");
+    Path output = dir.resolve("output.bin");
+    try {
+      ExternalSort sorter = new ExternalSort(recordSize, 0, memoryBudget, fanIn, dir);
+      out.print("N,\tseconds,\tMB/s\n");
+      for (int n = start; n <= max; n += interval) {
+        long totalNanos = 0;
+        for (int trial = 0; trial < trials; trial++) {
+          writeRecords(input, gen.generateInts(n), recordSize);
+          long begin = System.nanoTime();
+          sorter.sort(input, output);
+          totalNanos += System.nanoTime() - begin;
+        }
+
+        double seconds = (totalNanos / trials) / 1000000000.0;
+        double megabytes = (double) n * recordSize / (1024 * 1024);
+        out.format("%d,\t%.8f,\t%.2f\n", n, seconds, megabytes / seconds);
+      }
+    } finally {
+      Files.deleteIfExists(input);
+      Files.deleteIfExists(output);
+      Files.delete(dir);
+    }
+  }
+
+  /**
+   * Benchmark RecordSort instead of the in-memory sorts. For each input size a direct buffer of
+   * that many records is filled, with signed keys from the generator in the first four bytes, and
+   * sorted three ways: in place, by index, and for its order alone. Prints the average wall-clock
+   * seconds of each.
+   *
+   * @param outStream The results will be printed to this stream.
+   * @param recordSize bytes per record; the key occupies the first four
+   * @throws IllegalArgumentException if the largest input does not fit in one buffer
+   */
+  public void runRecords(OutputStream outStream, int recordSize) {
+    PrintStream out = new PrintStream(outStream);
+    RecordSort sorter = new RecordSort(recordSize, 0, 4, true);
+    if ((long) max * recordSize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Records must fit in a single buffer.");
+    }
+    out.print("N,\tin_place,\tby_index,\torder\n");
+    for (int n = start; n <= max; n += interval) {
+      ByteBuffer records = ByteBuffer.allocateDirect(n * recordSize);
+      long[] totalNanos = new long[3];
+      for (int trial = 0; trial < trials; trial++) {
+        int[] keys = gen.generateInts(n);
+        for (int method = 0; method < totalNanos.length; method++) {
+          for (int i = 0; i < n; i++) {
+            records.putInt(i * recordSize, keys[i]);
+          }
+          long begin = System.nanoTime();
+          switch (method) {
+            case 0 -> sorter.sortInPlace(records);
+            case 1 -> sorter.sortByIndex(records);
+            default -> sorter.order(records);
+          }
+          totalNanos[method] += System.nanoTime() - begin;
+        }
+      }
+
+      out.format("%d", n);
+      for (long nanos : totalNanos) {
+        out.format(",\t%.8f", (nanos / trials) / 1000000000.0);
+      }
+      out.print("\n");
+    }
+  }
+
+  /**
+   * Generate a load of small sort jobs and run it two ways: one mergeSortAdaptive call per job on
+   * this thread, and submitted to a SortExecutor. For each input size prints the jobs sorted per
+   * second and the p50, p90, p99 and max latency in microseconds, from the time a job was due to
+   * its completion. Every job sorts a fresh copy of one of a few generated inputs.
+   *
+   * <p>Jobs fall due at the given rate, or all at once if it is 0, in which case they are issued as
+   * fast as the executor admits them and the latencies mostly measure time spent queued.
+   *
+   * @param outStream The results will be printed to this stream.
+   * @param jobs number of jobs per input size and way
+   * @param rate jobs issued per second, or 0 for no limit
+   * @param parallelism number of executor workers
+   * @throws InterruptedException if interrupted while waiting for the executor
+   */
+  public void runLoad(OutputStream outStream, int jobs, int rate, int parallelism)
+      throws InterruptedException {
+    if (jobs < 1) {
+      throw new IllegalArgumentException("Number of jobs must be positive.");
+    }
+    if (rate < 0) {
+      throw new IllegalArgumentException("Rate cannot be negative.");
+    }
+    PrintStream out = new PrintStream(outStream);
+    out.print("N,\tmode,\tjobs_per_sec,\tp50_micros,\tp90_micros,\tp99_micros,\tmax_micros\n");
+    try (SortExecutor executor = new SortExecutor(parallelism, SortExecutor.DEFAULT_CAPACITY)) {
+      for (int n = start; n <= max; n += interval) {
+        Integer[][] inputs = new Integer[LOAD_INPUTS][];
+        for (int i = 0; i < LOAD_INPUTS; i++) {
+          inputs[i] = gen.generate(n);
+        }
+        for (boolean pooled : new boolean[] {false, true}) {
+          if (n == start) {
+            // Let the JIT compile this way's sort before anything is timed.
+            runLoad(inputs, new long[jobs], rate, pooled ? executor : null);
+          }
+          long[] latencies = new long[jobs];
+          long elapsed = runLoad(inputs, latencies, rate, pooled ? executor : null);
+          Arrays.sort(latencies);
+          out.format("%d,\t%s,\t%.0f,\t%.1f,\t%.1f,\t%.1f,\t%.1f\n", n,
+              pooled ? "executor" : "direct", jobs / (elapsed / 1000000000.0),
+              percentile(latencies, 50) / 1000.0, percentile(latencies, 90) / 1000.0,
+              percentile(latencies, 99) / 1000.0, max(latencies) / 1000.0);
+        }
+      }
+    }
+    out.flush();
+  }
+
+  /**
+   * Sort one job per latency slot, directly if the executor is null, recording each job's latency
+   * in nanoseconds, and return the nanoseconds taken by all of them. A job issued late because
+   * earlier ones held this thread up is charged for the wait from when it was due.
+   */
+  private static long runLoad(Integer[][] inputs, long[] latencies, int rate,
+      SortExecutor executor) throws InterruptedException {
+    CountDownLatch done = new CountDownLatch(latencies.length);
+    long begin = System.nanoTime();
+    for (int job = 0; job < latencies.length; job++) {
+      Integer[] items = inputs[job % inputs.length].clone();
+      long now = System.nanoTime();
+      long due = rate > 0 ? begin + job * 1000000000L / rate : now;
+      if (due > now) {
+        // Oversleeping is this thread's fault, not the job's, so time from waking up.
+        LockSupport.parkNanos(due - now);
+        due = System.nanoTime();
+      }
+      long submitted = due;
+      if (executor == null) {
+        MergeSortImproved.mergeSortAdaptive(items);
+        latencies[job] = System.nanoTime() - submitted;
+        done.countDown();
+      } else {
+        int slot = job;
+        executor.submit(items).whenComplete((sorted, failure) -> {
+          latencies[slot] = System.nanoTime() - submitted;
+          done.countDown();
+        });
+      }
+    }
+    done.await();
+    return System.nanoTime() - begin;
+  }
+
+  /**
+   * Write one fixed-width record per key, with the key in the first four bytes.
+   */
+  private static void writeRecords(Path file, int[] keys, int recordSize) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer buffer = ByteBuffer.allocate(Math.max(recordSize, 1 << 20) / recordSize
+          * recordSize);
+      for (int key : keys) {
+        if (buffer.remaining() < recordSize) {
+          buffer.flip();
+          while (buffer.hasRemaining()) {
+            channel.write(buffer);
+          }
+          buffer.clear();
+        }
+        buffer.putInt(key);
+        buffer.position(buffer.position() + recordSize - 4);
+      }
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+  }
+
+  /**
+   * Measure one sort of the provided items in the configured unit: nanoseconds or bytes.
+   */
+  private long measure(ProfiledSort sort, Integer[] items) {
+    if (measureAllocation) {
+      return allocatedBytes(sort, items);
+    }
+    return timeProfiledSort(sort, items, wallClock);
+  }
+
+  /**
+   * Measure one sort like {@link #measure}, adding its SortMetrics counts and the bytes allocated
+   * by this thread to the totals, in the order of METRIC_NAMES. Scratch is the largest buffer the
+   * sort took from a SortContext, which a warmed-up context hands out without allocating.
+   */
+  private long measureWithMetrics(ProfiledSort sort, Integer[] items, double[] totals) {
+    Runnable work = sort.prepare(items);
+    SortMetrics.reset();
+    long bytesBefore = SortMetrics.threadAllocatedBytes();
+    long result = measure(ignored -> work, items);
+    totals[2] += SortMetrics.threadAllocatedBytes() - bytesBefore;
+    totals[0] += SortMetrics.comparisons();
+    totals[1] += SortMetrics.moves();
+    totals[3] += SortMetrics.maxScratch();
+    totals[4] += SortMetrics.maxDepth();
+    totals[5] += SortMetrics.imbalance();
+    return result;
+  }
+
   /**
    * Process the command line arguments and create a SortProfiler object with the resulting values.
    *
-   * @throws IOException (Should never happen)
+   * @throws IOException if a shard file cannot be read, or the external sort's files cannot be
+   *         written
+   * @throws InterruptedException if interrupted while waiting for parallel workers
    */
-  public static void main(String[] args) throws IOException {
+  public static void main(String[] args) throws IOException, InterruptedException {
     // Set up the option parser with the desired arguments.
     OptionParser parser = new OptionParser();
 
+    OptionSpec<String> mergeSpec = parser.accepts("r",
+        "Merge the result files of a sharded sweep (see -k) into one table instead of profiling."
+        + " The size and trial options are not needed.")
+        .withRequiredArg().ofType(String.class).describedAs("FILE1,FILE2,...")
+        .withValuesSeparatedBy(",");
+
     OptionSpec<Integer> startSpec = parser.accepts("s", "Starting (smallest) input size")
-        .withRequiredArg().ofType(Integer.class).describedAs("NUMBER").required();
+        .requiredUnless("r").withRequiredArg().ofType(Integer.class).describedAs("NUMBER");
 
-    OptionSpec<Integer> intervalSpec = parser.accepts("i", "Input size increment").withRequiredArg()
-        .ofType(Integer.class).describedAs("NUMBER").required();
+    OptionSpec<Integer> intervalSpec = parser.accepts("i", "Input size increment")
+        .requiredUnless("r").withRequiredArg().ofType(Integer.class).describedAs("NUMBER");
 
     OptionSpec<Integer> maxSpec = parser.accepts("m", "Maximum input size to test")
-        .withRequiredArg().ofType(Integer.class).describedAs("NUMBER").required();
+        .requiredUnless("r").withRequiredArg().ofType(Integer.class).describedAs("NUMBER");
 
     OptionSpec<Integer> trialsSpec = parser.accepts("t", "Number of trials for each input size")
-        .withRequiredArg().ofType(Integer.class).describedAs("NUMBER").required();
+        .requiredUnless("r").withRequiredArg().ofType(Integer.class).describedAs("NUMBER");
 
     OptionSpec<String> sortSpec = parser.accepts("w",
         "Comma separated list of sorts. Options include insertion, selection, merge, merge_half,"
-        + " merge_adaptive, quick, introspective and timsort. Default is to execute all sorts.")
+        + " merge_inplace, merge_adaptive, merge_natural, merge_parallel, sample, quick,"
+        + " quick_3way, quick_dual, introspective and timsort. Append _int, _long or _double to"
+        + " insertion, merge_half, merge_inplace, merge_adaptive, quick, quick_3way, quick_dual or"
+        + " introspective (or use arrays_int, arrays_long, arrays_double for Arrays.sort) to run"
+        + " the primitive version on the same data; sample_int and sample_long run the parallel"
+        + " sample sort. key_int and key_long sort the boxed items by an extracted primitive key."
+        + " pdq_int and pdq_long run the block partitioning pattern-defeating quicksort. radix_lsd"
+        + " (also radix_lsd_long) and counting sort unboxed ints, counting falling back to"
+        + " radix_lsd when the keys span more than 2^20 values; radix_msd, multikey and"
+        + " timsort_string sort the items' decimal strings. nth_element selects the median,"
+        + " partial_sort sorts the smallest 100 and top_k keeps the largest 100 in a heap, for"
+        + " comparison with full sorts. adaptive (also adaptive_int, adaptive_long) samples each"
+        + " input and picks one of the sorts above. Default is to execute all boxed sorts.")
         .withOptionalArg().describedAs("SORT1,SORT2,...").ofType(String.class)
         .withValuesSeparatedBy(",");
 
+    OptionSpec<Integer> parallelismSpec = parser
+        .accepts("p", "Number of worker threads for parallel sorts. A comma separated list runs"
+            + " every sort once per thread count, in columns named SORT@THREADS, to chart how the"
+            + " parallel sorts scale. The default is the size of the common fork/join pool")
+        .withRequiredArg().ofType(Integer.class).describedAs("NUMBER,...")
+        .withValuesSeparatedBy(",");
+
+    OptionSpec<Void> wallSpec = parser.accepts("c",
+        "Time trials by wall clock instead of thread CPU time. This is automatic when a parallel"
+        + " sort (merge_parallel, sample, adaptive or one of their _int and _long forms) runs.");
+
+    OptionSpec<Void> allocationSpec = parser.accepts("a",
+        "Report the average bytes allocated by the profiling thread per sort instead of time.");
+
+    OptionSpec<Void> metricsSpec = parser.accepts("o",
+        "Print operation counts after each sort's time: comparisons (boxed sorts only), element"
+        + " moves, bytes allocated by the profiling thread, the largest scratch buffer taken from"
+        + " a SortContext in elements, maximum recursion depth and mean quicksort partition"
+        + " imbalance.");
+
+    OptionSpec<String> distributionSpec = parser.accepts("l",
+        "Report each sort's latency distribution per input size instead of the mean: p50, p90, p99"
+        + " and max of wall-clock and CPU nanoseconds, with GC counts and pause time, as csv or"
+        + " json.")
+        .withRequiredArg().ofType(String.class).describedAs("FORMAT");
+
+    OptionSpec<Integer> externalSpec = parser.accepts("x",
+        "Benchmark the external merge sort on files of records of this many bytes instead of"
+        + " running the in-memory sorts.")
+        .withRequiredArg().ofType(Integer.class).describedAs("RECORD_BYTES");
+
+    OptionSpec<Integer> recordSpec = parser.accepts("y",
+        "Benchmark sorting in-memory buffers of records of this many bytes with RecordSort, in"
+        + " place, by index and for the order alone, instead of running the in-memory sorts.")
+        .withRequiredArg().ofType(Integer.class).describedAs("RECORD_BYTES");
+
+    OptionSpec<Integer> loadSpec = parser.accepts("q",
+        "Generate this many small sort jobs per input size and report jobs per second and latency"
+        + " percentiles, sorting them one call at a time and through a SortExecutor with -p"
+        + " workers, instead of running the in-memory sorts.")
+        .withRequiredArg().ofType(Integer.class).describedAs("JOBS");
+
+    OptionSpec<Integer> rateSpec = parser.accepts("u",
+        "Issue the jobs of -q at this many per second. The default issues them as fast as the"
+        + " executor admits them, so latency is mostly time spent queued.")
+        .withRequiredArg().ofType(Integer.class).describedAs("JOBS_PER_SECOND");
+
+    OptionSpec<Long> budgetSpec = parser.accepts("b",
+        "Memory budget of the external sort in megabytes. The default is 64")
+        .withRequiredArg().ofType(Long.class).describedAs("MEGABYTES");
+
+    OptionSpec<Integer> fanInSpec = parser.accepts("f",
+        "Number of runs the external sort merges at once. The default is 16")
+        .withRequiredArg().ofType(Integer.class).describedAs("NUMBER");
+
+    OptionSpec<Integer> workersSpec = parser.accepts("j",
+        "Measure the cells of the sweep on this many worker threads, at most one per core. Each"
+        + " worker warms up separately and every sort of a trial gets the same seeded input.")
+        .withRequiredArg().ofType(Integer.class).describedAs("NUMBER");
+
+    OptionSpec<String> shardSpec = parser.accepts("k",
+        "Run only slice SHARD of a sweep divided into COUNT slices, printing one line per cell"
+        + " for -r to merge. Implies -j, with one worker unless -j is given.")
+        .withRequiredArg().ofType(String.class).describedAs("SHARD/COUNT");
+
+    OptionSpec<Long> seedSpec = parser.accepts("e",
+        "Seed for the inputs of -j and -k sweeps. Every shard of a sweep must use the same seed."
+        + " The default is 0")
+        .withRequiredArg().ofType(Long.class).describedAs("SEED");
+
     OptionSpec<String> genSpec = parser
         .accepts("g",
-            "Sequence generator. Options include random, ordered or evil. The default is random")
+            "Sequence generator. Options include random, ordered, evil, few_unique or sawtooth."
+            + " The default is random")
         .withOptionalArg().ofType(String.class).describedAs("GENERATOR");
 
     try {
       // Values we need to extract from the command line...
-      ArrayList<Sorter<Integer>> sorts;
+      ArrayList<ProfiledSort> sorts;
 
       // Parse the command line arguments. This will raise an exception if the
       // arguments are not formatted correctly on the command line.
       OptionSet options = parser.parse(args);
 
+      if (options.has(mergeSpec)) {
+        List<Path> files = new ArrayList<>();
+        for (String file : options.valuesOf(mergeSpec)) {
+          files.add(Path.of(file));
+        }
+        mergeShards(files, System.out);
+        return;
+      }
+
       int start = options.valueOf(startSpec);
       int interval = options.valueOf(intervalSpec);
       int max = options.valueOf(maxSpec);
@@ -158,21 +893,74 @@ public class SortProfiler {
       if (sortStrings.isEmpty()) {
         sortStrings = new ArrayList<>(Arrays.asList(ALL_SORT_NAMES));
       }
+      // Thread CPU time misses the work parallel sorts hand to the pool's workers.
+      boolean parallel = false;
+      for (String sortName : sortStrings) {
+        parallel |= PARALLEL_SORT_NAMES.contains(sortName);
+      }
+
+      // SortMetrics reads this once, when the sorts first touch it below.
+      if (options.has(metricsSpec)) {
+        System.setProperty("sortmetrics.enabled", "true");
+      }
 
-      sorts = extractSorts(sortStrings);
+      List<Integer> threadCounts = options.valuesOf(parallelismSpec);
+      if (threadCounts.isEmpty()) {
+        sorts = extractSorts(sortStrings, ForkJoinPool.commonPool());
+      } else {
+        sorts = new ArrayList<>();
+        ArrayList<String> columns = new ArrayList<>();
+        for (int threads : threadCounts) {
+          if (threads < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive.");
+          }
+          sorts.addAll(extractSorts(sortStrings, new ForkJoinPool(threads)));
+          for (String sortName : sortStrings) {
+            columns.add(threadCounts.size() > 1 ? sortName + "@" + threads : sortName);
+          }
+        }
+        sortStrings = columns;
+      }
       String genString = options.has(genSpec) ? options.valueOf(genSpec) : "random";
 
-      Generator gen = switch (genString) {
-        case "random" -> Generators::generateRandom;
-        case "ordered" -> Generators::generateOrdered;
-        case "evil" -> Generators::generateEvil;
-        default -> throw new IllegalArgumentException("Unrecognized generator.");
-      };
+      Generator gen = parseGenerator(genString);
 
       // Create and run the SortProfiler
       SortProfiler profiler =
           new SortProfiler(sorts, sortStrings, start, interval, max, trials, gen);
-      profiler.run(System.out);
+      profiler.setWallClock(options.has(wallSpec) || parallel);
+      profiler.setMeasureAllocation(options.has(allocationSpec));
+      profiler.setRecordMetrics(options.has(metricsSpec));
+      profiler.setSeed(options.has(seedSpec) ? options.valueOf(seedSpec) : 0);
+      if (options.has(externalSpec)) {
+        int fanIn = options.has(fanInSpec) ? options.valueOf(fanInSpec) : 16;
+        long budget = (options.has(budgetSpec) ? options.valueOf(budgetSpec) : 64) << 20;
+        profiler.runExternal(System.out, options.valueOf(externalSpec), budget, fanIn);
+      } else if (options.has(loadSpec)) {
+        int workers = threadCounts.isEmpty() ? Runtime.getRuntime().availableProcessors()
+            : threadCounts.get(0);
+        int rate = options.has(rateSpec) ? options.valueOf(rateSpec) : 0;
+        profiler.runLoad(System.out, options.valueOf(loadSpec), rate, workers);
+      } else if (options.has(recordSpec)) {
+        profiler.runRecords(System.out, options.valueOf(recordSpec));
+      } else if (options.has(distributionSpec)) {
+        profiler.runDistribution(System.out, options.valueOf(distributionSpec));
+      } else if (options.has(workersSpec) || options.has(shardSpec)) {
+        int workers = options.has(workersSpec) ? options.valueOf(workersSpec) : 1;
+        int shard = 0;
+        int shardCount = 1;
+        if (options.has(shardSpec)) {
+          String[] parts = options.valueOf(shardSpec).split("/");
+          if (parts.length != 2) {
+            throw new IllegalArgumentException("Shards are given as SHARD/COUNT.");
+          }
+          shard = Integer.parseInt(parts[0].trim()) - 1;
+          shardCount = Integer.parseInt(parts[1].trim());
+        }
+        profiler.runParallel(System.out, workers, shard, shardCount);
+      } else {
+        profiler.run(System.out);
+      }
     } catch (OptionException | IllegalArgumentException exception) {
       System.out.println(exception.getMessage() + "\n");
       parser.printHelpOn(System.out);
@@ -183,17 +971,19 @@ public class SortProfiler {
    * Construct a list of sort objects from a list of sort names.
    *
    * @param sortNames list of sort names
+   * @param pool pool used by the parallel sorts
    * @return List of Sorter objects.
    * @throws IllegalArgumentException if the list includes an invalid sort name.
    */
-  private static ArrayList<Sorter<Integer>> extractSorts(ArrayList<String> sortNames) {
+  private static ArrayList<ProfiledSort> extractSorts(ArrayList<String> sortNames,
+      ForkJoinPool pool) {
     sortNames = new ArrayList<>(sortNames);
-    ArrayList<Sorter<Integer>> sorts;
+    ArrayList<ProfiledSort> sorts;
     sorts = new ArrayList<>();
 
     Iterator<String> it = sortNames.iterator();
     while (it.hasNext()) {
-      sorts.add(parseSort(it.next()));
+      sorts.add(parseProfiledSort(it.next(), pool));
       it.remove();
     }
 
@@ -203,10 +993,37 @@ public class SortProfiler {
     return sorts;
   }
 
+  /**
+   * Convert a generator name to the appropriate generator.
+   *
+   * @throws IllegalArgumentException if the name is not a known generator.
+   */
+  public static Generator parseGenerator(String genName) {
+    return switch (genName) {
+      case "random" -> Generators.RANDOM;
+      case "ordered" -> Generators::generateOrdered;
+      case "evil" -> Generators::generateEvil;
+      case "few_unique" -> Generators.FEW_UNIQUE;
+      case "sawtooth" -> Generators::generateSawtooth;
+      default -> throw new IllegalArgumentException("Unrecognized generator.");
+    };
+  }
+
   /**
    * Convert a sort name to the appropriate sorter object.
    */
   public static <T extends Comparable<T>> Sorter<T> parseSort(String sortName) {
+    return parseSort(sortName, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Convert a sort name to the appropriate sorter object. Parallel sorts run on the given pool.
+   */
+  public static <T extends Comparable<T>> Sorter<T> parseSort(String sortName,
+      ForkJoinPool pool) {
+    if (SortMetrics.ENABLED) {
+      return parseSort(sortName, pool, SortMetrics.counting(Comparator.<T>naturalOrder()));
+    }
     switch (sortName) {
       case "insertion":
         return BasicSorts::insertionSort;
@@ -216,14 +1033,312 @@ public class SortProfiler {
         return MergeSort::mergeSort;
       case "merge_half":
         return MergeSortImproved::mergeSortHalfSpace;
+      case "merge_inplace":
+        return MergeSortImproved::mergeSortInPlace;
       case "merge_adaptive":
         return MergeSortImproved::mergeSortAdaptive;
+      case "merge_natural":
+        return MergeSortImproved::mergeSortNatural;
+      case "merge_parallel":
+        return items -> ParallelMergeSort.parallelMergeSort(items, pool,
+            ParallelMergeSort.DEFAULT_CUTOFF);
+      case "sample":
+        return items -> SampleSort.sampleSort(items, pool);
       case "quick":
         return QuickSort::quickSort;
+      case "quick_3way":
+        return QuickSort::quickSort3Way;
+      case "quick_dual":
+        return QuickSort::dualPivotQuickSort;
       case "introspective":
         return IntrospectiveSort::introspectiveSort;
       case "timsort":
         return Arrays::sort;
+      case "adaptive":
+        return items -> AdaptiveSorter.sort(items, Comparator.naturalOrder(), pool);
+      default:
+        throw new IllegalArgumentException("Unrecognized sort.");
+    }
+  }
+
+  /**
+   * Convert a sort name to a sorter that orders items with the given comparator. Parallel sorts run
+   * on the given pool.
+   */
+  public static <T extends Comparable<T>> Sorter<T> parseSort(String sortName,
+      ForkJoinPool pool, Comparator<? super T> comparator) {
+    switch (sortName) {
+      case "insertion":
+        return items -> BasicSorts.insertionSort(items, comparator);
+      case "selection":
+        return items -> BasicSorts.selectionSort(items, comparator);
+      case "merge":
+        return items -> MergeSort.mergeSort(items, comparator);
+      case "merge_half":
+        return items -> MergeSortImproved.mergeSortHalfSpace(items, comparator);
+      case "merge_inplace":
+        return items -> MergeSortImproved.mergeSortInPlace(items, comparator);
+      case "merge_adaptive":
+        return items -> MergeSortImproved.mergeSortAdaptive(items, comparator);
+      case "merge_natural":
+        return items -> MergeSortImproved.mergeSortNatural(items, comparator);
+      case "merge_parallel":
+        return items -> ParallelMergeSort.parallelMergeSort(items, comparator, pool,
+            ParallelMergeSort.DEFAULT_CUTOFF);
+      case "sample":
+        return items -> SampleSort.sampleSort(items, comparator, pool);
+      case "quick":
+        return items -> QuickSort.quickSort(items, comparator);
+      case "quick_3way":
+        return items -> QuickSort.quickSort3Way(items, comparator);
+      case "quick_dual":
+        return items -> QuickSort.dualPivotQuickSort(items, comparator);
+      case "introspective":
+        return items -> IntrospectiveSort.introspectiveSort(items, comparator);
+      case "timsort":
+        return items -> Arrays.sort(items, comparator);
+      case "adaptive":
+        return items -> AdaptiveSorter.sort(items, comparator, pool);
+      default:
+        throw new IllegalArgumentException("Unrecognized sort.");
+    }
+  }
+
+  /**
+   * Convert a sort name to a profiled sort. Names ending in _int, _long or _double select the
+   * primitive version of the named algorithm, which is run on an unboxed copy of the input.
+   */
+  public static ProfiledSort parseProfiledSort(String sortName) {
+    return parseProfiledSort(sortName, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Convert a sort name to a profiled sort. Parallel sorts run on the given pool.
+   */
+  public static ProfiledSort parseProfiledSort(String sortName, ForkJoinPool pool) {
+    switch (sortName) {
+      case "key_int":
+        return profiled(items -> KeySorts.sortByIntKey(items, Integer::intValue));
+      case "key_long":
+        return profiled(items -> KeySorts.sortByLongKey(items, Integer::longValue));
+      case "radix_lsd":
+      case "counting":
+        return profiledInts(parseIntSort(sortName));
+      case "radix_msd":
+        return profiledStrings(RadixSort::radixSort);
+      case "multikey":
+        return profiledStrings(RadixSort::multikeyQuickSort);
+      case "timsort_string":
+        return profiledStrings(Arrays::sort);
+      case "nth_element":
+        return profiled(items -> {
+          if (items.length > 0) {
+            Selection.nthElement(items, items.length / 2);
+          }
+        });
+      case "partial_sort":
+        return profiled(items -> Selection.partialSort(items, Math.min(SELECTION_K, items.length)));
+      case "top_k":
+        return profiled(items -> Selection.topK(Arrays.asList(items), SELECTION_K));
+      default:
+        break;
+    }
+    if (sortName.endsWith("_int")) {
+      return profiledInts(parseIntSort(sortName.substring(0, sortName.length() - 4), pool));
+    }
+    if (sortName.endsWith("_long")) {
+      return profiledLongs(parseLongSort(sortName.substring(0, sortName.length() - 5), pool));
+    }
+    if (sortName.endsWith("_double")) {
+      return profiledDoubles(parseDoubleSort(sortName.substring(0, sortName.length() - 7)));
+    }
+    return profiled(parseSort(sortName, pool));
+  }
+
+  /**
+   * Wrap a boxed sorter so that it sorts a fresh copy of each input.
+   */
+  public static ProfiledSort profiled(Sorter<Integer> sorter) {
+    return items -> {
+      Integer[] copy = Arrays.copyOf(items, items.length);
+      return () -> sorter.sort(copy);
+    };
+  }
+
+  /**
+   * Wrap an int sorter so that it sorts an unboxed copy of each input.
+   */
+  public static ProfiledSort profiledInts(IntSorter sorter) {
+    return items -> {
+      int[] copy = Generators.unboxInts(items);
+      return () -> sorter.sort(copy);
+    };
+  }
+
+  /**
+   * Wrap a long sorter so that it sorts an unboxed copy of each input.
+   */
+  public static ProfiledSort profiledLongs(LongSorter sorter) {
+    return items -> {
+      long[] copy = Generators.unboxLongs(items);
+      return () -> sorter.sort(copy);
+    };
+  }
+
+  /**
+   * Wrap a double sorter so that it sorts an unboxed copy of each input.
+   */
+  public static ProfiledSort profiledDoubles(DoubleSorter sorter) {
+    return items -> {
+      double[] copy = Generators.unboxDoubles(items);
+      return () -> sorter.sort(copy);
+    };
+  }
+
+  /**
+   * Wrap a string sorter so that it sorts the decimal representations of each input.
+   */
+  public static ProfiledSort profiledStrings(Sorter<String> sorter) {
+    return items -> {
+      String[] copy = new String[items.length];
+      for (int i = 0; i < items.length; i++) {
+        copy[i] = String.valueOf(items[i]);
+      }
+      return () -> sorter.sort(copy);
+    };
+  }
+
+  /**
+   * Convert an algorithm name to the corresponding int sorter.
+   */
+  public static IntSorter parseIntSort(String sortName) {
+    return parseIntSort(sortName, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Convert an algorithm name to the corresponding int sorter. Parallel sorts run on the given
+   * pool.
+   */
+  public static IntSorter parseIntSort(String sortName, ForkJoinPool pool) {
+    switch (sortName) {
+      case "sample":
+        return items -> SampleSort.sampleSort(items, pool);
+      case "insertion":
+        return BasicSorts::insertionSort;
+      case "merge_half":
+        return MergeSortImproved::mergeSortHalfSpace;
+      case "merge_inplace":
+        return MergeSortImproved::mergeSortInPlace;
+      case "merge_adaptive":
+        return MergeSortImproved::mergeSortAdaptive;
+      case "quick":
+        return QuickSort::quickSort;
+      case "quick_3way":
+        return QuickSort::quickSort3Way;
+      case "quick_dual":
+        return QuickSort::dualPivotQuickSort;
+      case "introspective":
+        return IntrospectiveSort::introspectiveSort;
+      case "pdq":
+        return PdqSort::pdqSort;
+      case "adaptive":
+        return items -> AdaptiveSorter.sort(items, pool);
+      case "radix_lsd":
+        return RadixSort::radixSort;
+      case "counting":
+        return SortProfiler::countingSort;
+      case "arrays":
+        return Arrays::sort;
+      default:
+        throw new IllegalArgumentException("Unrecognized sort.");
+    }
+  }
+
+  /**
+   * Counting sort the ints, or radix sort them if their keys span more values than counting sort
+   * allows, so that a wide generator does not abort the rest of the sweep.
+   */
+  private static void countingSort(int[] items) {
+    int min = Integer.MAX_VALUE;
+    int max = Integer.MIN_VALUE;
+    for (int item : items) {
+      min = Math.min(min, item);
+      max = Math.max(max, item);
+    }
+    if ((long) max - min < RadixSort.MAX_COUNTING_RANGE) {
+      RadixSort.countingSort(items);
+    } else {
+      RadixSort.radixSort(items);
+    }
+  }
+
+  /**
+   * Convert an algorithm name to the corresponding long sorter.
+   */
+  public static LongSorter parseLongSort(String sortName) {
+    return parseLongSort(sortName, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Convert an algorithm name to the corresponding long sorter. Parallel sorts run on the given
+   * pool.
+   */
+  public static LongSorter parseLongSort(String sortName, ForkJoinPool pool) {
+    switch (sortName) {
+      case "sample":
+        return items -> SampleSort.sampleSort(items, pool);
+      case "insertion":
+        return BasicSorts::insertionSort;
+      case "merge_half":
+        return MergeSortImproved::mergeSortHalfSpace;
+      case "merge_inplace":
+        return MergeSortImproved::mergeSortInPlace;
+      case "merge_adaptive":
+        return MergeSortImproved::mergeSortAdaptive;
+      case "quick":
+        return QuickSort::quickSort;
+      case "quick_3way":
+        return QuickSort::quickSort3Way;
+      case "quick_dual":
+        return QuickSort::dualPivotQuickSort;
+      case "introspective":
+        return IntrospectiveSort::introspectiveSort;
+      case "pdq":
+        return PdqSort::pdqSort;
+      case "adaptive":
+        return items -> AdaptiveSorter.sort(items, pool);
+      case "radix_lsd":
+        return RadixSort::radixSort;
+      case "arrays":
+        return Arrays::sort;
+      default:
+        throw new IllegalArgumentException("Unrecognized sort.");
+    }
+  }
+
+  /**
+   * Convert an algorithm name to the corresponding double sorter.
+   */
+  public static DoubleSorter parseDoubleSort(String sortName) {
+    switch (sortName) {
+      case "insertion":
+        return BasicSorts::insertionSort;
+      case "merge_half":
+        return MergeSortImproved::mergeSortHalfSpace;
+      case "merge_inplace":
+        return MergeSortImproved::mergeSortInPlace;
+      case "merge_adaptive":
+        return MergeSortImproved::mergeSortAdaptive;
+      case "quick":
+        return QuickSort::quickSort;
+      case "quick_3way":
+        return QuickSort::quickSort3Way;
+      case "quick_dual":
+        return QuickSort::dualPivotQuickSort;
+      case "introspective":
+        return IntrospectiveSort::introspectiveSort;
+      case "arrays":
+        return Arrays::sort;
       default:
         throw new IllegalArgumentException("Unrecognized sort.");
     }
@@ -234,10 +1349,51 @@ public class SortProfiler {
    * provided array. A copy of the array is sorted. The original will be unmodified.
    */
   public static long timeSort(Sorter<Integer> sorter, Integer[] items) {
-    Integer[] copy = Arrays.copyOf(items, items.length);
+    return timeProfiledSort(profiled(sorter), items);
+  }
+
+  /**
+   * Return the total number of nanoseconds of CPU time required for the provided sort to sort a
+   * copy of the provided array. The original will be unmodified.
+   */
+  public static long timeProfiledSort(ProfiledSort sort, Integer[] items) {
+    return timeProfiledSort(sort, items, false);
+  }
+
+  /**
+   * Return the number of bytes the calling thread allocates while the provided sort sorts a copy of
+   * the provided array. Allocation by other threads, such as fork/join workers, is not counted.
+   *
+   * @throws UnsupportedOperationException if the JVM cannot report per-thread allocation
+   */
+  public static long allocatedBytes(ProfiledSort sort, Integer[] items) {
+    Runnable work = sort.prepare(items);
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      throw new UnsupportedOperationException("Allocation measurement is not supported.");
+    }
+    com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+    long threadId = Thread.currentThread().getId();
+    long start = allocationBean.getThreadAllocatedBytes(threadId);
+    work.run();
+    long stop = allocationBean.getThreadAllocatedBytes(threadId);
+    return stop - start;
+  }
+
+  /**
+   * Return the number of nanoseconds required for the provided sort to sort a copy of the provided
+   * array, measured either as elapsed wall-clock time or as CPU time of the calling thread.
+   */
+  public static long timeProfiledSort(ProfiledSort sort, Integer[] items, boolean wallClock) {
+    Runnable work = sort.prepare(items);
+    if (wallClock) {
+      long start = System.nanoTime();
+      work.run();
+      return System.nanoTime() - start;
+    }
     ThreadMXBean bean = ManagementFactory.getThreadMXBean();
     long start = bean.getCurrentThreadCpuTime();
-    sorter.sort(copy);
+    work.run();
     long stop = bean.getCurrentThreadCpuTime();
     return stop - start;
   }
@@ -0,0 +1,293 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A growing collection kept in sorted order for workloads that append in batches to a large sorted
+ * array and read it between batches, where re-sorting everything after each batch would cost
+ * O(n log n).
+ *
+ * <p>Appended items go to an unsorted tail. When the tail reaches its limit it is sorted on its own
+ * and becomes a sorted run, and runs are merged LSM-style: whenever a run is at least half as long
+ * as the one before it the two are merged, so run lengths at least double from right to left,
+ * there are O(log n) of them and each item takes part in O(log n) merges. Reading anything first
+ * sorts what is left of the tail and merges all runs into one. Merges use
+ * MergeSortImproved.mergeGalloping, which copies aside only the shorter run and skips the parts
+ * already in place, so merging a batch of k items into n costs O(k log k + n) at worst and much
+ * less when the batch lands near the end.
+ *
+ * <p>The tail is sorted with IntrospectiveSort, so equal items appended in the same batch may come
+ * out in any order. A buffer is not thread safe.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ */
+public class SortedBuffer<T> implements Iterable<T> {
+
+  /** Tail length at which appended items are sorted into a run when no limit is given. */
+  public static final int DEFAULT_TAIL_LIMIT = 4096;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final Comparator<? super T> comparator;
+  private final int tailLimit;
+  private T[] items;
+  private int size;
+  // The sorted runs fill items[0..tailStart) left to right; the unsorted tail follows them.
+  private int[] runLengths = new int[8];
+  private int runCount;
+  private int tailStart;
+  private int modCount;
+
+  /**
+   * Create an empty buffer of Comparable items in their natural order.
+   */
+  @SuppressWarnings("unchecked")
+  public SortedBuffer() {
+    this((Comparator<? super T>) Comparator.naturalOrder(), DEFAULT_TAIL_LIMIT);
+  }
+
+  /**
+   * Create an empty buffer ordered by the given comparator.
+   *
+   * @param comparator ordering of the items
+   */
+  public SortedBuffer(Comparator<? super T> comparator) {
+    this(comparator, DEFAULT_TAIL_LIMIT);
+  }
+
+  /**
+   * Create an empty buffer ordered by the given comparator.
+   *
+   * @param comparator ordering of the items
+   * @param tailLimit number of appended items at which they are sorted into a run
+   * @throws IllegalArgumentException if the tail limit is not positive
+   */
+  @SuppressWarnings("unchecked")
+  public SortedBuffer(Comparator<? super T> comparator, int tailLimit) {
+    if (tailLimit < 1) {
+      throw new IllegalArgumentException("Tail limit must be positive.");
+    }
+    this.comparator = comparator;
+    this.tailLimit = tailLimit;
+    this.items = (T[]) new Object[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Append an item.
+   *
+   * @param item the item to add
+   */
+  public void add(T item) {
+    ensureCapacity(size + 1);
+    items[size++] = item;
+    modCount++;
+    if (size - tailStart >= tailLimit) {
+      sortTail();
+    }
+  }
+
+  /**
+   * Append every item of the array.
+   *
+   * @param batch the items to add
+   */
+  public void addAll(T[] batch) {
+    ensureCapacity(size + batch.length);
+    int copied = 0;
+    while (copied < batch.length) {
+      int count = Math.min(batch.length - copied, tailLimit - (size - tailStart));
+      System.arraycopy(batch, copied, items, size, count);
+      size += count;
+      copied += count;
+      if (size - tailStart >= tailLimit) {
+        sortTail();
+      }
+    }
+    modCount++;
+  }
+
+  /**
+   * Append every item of the collection.
+   *
+   * @param batch the items to add
+   */
+  public void addAll(Iterable<? extends T> batch) {
+    for (T item : batch) {
+      add(item);
+    }
+  }
+
+  /**
+   * @return the number of items in the buffer
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return whether the buffer is empty
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Return the item at the given position in sorted order.
+   *
+   * @param index position of the item
+   * @return the item
+   * @throws IndexOutOfBoundsException if the index is not less than the size
+   */
+  public T get(int index) {
+    Objects.checkIndex(index, size);
+    compact();
+    return items[index];
+  }
+
+  /**
+   * Search the buffer for an item equal to the key under the buffer's comparator.
+   *
+   * @param key the item to search for
+   * @return the index of the first equal item, or -(insertion point) - 1 if there is none
+   */
+  public int indexOf(T key) {
+    compact();
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (comparator.compare(items[mid], key) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    if (low < size && comparator.compare(items[low], key) == 0) {
+      return low;
+    }
+    return -low - 1;
+  }
+
+  /**
+   * Return a sorted copy of the items.
+   *
+   * @return a new array of the items in order
+   */
+  public Object[] toArray() {
+    compact();
+    return Arrays.copyOf(items, size, Object[].class);
+  }
+
+  /**
+   * Remove every item.
+   */
+  public void clear() {
+    Arrays.fill(items, 0, size, null);
+    size = 0;
+    runCount = 0;
+    tailStart = 0;
+    modCount++;
+  }
+
+  /**
+   * Sort the tail and merge all runs, leaving the items in one sorted run. Reads do this
+   * themselves; calling it ahead of time keeps the cost out of the first read after a batch.
+   */
+  public void compact() {
+    if (size > tailStart) {
+      sortTail();
+    }
+    if (runCount > 1) {
+      SortContext context = SortContext.acquire();
+      try {
+        T[] temp = context.objects(size / 2);
+        while (runCount > 1) {
+          mergeTopRuns(temp);
+        }
+      } finally {
+        context.release();
+      }
+    }
+  }
+
+  /**
+   * Return an iterator over the items in sorted order. The buffer must not be modified while it is
+   * in use.
+   *
+   * @return the iterator
+   */
+  @Override
+  public Iterator<T> iterator() {
+    compact();
+    return new Iterator<T>() {
+      private final int expectedModCount = modCount;
+      private int next;
+
+      @Override
+      public boolean hasNext() {
+        return next < size;
+      }
+
+      @Override
+      public T next() {
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+        if (next >= size) {
+          throw new NoSuchElementException();
+        }
+        return items[next++];
+      }
+    };
+  }
+
+  /**
+   * Sort the tail into a new run and merge runs until each is more than twice as long as the one
+   * after it.
+   */
+  private void sortTail() {
+    IntrospectiveSort.introspectiveSort(items, tailStart, size - 1, comparator);
+    if (runCount == runLengths.length) {
+      runLengths = Arrays.copyOf(runLengths, 2 * runCount);
+    }
+    runLengths[runCount++] = size - tailStart;
+    tailStart = size;
+
+    if (runCount > 1 && runLengths[runCount - 2] <= 2 * runLengths[runCount - 1]) {
+      SortContext context = SortContext.acquire();
+      try {
+        T[] temp = context.objects(size / 2);
+        while (runCount > 1 && runLengths[runCount - 2] <= 2 * runLengths[runCount - 1]) {
+          mergeTopRuns(temp);
+        }
+      } finally {
+        context.release();
+      }
+    }
+  }
+
+  /**
+   * Merge the last two runs into one.
+   */
+  private void mergeTopRuns(T[] temp) {
+    int length2 = runLengths[--runCount];
+    int length1 = runLengths[runCount - 1];
+    int end = tailStart - 1;
+    int mid = end - length2;
+    MergeSortImproved.mergeGalloping(items, mid - length1 + 1, mid, end, temp, comparator);
+    runLengths[runCount - 1] = length1 + length2;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalStateException("Buffer is too large.");
+    }
+    if (capacity > items.length) {
+      items = Arrays.copyOf(items, Math.max(capacity, items.length + (items.length >> 1)));
+    }
+  }
+}
@@ -0,0 +1,119 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Per-machine tuning profile: sort thresholds measured by {@link Calibration} and stored in a
+ * properties file, which the sorts read once when their classes are initialized.
+ *
+ * <p>The profile is read from the file named by the sorttuning.profile system property, or
+ * .sort-tuning.properties in the user's home directory. A profile written on a machine with a
+ * different architecture, processor count or Java version is ignored, as are missing files,
+ * missing keys and values out of range; the sorts then fall back to their built-in thresholds.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ */
+public class TuningProfile {
+  /**
+   * System property naming the profile file.
+   */
+  public static final String FILE_PROPERTY = "sorttuning.profile";
+
+  /**
+   * Key of the property identifying the machine a profile was measured on.
+   */
+  public static final String MACHINE_KEY = "machine";
+
+  private static final Properties PROFILE = load(path());
+
+  /**
+   * Return the tuned value of a threshold, or the default if the profile does not have a usable
+   * one.
+   *
+   * @param key name of the threshold, such as merge.insertion.int
+   * @param defaultValue built-in value of the threshold
+   * @param minimum smallest value the sort can work with
+   * @return the threshold to use
+   */
+  public static int threshold(String key, int defaultValue, int minimum) {
+    String value = PROFILE.getProperty(key);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      int threshold = Integer.parseInt(value.trim());
+      return threshold >= minimum ? threshold : defaultValue;
+    } catch (NumberFormatException exception) {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Return the location of the profile file.
+   *
+   * @return the path from the sorttuning.profile property, or the default in the home directory
+   */
+  public static Path path() {
+    String file = System.getProperty(FILE_PROPERTY);
+    if (file != null) {
+      return Path.of(file);
+    }
+    return Path.of(System.getProperty("user.home"), ".sort-tuning.properties");
+  }
+
+  /**
+   * Return a description of this machine: architecture, operating system, processor count and
+   * Java version. Profiles only apply on a machine with the same description.
+   *
+   * @return the machine description
+   */
+  public static String machine() {
+    return System.getProperty("os.arch") + "/" + System.getProperty("os.name") + "/"
+        + Runtime.getRuntime().availableProcessors() + "cpu/java-"
+        + System.getProperty("java.version");
+  }
+
+  /**
+   * Write thresholds to a profile file for this machine, replacing any existing file. Running
+   * sorts keep the thresholds they started with.
+   *
+   * @param file where to write the profile
+   * @param thresholds threshold values by key
+   * @throws IOException if the file cannot be written
+   */
+  public static void save(Path file, Map<String, Integer> thresholds) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty(MACHINE_KEY, machine());
+    for (Map.Entry<String, Integer> entry : thresholds.entrySet()) {
+      properties.setProperty(entry.getKey(), Integer.toString(entry.getValue()));
+    }
+    try (Writer writer = Files.newBufferedWriter(file)) {
+      properties.store(writer, "Sort thresholds measured by Calibration");
+    }
+  }
+
+  /**
+   * Read the profile at the given path, or return an empty profile if it is missing, unreadable or
+   * for another machine.
+   */
+  private static Properties load(Path file) {
+    Properties properties = new Properties();
+    if (!Files.isRegularFile(file)) {
+      return properties;
+    }
+    try (Reader reader = Files.newBufferedReader(file)) {
+      properties.load(reader);
+    } catch (IOException | IllegalArgumentException exception) {
+      return new Properties();
+    }
+    if (!machine().equals(properties.getProperty(MACHINE_KEY))) {
+      return new Properties();
+    }
+    return properties;
+  }
+}
@@ -0,0 +1,254 @@
+import java.util.Arrays;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Sorting networks for small int and long regions, written with the incubating Vector API. Each
+ * region is sorted by a bitonic network of n log2(n)^2 / 4 compare-exchanges done a whole vector at
+ * a time, with no branches on the data, so they suit the leaves of the recursive sorts where
+ * insertion sort spends its time on mispredicted branches and shifting.
+ *
+ * <p>This class needs the jdk.incubator.vector module, which the JVM only resolves when started
+ * with --add-modules jdk.incubator.vector. Sorts should not call it directly but go through
+ * {@link SmallSorts}, which falls back to insertion sort when the module is missing.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ */
+public class VectorSorts {
+  /**
+   * Largest region the networks sort.
+   */
+  public static final int MAX_SIZE = 128;
+
+  private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Long> LONG_SPECIES = LongVector.SPECIES_PREFERRED;
+
+  // Indexed by log2 of the distance between compared lanes: the shuffle pairing every lane with
+  // its partner, and the lanes that keep the larger item when sorting ascending or descending.
+  private static final VectorShuffle<Integer>[] INT_PARTNERS = partners(INT_SPECIES);
+  private static final VectorMask<Integer>[] INT_UPPER = distanceBit(INT_SPECIES, true);
+  private static final VectorMask<Integer>[] INT_LOWER = distanceBit(INT_SPECIES, false);
+  private static final VectorShuffle<Long>[] LONG_PARTNERS = partners(LONG_SPECIES);
+  private static final VectorMask<Long>[] LONG_UPPER = distanceBit(LONG_SPECIES, true);
+  private static final VectorMask<Long>[] LONG_LOWER = distanceBit(LONG_SPECIES, false);
+
+  // Indexed by log2 of the bitonic block size and of the distance, for blocks smaller than a
+  // vector, whose direction alternates between lanes.
+  private static final VectorMask<Integer>[][] INT_TAKE_MAX = takeMax(INT_SPECIES);
+  private static final VectorMask<Long>[][] LONG_TAKE_MAX = takeMax(LONG_SPECIES);
+
+  private static final ThreadLocal<int[]> INT_BUFFER =
+      ThreadLocal.withInitial(() -> new int[MAX_SIZE]);
+  private static final ThreadLocal<long[]> LONG_BUFFER =
+      ThreadLocal.withInitial(() -> new long[MAX_SIZE]);
+
+  /**
+   * Return the number of int lanes in the vectors the networks use.
+   *
+   * @return the lane count of the preferred int species
+   */
+  public static int intLanes() {
+    return INT_SPECIES.length();
+  }
+
+  /**
+   * Sort the indicated region of the int array with a bitonic sorting network. The region is
+   * padded with Integer.MAX_VALUE up to a power of two of at least one vector.
+   *
+   * @param items array of items to sort
+   * @param start index of the left end of the region
+   * @param end index of the right end of the region
+   * @throws IllegalArgumentException if the region is larger than MAX_SIZE
+   */
+  public static void sortSmall(int[] items, int start, int end) {
+    int size = end - start + 1;
+    if (size > MAX_SIZE) {
+      throw new IllegalArgumentException("Region must be at most " + MAX_SIZE + " items.");
+    }
+    if (size < 2) {
+      return;
+    }
+    int padded = Math.max(INT_SPECIES.length(), Integer.highestOneBit(size - 1) << 1);
+    if (padded == size) {
+      bitonicSort(items, start, size);
+      return;
+    }
+    int[] buffer = INT_BUFFER.get();
+    System.arraycopy(items, start, buffer, 0, size);
+    Arrays.fill(buffer, size, padded, Integer.MAX_VALUE);
+    bitonicSort(buffer, 0, padded);
+    System.arraycopy(buffer, 0, items, start, size);
+  }
+
+  /**
+   * Sort items[offset..offset+size-1], where size is a power of two and a multiple of the vector
+   * length. Stages that compare items a vector or more apart take the lane-wise minimum and maximum
+   * of two vectors; the rest are done inside one vector by pairing each lane with its partner.
+   */
+  private static void bitonicSort(int[] items, int offset, int size) {
+    int lanes = INT_SPECIES.length();
+    for (int k = 2; k <= size; k <<= 1) {
+      for (int j = k >> 1; j >= lanes; j >>= 1) {
+        for (int base = 0; base < size; base += lanes) {
+          if ((base & j) == 0) {
+            IntVector first = IntVector.fromArray(INT_SPECIES, items, offset + base);
+            IntVector second = IntVector.fromArray(INT_SPECIES, items, offset + base + j);
+            IntVector low = first.min(second);
+            IntVector high = first.max(second);
+            if ((base & k) == 0) {
+              low.intoArray(items, offset + base);
+              high.intoArray(items, offset + base + j);
+            } else {
+              high.intoArray(items, offset + base);
+              low.intoArray(items, offset + base + j);
+            }
+          }
+        }
+      }
+
+      int firstLocal = Math.min(k, lanes) >> 1;
+      for (int base = 0; base < size; base += lanes) {
+        IntVector vector = IntVector.fromArray(INT_SPECIES, items, offset + base);
+        for (int j = firstLocal; j > 0; j >>= 1) {
+          int step = Integer.numberOfTrailingZeros(j);
+          VectorMask<Integer> takeMax;
+          if (k < lanes) {
+            takeMax = INT_TAKE_MAX[Integer.numberOfTrailingZeros(k)][step];
+          } else {
+            takeMax = (base & k) == 0 ? INT_UPPER[step] : INT_LOWER[step];
+          }
+          IntVector partner = vector.rearrange(INT_PARTNERS[step]);
+          vector = vector.min(partner).blend(vector.max(partner), takeMax);
+        }
+        vector.intoArray(items, offset + base);
+      }
+    }
+  }
+
+  /**
+   * Sort the indicated region of the long array with a bitonic sorting network. The region is
+   * padded with Long.MAX_VALUE up to a power of two of at least one vector.
+   *
+   * @param items array of items to sort
+   * @param start index of the left end of the region
+   * @param end index of the right end of the region
+   * @throws IllegalArgumentException if the region is larger than MAX_SIZE
+   */
+  public static void sortSmall(long[] items, int start, int end) {
+    int size = end - start + 1;
+    if (size > MAX_SIZE) {
+      throw new IllegalArgumentException("Region must be at most " + MAX_SIZE + " items.");
+    }
+    if (size < 2) {
+      return;
+    }
+    int padded = Math.max(LONG_SPECIES.length(), Integer.highestOneBit(size - 1) << 1);
+    if (padded == size) {
+      bitonicSort(items, start, size);
+      return;
+    }
+    long[] buffer = LONG_BUFFER.get();
+    System.arraycopy(items, start, buffer, 0, size);
+    Arrays.fill(buffer, size, padded, Long.MAX_VALUE);
+    bitonicSort(buffer, 0, padded);
+    System.arraycopy(buffer, 0, items, start, size);
+  }
+
+  /**
+   * Sort items[offset..offset+size-1], where size is a power of two and a multiple of the vector
+   * length. Stages that compare items a vector or more apart take the lane-wise minimum and maximum
+   * of two vectors; the rest are done inside one vector by pairing each lane with its partner.
+   */
+  private static void bitonicSort(long[] items, int offset, int size) {
+    int lanes = LONG_SPECIES.length();
+    for (int k = 2; k <= size; k <<= 1) {
+      for (int j = k >> 1; j >= lanes; j >>= 1) {
+        for (int base = 0; base < size; base += lanes) {
+          if ((base & j) == 0) {
+            LongVector first = LongVector.fromArray(LONG_SPECIES, items, offset + base);
+            LongVector second = LongVector.fromArray(LONG_SPECIES, items, offset + base + j);
+            LongVector low = first.min(second);
+            LongVector high = first.max(second);
+            if ((base & k) == 0) {
+              low.intoArray(items, offset + base);
+              high.intoArray(items, offset + base + j);
+            } else {
+              high.intoArray(items, offset + base);
+              low.intoArray(items, offset + base + j);
+            }
+          }
+        }
+      }
+
+      int firstLocal = Math.min(k, lanes) >> 1;
+      for (int base = 0; base < size; base += lanes) {
+        LongVector vector = LongVector.fromArray(LONG_SPECIES, items, offset + base);
+        for (int j = firstLocal; j > 0; j >>= 1) {
+          int step = Integer.numberOfTrailingZeros(j);
+          VectorMask<Long> takeMax;
+          if (k < lanes) {
+            takeMax = LONG_TAKE_MAX[Integer.numberOfTrailingZeros(k)][step];
+          } else {
+            takeMax = (base & k) == 0 ? LONG_UPPER[step] : LONG_LOWER[step];
+          }
+          LongVector partner = vector.rearrange(LONG_PARTNERS[step]);
+          vector = vector.min(partner).blend(vector.max(partner), takeMax);
+        }
+        vector.intoArray(items, offset + base);
+      }
+    }
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static <E> VectorShuffle<E>[] partners(VectorSpecies<E> species) {
+    int steps = Integer.numberOfTrailingZeros(species.length());
+    VectorShuffle<E>[] partners = new VectorShuffle[steps];
+    for (int step = 0; step < steps; step++) {
+      int distance = 1 << step;
+      partners[step] = VectorShuffle.fromOp(species, lane -> lane ^ distance);
+    }
+    return partners;
+  }
+
+  /**
+   * Return, for each distance, the lanes whose index has that distance's bit set, or clear.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static <E> VectorMask<E>[] distanceBit(VectorSpecies<E> species, boolean set) {
+    int steps = Integer.numberOfTrailingZeros(species.length());
+    VectorMask<E>[] masks = new VectorMask[steps];
+    boolean[] lanes = new boolean[species.length()];
+    for (int step = 0; step < steps; step++) {
+      for (int lane = 0; lane < lanes.length; lane++) {
+        lanes[lane] = ((lane >> step & 1) == 1) == set;
+      }
+      masks[step] = VectorMask.fromArray(species, lanes, 0);
+    }
+    return masks;
+  }
+
+  /**
+   * Return the lanes that keep the larger item for each block size below the vector length and
+   * each distance below the block size: the upper lane of each pair in an ascending block, the
+   * lower in a descending one.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static <E> VectorMask<E>[][] takeMax(VectorSpecies<E> species) {
+    int steps = Integer.numberOfTrailingZeros(species.length());
+    VectorMask<E>[][] masks = new VectorMask[steps][steps];
+    boolean[] lanes = new boolean[species.length()];
+    for (int block = 1; block < steps; block++) {
+      for (int step = 0; step < block; step++) {
+        for (int lane = 0; lane < lanes.length; lane++) {
+          lanes[lane] = (lane >> step & 1) != (lane >> block & 1);
+        }
+        masks[block][step] = VectorMask.fromArray(species, lanes, 0);
+      }
+    }
+    return masks;
+  }
+}
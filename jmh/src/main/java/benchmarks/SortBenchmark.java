@@ -0,0 +1,87 @@
+package benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for every sort the profiler knows, over every generator and a ladder of sizes.
+ * The sort and generator names are the ones SortProfiler accepts, so any of its sort names
+ * (including the primitive and string variants) can be passed with -p sortName=....
+ *
+ * <p>Each operation sorts a fresh copy of the same input. The copy benchmark measures only
+ * preparing that copy, so subtracting it gives the cost of the sort itself at small sizes. Run
+ * with -prof gc for allocation rates and -bm thrpt for throughput instead of average time.
+ *
+ * <p>JMH cannot generate code for classes in the default package, and a named package cannot
+ * import from it, so the sorts are looked up reflectively once per trial.
+ *
+ * @author Nick Simoncelli
+ * @version pa2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xss64m", "--add-modules=jdk.incubator.vector"})
+public class SortBenchmark {
+  // Keep in step with SortProfiler.ALL_SORT_NAMES.
+  @Param({"insertion", "selection", "merge", "merge_half", "merge_inplace", "merge_adaptive",
+      "merge_natural", "merge_parallel", "sample", "quick", "quick_3way", "quick_dual",
+      "introspective", "timsort", "adaptive"})
+  public String sortName;
+
+  @Param({"random", "ordered", "evil", "few_unique", "sawtooth"})
+  public String generator;
+
+  @Param({"100", "1000", "10000", "100000"})
+  public int size;
+
+  private Function<Integer[], Runnable> sort;
+  private Integer[] items;
+
+  /**
+   * Look up the sort and generate the input shared by every operation of the trial.
+   */
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setUp() throws ReflectiveOperationException {
+    Class<?> profiler = Class.forName("SortProfiler");
+    Method parseSort = profiler.getMethod("parseProfiledSort", String.class);
+    Method parseGenerator = profiler.getMethod("parseGenerator", String.class);
+    sort = (Function<Integer[], Runnable>) parseSort.invoke(null, sortName);
+    items = ((IntFunction<Integer[]>) parseGenerator.invoke(null, generator)).apply(size);
+  }
+
+  /**
+   * Copy the input and sort the copy. The returned sort is consumed so the sorted copy it holds
+   * stays live.
+   */
+  @Benchmark
+  public Runnable sort() {
+    Runnable work = sort.apply(items);
+    work.run();
+    return work;
+  }
+
+  /**
+   * Only copy the input, as the baseline for {@link #sort()}.
+   */
+  @Benchmark
+  public Runnable copy() {
+    return sort.apply(items);
+  }
+}